@@ -1,4 +1,4 @@
-import javafx.collections.ObservableList;
+import javafx.collections.FXCollections;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -11,6 +11,8 @@ import javafx.stage.Stage;
 
 import java.sql.SQLException;
 import java.time.*;
+import java.time.format.DateTimeFormatter;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -25,6 +27,11 @@ import java.util.ResourceBundle;
  */
 
 public class AddAppointmentForm {
+    //how far ahead, how many and how far apart the free times offered are
+    private static final Duration SLOT_HORIZON = Duration.ofDays(14);
+    private static final int SLOT_COUNT = 10;
+    private static final Duration SLOT_STEP = Duration.ofMinutes(30);
+
     /**
      * Is the main function call for the class to return a scene
      *
@@ -99,15 +106,74 @@ public class AddAppointmentForm {
         DatePicker datePicker = new DatePicker();
 
         //allows the user to select contact based off of drop down list
-        ComboBox contactChoice = new ComboBox<>();
-        contactChoice.getItems().addAll(data.getContactNameArray());
+        ComboBox<Contact> contactChoice = new ComboBox<>();
+        contactChoice.getItems().addAll(data.getContactArray());
 
         //allows the user to select the customer based off of drop down list
-        ComboBox customerChoice = new ComboBox<>();
-        customerChoice.getItems().addAll(data.getCustomerNameArray());
-
-        ComboBox userChoice = new ComboBox<>();
-        userChoice.getItems().addAll(data.getUserNameArray());
+        ComboBox<Customer> customerChoice = new ComboBox<>();
+        customerChoice.getItems().addAll(data.getCustomerArray());
+
+        //allows the user to select the user based off of drop down list
+        ComboBox<User> userChoice = new ComboBox<>();
+        userChoice.getItems().addAll(data.getUserArray());
+
+        //allows the user to pick the length of the appointment and find the earliest times the customer and contact are
+        //both free for it
+        Label lengthLabel = new Label(messages.getString("lengthLabel"));
+        lengthLabel.setPadding(new Insets(5,5,5,5));
+        ComboBox<Integer> lengthChoice = new ComboBox<>(FXCollections.observableArrayList(15, 30, 45, 60, 90, 120));
+        lengthChoice.setValue(60);
+        Button findSlotsButton = new Button(messages.getString("findSlotsLabel"));
+        Label slotLabel = new Label(messages.getString("freeSlotsLabel"));
+        slotLabel.setPadding(new Insets(5,5,5,5));
+        ComboBox<AvailabilityFinder.Slot> slotChoice = new ComboBox<>();
+        //only the latest search is shown, searching again cancels the one still running
+        AsyncDataService.Latest<List<AvailabilityFinder.Slot>> slotSearches = AsyncDataService.getInstance().latest();
+
+        //searches the schedules in the background, from the picked date or from now
+        findSlotsButton.setOnAction(e -> {
+            slotChoice.getItems().clear();
+            if (customerChoice.getValue() == null) {
+                slotChoice.setPromptText(messages.getString("chooseCustomerFirst"));
+                return;
+            }
+            int customerId = customerChoice.getValue().getCustomer_ID();
+            int contactId = contactChoice.getValue() == null ? 0 : contactChoice.getValue().getContactID();
+            Duration length = Duration.ofMinutes(lengthChoice.getValue() == null ? 60 : lengthChoice.getValue());
+            Instant from = Instant.now();
+            if (datePicker.getValue() != null) {
+                Instant picked = datePicker.getValue().atStartOfDay(ZoneId.systemDefault()).toInstant();
+                if (picked.isAfter(from)) { from = picked; }
+            }
+            Instant searchFrom = from;
+            slotChoice.setPromptText(messages.getString("loadingLabel"));
+            slotSearches.submit(() -> AvailabilityFinder.earliestSlots(customerId, contactId, length, searchFrom,
+                    SLOT_HORIZON, SLOT_COUNT, SLOT_STEP), slots -> {
+                //leaves out the times crossing midnight where the user is, the form holds a single date
+                for (AvailabilityFinder.Slot slot : slots) {
+                    if (slot.getStart().atZone(ZoneId.systemDefault()).toLocalDate()
+                            .equals(slot.getEnd().atZone(ZoneId.systemDefault()).toLocalDate())) {
+                        slotChoice.getItems().add(slot);
+                    }
+                }
+                slotChoice.setPromptText(slotChoice.getItems().isEmpty() ? messages.getString("noFreeSlots") : "");
+                if (!slotChoice.getItems().isEmpty()) { slotChoice.show(); }
+            }, error -> {
+                slotChoice.setPromptText(messages.getString("loadFailed"));
+                error.printStackTrace();
+            });
+        });
+
+        //fills in the date and times of the free time the user picks
+        slotChoice.setOnAction(e -> {
+            AvailabilityFinder.Slot slot = slotChoice.getValue();
+            if (slot == null) { return; }
+            ZonedDateTime slotStart = slot.getStart().atZone(ZoneId.systemDefault());
+            ZonedDateTime slotEnd = slot.getEnd().atZone(ZoneId.systemDefault());
+            datePicker.setValue(slotStart.toLocalDate());
+            startTimeField.setText(slotStart.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+            endTimeField.setText(slotEnd.toLocalTime().format(DateTimeFormatter.ofPattern("HH:mm:ss")));
+        });
 
         //initializes buttons for the user to navigate through the pages
         Button saveButton = new Button(messages.getString("saveLabel"));
@@ -125,8 +191,7 @@ public class AddAppointmentForm {
                 ZonedDateTime end = ZonedDateTime.parse(endTime);
 
                 //checks against the business hours to take the first step in validating the input
-                if (start.withZoneSameInstant(ZoneId.of("America/New_York")).toLocalTime().isBefore(LocalTime.parse("08:00:00"))
-                    || (end.withZoneSameInstant(ZoneId.of("America/New_York")).toLocalDateTime().isAfter(LocalDateTime.parse(end.toLocalDate() + "T22:00:00")))){
+                if (!ScheduleRules.withinBusinessHours(start, end)) {
                     //if the appointment is outside of business hours, display the error code frame
                         Stage stageTwo = new Stage();
                         stageTwo.setScene(errorUserTimeSet());
@@ -134,13 +199,14 @@ public class AddAppointmentForm {
                 } else {
                     //if it is within the business hours, checks to make sure that the customer that is assigned to
                     //the appointment does not have any overlapping appointments
-                    if(overlapCheck(start, end, customerChoice.getSelectionModel().getSelectedItem().toString())) {
-                        //takes the users input and attempts to apply it as a new appointment
+                    if(overlapCheck(start, end, customerChoice.getValue().getCustomer_ID())) {
+                        //takes the users input and attempts to apply it as a new appointment, the ids are taken
+                        //straight from the selected objects
                         data.addAppointment(titleField.getText(), descriptionField.getText(), locationField.getText(),
-                                data.getContactID(contactChoice.getSelectionModel().getSelectedItem().toString()),
+                                contactChoice.getValue().getContactID(),
                                 typeField.getText(), start, end,
-                                data.getCustomerID(customerChoice.getSelectionModel().getSelectedItem().toString()),
-                                data.getUserID(userChoice.getSelectionModel().getSelectedItem().toString()));
+                                customerChoice.getValue().getCustomer_ID(),
+                                userChoice.getValue().getUserID());
 
                         //first takes the currently open window and closes it
                         Stage stage = (Stage) saveButton.getScene().getWindow();
@@ -226,6 +292,12 @@ public class AddAppointmentForm {
         //user's user input
         userInputLayout.add(userLabel, 0, 9, 1, 1);
         userInputLayout.add(userChoice, 1, 9, 1, 1);
+        //free time search
+        userInputLayout.add(lengthLabel, 0, 10, 1, 1);
+        userInputLayout.add(lengthChoice, 1, 10, 1, 1);
+        userInputLayout.add(findSlotsButton, 2, 10, 1, 1);
+        userInputLayout.add(slotLabel, 0, 11, 1, 1);
+        userInputLayout.add(slotChoice, 1, 11, 2, 1);
         //sets the gaps within the grid pane
         userInputLayout.setHgap(20);
         userInputLayout.setVgap(20);
@@ -275,40 +347,18 @@ public class AddAppointmentForm {
      * appointment request
      * @param start the start time and date of the appointment
      * @param end the end time and date of the appointment
-     * @param CustomerName the customer assigned
+     * @param customerId the id of the customer assigned
      * @return boolean value, true means no overlap, false means overlap
      * @throws SQLException protect based off of improper layout
      */
-    private boolean overlapCheck(ZonedDateTime start, ZonedDateTime end, String CustomerName) throws SQLException {
+    private boolean overlapCheck(ZonedDateTime start, ZonedDateTime end, int customerId) throws SQLException {
         //checks to first see if the times set are possible to do with the start before the end
         if(end.isBefore(start)){return false;}
-        //initializes database access
-        DBAccess data = new DBAccess();
 
-        //creates total list of the customers appointments
-        ObservableList<LocalDateTime[]> customerAppTimes = data.customerAssociatedAppointments(
-                data.getCustomerID(CustomerName));
-
-        //loops through the appointments
-        for (LocalDateTime[] customerAppTime : customerAppTimes) {
-            //checks to see if there is an appointment within the same day
-            if(start.getDayOfYear() == customerAppTime[1].getDayOfYear()) {
-                //checks to see if the appointment times are able to fit between other given values or over the values
-                //or there is another form of overlap whether that be the same time as another appointment etc.
-                if (((((start.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC")))) &&
-                        (start.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC")))))
-                        || ((end.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC")))) &&
-                        end.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC"))))) ||
-                        ((start.withZoneSameInstant(ZoneId.of("UTC")).toLocalTime() == customerAppTime[0].toLocalTime()) ||
-                        (end.withZoneSameInstant(ZoneId.of("UTC")).toLocalTime() == customerAppTime[1].toLocalTime()))) ||
-                        ((start.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC"))) &&
-                        (end.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC"))))))){
-                    return false;
-                }
-            }
-        }
-        //goes through loop and no matches is able to return true, no overlap
-        return true;
+        //checks the customer's appointments within the appointment index for any appointment that starts before the
+        //new one ends and ends after the new one starts, which covers every form of overlap
+        return !AppointmentIndex.getInstance().ensureLoaded().overlaps(AppointmentIndex.Scope.CUSTOMER,
+                customerId, start.toInstant(), end.toInstant(), -1);
     }
 
     /**
@@ -1,4 +1,6 @@
+import java.time.Instant;
 import java.time.ZoneId;
+import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 
 /**
@@ -9,17 +11,29 @@ import java.time.ZonedDateTime;
  * @since 11/20/2020
  */
 public class Appointment {
+    //the zone of the user's computer, looked up once rather than on every call
+    private static final ZoneId LOCAL_ZONE = ZoneId.systemDefault();
+
     private int Appointment_ID; //holds the id of the appointment
     private String Title; //holds the title of the appointment
     private String Description; //holds the description of the appointment
     private String Location; //holds the location of the appointment
     private int Contact_ID; //holds the id of the contact assigned to the appointment
     private String Type; //holds the type of appointment
-    private ZonedDateTime Start; //holds the start time of the appointment
-    private ZonedDateTime End; //holds the end time of the appointment
+    private long Start; //holds the start time of the appointment in seconds from the epoch
+    private long End; //holds the end time of the appointment in seconds from the epoch
     private int Customer_ID; //holds the customer's id that is assigned to the appointment
     private int User_ID;
 
+    //the start and end shown in the local, UTC and business zones, created the first time each is asked for and
+    //cleared when the time is changed, so rendering, sorting and checking a long list never converts a time twice
+    private ZonedDateTime localStart;
+    private ZonedDateTime localEnd;
+    private ZonedDateTime utcStart;
+    private ZonedDateTime utcEnd;
+    private ZonedDateTime businessStart;
+    private ZonedDateTime businessEnd;
+
     /**
      * the constructor class for the appointment
      * @param appointment_id holds the appointment id
@@ -35,6 +49,26 @@ public class Appointment {
      */
     public Appointment(int appointment_id, String title, String description, String location, int contact_id,
                        String type, ZonedDateTime start, ZonedDateTime end, int customer_id, int user_id) {
+        this(appointment_id, title, description, location, contact_id, type, start.toEpochSecond(),
+                end.toEpochSecond(), customer_id, user_id);
+    }
+
+    /**
+     * the constructor class for the appointment, taking the times as seconds from the epoch as they are read from the
+     * database, without creating any zoned times until they are asked for
+     * @param appointment_id holds the appointment id
+     * @param title holds appointment title
+     * @param description holds appointment description
+     * @param location holds appointment location
+     * @param contact_id holds appointment contact
+     * @param type holds appointment type
+     * @param start holds appointment start time in seconds from the epoch
+     * @param end holds appointment end time in seconds from the epoch
+     * @param customer_id holds appointment customer
+     * @param user_id holds appointment user
+     */
+    public Appointment(int appointment_id, String title, String description, String location, int contact_id,
+                       String type, long start, long end, int customer_id, int user_id) {
         //assign parameter values to the variable instances of the class
         this.Appointment_ID = appointment_id;
         this.Title = title;
@@ -133,27 +167,113 @@ public class Appointment {
     }
 
     /**
-     * @return the start time of the appointment in the zone date time format
+     * @return the start time of the appointment in the zone of the user's computer
+     */
+    public ZonedDateTime getStart() {
+        ZonedDateTime start = localStart;
+        if (start == null) { localStart = start = at(Start, LOCAL_ZONE); }
+        return start;
+    }
+
+    /**
+     * @return the start time of the appointment in UTC, as it is stored within the database
+     */
+    public ZonedDateTime getStartUtc() {
+        ZonedDateTime start = utcStart;
+        if (start == null) { utcStart = start = at(Start, ZoneOffset.UTC); }
+        return start;
+    }
+
+    /**
+     * @return the start time of the appointment in the zone of the business hours
+     */
+    public ZonedDateTime getStartBusiness() {
+        ZonedDateTime start = businessStart;
+        if (start == null) { businessStart = start = at(Start, ScheduleRules.BUSINESS_ZONE); }
+        return start;
+    }
+
+    /**
+     * @return the start time of the appointment in seconds from the epoch
      */
-    public ZonedDateTime getStart() { return Start.withZoneSameInstant(ZoneId.systemDefault()); }
+    public long getStartEpochSecond() {
+        return Start;
+    }
+
+    /**
+     * @return the start time of the appointment as an instant
+     */
+    public Instant getStartInstant() {
+        return Instant.ofEpochSecond(Start);
+    }
 
     /**
      * @param start sets to class
      */
     public void setStart(ZonedDateTime start) {
-        Start = start.withZoneSameInstant(ZoneId.systemDefault());
+        Start = start.toEpochSecond();
+        localStart = null;
+        utcStart = null;
+        businessStart = null;
+    }
+
+    /**
+     * @return the end time of the appointment in the zone of the user's computer
+     */
+    public ZonedDateTime getEnd() {
+        ZonedDateTime end = localEnd;
+        if (end == null) { localEnd = end = at(End, LOCAL_ZONE); }
+        return end;
+    }
+
+    /**
+     * @return the end time of the appointment in UTC, as it is stored within the database
+     */
+    public ZonedDateTime getEndUtc() {
+        ZonedDateTime end = utcEnd;
+        if (end == null) { utcEnd = end = at(End, ZoneOffset.UTC); }
+        return end;
     }
 
     /**
-     * @return the end time of the appointment in the zone date time format
+     * @return the end time of the appointment in the zone of the business hours
      */
-    public ZonedDateTime getEnd() { return End.withZoneSameInstant(ZoneId.systemDefault()); }
+    public ZonedDateTime getEndBusiness() {
+        ZonedDateTime end = businessEnd;
+        if (end == null) { businessEnd = end = at(End, ScheduleRules.BUSINESS_ZONE); }
+        return end;
+    }
+
+    /**
+     * @return the end time of the appointment in seconds from the epoch
+     */
+    public long getEndEpochSecond() {
+        return End;
+    }
+
+    /**
+     * @return the end time of the appointment as an instant
+     */
+    public Instant getEndInstant() {
+        return Instant.ofEpochSecond(End);
+    }
 
     /**
      * @param end sets to class
      */
     public void setEnd(ZonedDateTime end) {
-        End = end.withZoneSameInstant(ZoneId.systemDefault());
+        End = end.toEpochSecond();
+        localEnd = null;
+        utcEnd = null;
+        businessEnd = null;
+    }
+
+    /**
+     * shows a time in a zone, the zoned times are immutable so sharing one between threads is safe even if two threads
+     * happen to create it at once
+     */
+    private static ZonedDateTime at(long epochSecond, ZoneId zone) {
+        return ZonedDateTime.ofInstant(Instant.ofEpochSecond(epochSecond), zone);
     }
 
     /**
@@ -0,0 +1,79 @@
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The appointments changed since a point in the appointment change log: the current rows of the appointments that
+ * were added or updated, the ids of the ones deleted and the change the reader has now caught up to. If the log has
+ * been pruned past the point asked for, the changes are incomplete and the reader has to read everything again.
+ */
+public final class AppointmentChanges {
+
+    private final long watermark; //holds the last change included, to be passed in when reading the next changes
+    private final boolean complete; //whether the log still reached back to the point asked for
+    private final List<Appointment> changed; //holds the current rows of the added and updated appointments
+    private final int[] removed; //holds the ids of the deleted appointments
+    private final boolean settled; //whether every change read is old enough to be behind the watermark
+
+    AppointmentChanges(long watermark, boolean complete, List<Appointment> changed, int[] removed) {
+        this(watermark, complete, changed, removed, true);
+    }
+
+    AppointmentChanges(long watermark, boolean complete, List<Appointment> changed, int[] removed, boolean settled) {
+        this.watermark = watermark;
+        this.complete = complete;
+        this.changed = changed;
+        this.removed = removed;
+        this.settled = settled;
+    }
+
+    /**
+     * @param watermark the last change the reader has seen
+     * @return changes telling the reader to read everything again
+     */
+    static AppointmentChanges incomplete(long watermark) {
+        return new AppointmentChanges(watermark, false, Collections.emptyList(), new int[0]);
+    }
+
+    /**
+     * @return the last change included, to be passed in when reading the next changes
+     */
+    public long getWatermark() {
+        return watermark;
+    }
+
+    /**
+     * @return false if the log no longer reaches back to the point asked for, so some changes are missing
+     */
+    public boolean isComplete() {
+        return complete;
+    }
+
+    /**
+     * @return false if recent changes were read past the watermark, which stays before them since a write holding an
+     * earlier change id may still commit. Those changes are read again along with whatever joins them next time
+     */
+    public boolean isSettled() {
+        return settled;
+    }
+
+    /**
+     * @return the current rows of the appointments added or updated since the point asked for
+     */
+    public List<Appointment> getChanged() {
+        return changed;
+    }
+
+    /**
+     * @return the ids of the appointments deleted since the point asked for
+     */
+    public int[] getRemoved() {
+        return removed;
+    }
+
+    /**
+     * @return true if nothing changed
+     */
+    public boolean isEmpty() {
+        return changed.isEmpty() && removed.length == 0;
+    }
+}
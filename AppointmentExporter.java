@@ -0,0 +1,332 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Command line entry point for exporting appointments to a CSV, a newline delimited JSON or an iCalendar file. The rows
+ * are read through a forward-only cursor and written as they are read, so the export holds the same small amount of
+ * memory however many appointments there are. The CSV and iCalendar files can be read back by the appointment import.
+ *
+ * The CSV and JSON times are written with the offset of the time zone of the computer running the export
+ * (2020-11-20T09:00-05:00), and --from and --to are days within that zone, both included. A path ending in .ics, or
+ * --ics, writes a calendar, which with --contact or --customer is the schedule of that contact or customer. A path
+ * ending in .gz, or --gzip, compresses the file.
+ *
+ * Usage: java AppointmentExporter appointments.csv [--json | --ics] [--gzip] [--from 2020-01-01] [--to 2020-12-31]
+ *        [--contact id] [--customer id]
+ */
+public final class AppointmentExporter {
+
+    //the columns of the CSV file and the fields of each JSON line, in the order they are written
+    private static final String[] COLUMNS = {"Appointment_ID", "Title", "Description", "Location", "Type", "Start",
+            "End", "Customer_ID", "User_ID", "Contact_ID"};
+    //the earliest and latest times the appointments table is able to hold, for an export without a range
+    private static final LocalDateTime EARLIEST = LocalDateTime.of(1000, 1, 1, 0, 0);
+    private static final LocalDateTime LATEST = LocalDateTime.of(9999, 12, 31, 0, 0);
+    //how many rows are read from the database at a time, on drivers that read a page at a time
+    private static final int FETCH_SIZE =
+            Integer.parseInt(ConnectionPool.loadProperties().getProperty("export.fetchSize", "1000"));
+    //how many rows are written between the progress lines
+    private static final int PROGRESS_ROWS = 100_000;
+    private static final int BUFFER_BYTES = 1 << 16;
+
+    /**
+     * receives each appointment of an export as it is read
+     */
+    @FunctionalInterface
+    interface RowWriter {
+        void write(Appointment appointment) throws IOException;
+    }
+
+    /**
+     * what to export and how to write it
+     */
+    static final class Options {
+        boolean json;
+        boolean ics;
+        boolean gzip;
+        LocalDate from; //the first day exported, null for no limit
+        LocalDate to; //the last day exported, null for no limit
+        int contactId; //the only contact exported, 0 for every contact
+        int customerId; //the only customer exported, 0 for every customer
+    }
+
+    private AppointmentExporter() {}
+
+    /**
+     * runs the export
+     * @param args the path of the file to write, followed by the options
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java AppointmentExporter <appointments.csv> [--json | --ics] [--gzip] " +
+                    "[--from yyyy-mm-dd] [--to yyyy-mm-dd] [--contact id] [--customer id]");
+            System.exit(2);
+        }
+
+        Options options = new Options();
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--json": options.json = true; break;
+                    case "--ics": options.ics = true; break;
+                    case "--gzip": options.gzip = true; break;
+                    case "--from": options.from = LocalDate.parse(args[++i]); break;
+                    case "--to": options.to = LocalDate.parse(args[++i]); break;
+                    case "--contact": options.contactId = Integer.parseInt(args[++i]); break;
+                    case "--customer": options.customerId = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(2);
+        }
+        options.gzip |= args[0].endsWith(".gz");
+        options.ics |= args[0].endsWith(".ics") || args[0].endsWith(".ics.gz");
+
+        try {
+            run(Paths.get(args[0]), options);
+            System.exit(0);
+        } catch (IOException | SQLException e) {
+            System.err.println("Export failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * writes the appointments chosen by the options to the file, printing the rate the rows were written at
+     * @param path the file to write, replaced if it exists
+     * @param options what to export and how to write it
+     * @return the number of appointments written
+     * @throws IOException if the file could not be written
+     * @throws SQLException if the appointments could not be read
+     */
+    static long run(Path path, Options options) throws IOException, SQLException {
+        long started = System.nanoTime();
+        long rows;
+        try (Writer out = open(path, options.gzip)) {
+            rows = export(out, options);
+        }
+        long nanos = Math.max(1, System.nanoTime() - started);
+        System.out.println("Exported " + rows + " appointments to " + path + " in " + nanos / 1_000_000 + " ms (" +
+                rows * 1_000_000_000L / nanos + " rows/s)");
+        return rows;
+    }
+
+    /**
+     * writes the appointments chosen by the options to a writer as they are read
+     * @param out the writer the rows are written to, left open
+     * @param options what to export and how to write it
+     * @return the number of appointments written
+     * @throws IOException if the rows could not be written
+     * @throws SQLException if the appointments could not be read
+     */
+    static long export(Writer out, Options options) throws IOException, SQLException {
+        if (options.ics) {
+            ICalendar.Writer calendar = new ICalendar.Writer(out, calendarName(options));
+            long rows = forEach(options, calendar::write);
+            calendar.finish();
+            return rows;
+        }
+
+        ZoneId zone = ZoneId.systemDefault();
+        DateTimeFormatter timeFormat = DateTimeFormatter.ISO_OFFSET_DATE_TIME;
+        StringBuilder line = new StringBuilder(256);
+        if (!options.json) {
+            out.write(String.join(",", COLUMNS));
+            out.write('\n');
+        }
+        return forEach(options, appointment -> {
+            Object[] values = {appointment.getAppointment_ID(), appointment.getTitle(), appointment.getDescription(),
+                    appointment.getLocation(), appointment.getType(),
+                    timeFormat.format(appointment.getStart().withZoneSameInstant(zone)),
+                    timeFormat.format(appointment.getEnd().withZoneSameInstant(zone)),
+                    appointment.getCustomer_ID(), appointment.getUser_ID(), appointment.getContact_ID()};
+            line.setLength(0);
+            if (options.json) { appendJson(line, values); } else { appendCsv(line, values); }
+            out.append(line);
+        });
+    }
+
+    /**
+     * reads the appointments chosen by the options through a forward-only cursor, handing each to the writer as it is
+     * read and printing the rate every so many rows
+     * @param options what to export
+     * @param writer receives each appointment
+     * @return the number of appointments read
+     * @throws IOException if the writer failed
+     * @throws SQLException if the appointments could not be read
+     */
+    static long forEach(Options options, RowWriter writer) throws IOException, SQLException {
+        ZoneId zone = ZoneId.systemDefault();
+        long rows = 0;
+        long started = System.nanoTime();
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, exportStatement(options))) {
+            ps.setTimestamp(1, Timestamp.valueOf(utc(options.from, zone, EARLIEST)));
+            ps.setTimestamp(2, Timestamp.valueOf(utc(options.to == null ? null : options.to.plusDays(1), zone,
+                    LATEST)));
+            int parameter = 3;
+            if (options.contactId != 0) { ps.setInt(parameter++, options.contactId); }
+            if (options.customerId != 0) { ps.setInt(parameter, options.customerId); }
+            //the statement is kept with the connection, so its fetch size is put back once the rows are read
+            int fetchSize = ps.getFetchSize();
+            ps.setFetchSize(streamingFetchSize(conn));
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    writer.write(AppointmentRowMapper.map(rs));
+                    if (++rows % PROGRESS_ROWS == 0) {
+                        long nanos = Math.max(1, System.nanoTime() - started);
+                        System.out.println("  " + rows + " appointments, " + rows * 1_000_000_000L / nanos +
+                                " rows/s");
+                    }
+                }
+            } finally {
+                ps.setFetchSize(fetchSize);
+            }
+        }
+        return rows;
+    }
+
+    /**
+     * the statement reading the appointments of the contact and customer the options name, if any
+     */
+    private static SqlStatement exportStatement(Options options) {
+        if (options.contactId != 0) {
+            return options.customerId != 0 ? SqlStatement.EXPORT_CONTACT_CUSTOMER_APPOINTMENTS
+                    : SqlStatement.EXPORT_CONTACT_APPOINTMENTS;
+        }
+        return options.customerId != 0 ? SqlStatement.EXPORT_CUSTOMER_APPOINTMENTS : SqlStatement.EXPORT_APPOINTMENTS;
+    }
+
+    /**
+     * names a calendar after the contact or customer it holds the schedule of
+     */
+    private static String calendarName(Options options) throws SQLException {
+        if (options.contactId > 0) {
+            Contact contact = ReferenceDataCache.getInstance().getContact(options.contactId);
+            if (contact != null) { return contact.getContactName(); }
+        }
+        if (options.customerId > 0) {
+            String name = new DBAccess().getCustomerName(options.customerId);
+            if (!name.isEmpty()) { return name; }
+        }
+        return "Appointments";
+    }
+
+    /**
+     * opens the file through a channel, compressing it when asked, behind a buffer so the rows are written in blocks
+     */
+    private static Writer open(Path path, boolean gzip) throws IOException {
+        OutputStream stream = Channels.newOutputStream(FileChannel.open(path, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING, StandardOpenOption.WRITE));
+        if (gzip) { stream = new GZIPOutputStream(stream, BUFFER_BYTES); }
+        return new BufferedWriter(new OutputStreamWriter(stream, StandardCharsets.UTF_8), BUFFER_BYTES);
+    }
+
+    /**
+     * the fetch size that keeps the driver from reading the whole result into memory. MySQL's driver reads every row
+     * before returning the first unless asked to stream them one at a time, or to use a cursor by useCursorFetch=true
+     * on the url; the other drivers read export.fetchSize rows at a time
+     */
+    private static int streamingFetchSize(Connection conn) throws SQLException {
+        String product = conn.getMetaData().getDatabaseProductName();
+        String url = conn.getMetaData().getURL();
+        if ("MySQL".equalsIgnoreCase(product) && (url == null || !url.contains("useCursorFetch=true"))) {
+            return Integer.MIN_VALUE;
+        }
+        return FETCH_SIZE;
+    }
+
+    /**
+     * the UTC time the database holds for the start of a day in the zone, or the default for no day
+     */
+    private static LocalDateTime utc(LocalDate day, ZoneId zone, LocalDateTime none) {
+        if (day == null) { return none; }
+        return day.atStartOfDay(zone).withZoneSameInstant(ZoneOffset.UTC).toLocalDateTime();
+    }
+
+    /**
+     * adds a row as a CSV line, quoting the fields holding a comma, quote or line break. A quoted line break carries
+     * the row on to the next line of the file, which the appointment import reads back as one row
+     */
+    static void appendCsv(StringBuilder line, Object[] values) {
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) { line.append(','); }
+            String value = values[i] == null ? "" : values[i].toString();
+            boolean quoted = false;
+            for (int c = 0; c < value.length() && !quoted; c++) {
+                char ch = value.charAt(c);
+                quoted = ch == ',' || ch == '"' || ch == '\n' || ch == '\r';
+            }
+            if (!quoted) {
+                line.append(value);
+                continue;
+            }
+            line.append('"');
+            for (int c = 0; c < value.length(); c++) {
+                char ch = value.charAt(c);
+                if (ch == '"') { line.append('"'); }
+                line.append(ch);
+            }
+            line.append('"');
+        }
+        line.append('\n');
+    }
+
+    /**
+     * adds a row as a JSON object on a line of its own, the numbers unquoted
+     */
+    static void appendJson(StringBuilder line, Object[] values) {
+        line.append('{');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) { line.append(','); }
+            line.append('"').append(COLUMNS[i]).append("\":");
+            Object value = values[i];
+            if (value == null) {
+                line.append("null");
+            } else if (value instanceof Number) {
+                line.append(value);
+            } else {
+                appendJsonString(line, value.toString());
+            }
+        }
+        line.append("}\n");
+    }
+
+    private static void appendJsonString(StringBuilder line, String value) {
+        line.append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append('"');
+    }
+}
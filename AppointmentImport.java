@@ -0,0 +1,337 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Command line entry point for the nightly bulk import of appointments from a CSV file. The file starts with a header
+ * row naming the columns Title, Description, Location, Type, Start, End, Customer_ID, User_ID and Contact_ID in any
+ * order. Start and End are ISO-8601 date times, either with an offset (2020-11-20T09:00-05:00) or without one, in which
+ * case they are read in the time zone of the computer running the import. A quoted field may hold commas, doubled
+ * quotes and line breaks, as written by the appointment export, the row then going on over the following lines.
+ *
+ * Every row is checked against the same business hours and overlap rules as the appointment forms, over the whole
+ * file at once, and the rows that pass are added in a single batched transaction.
+ *
+ * A file ending in .ics (or .ics.gz) is read as an iCalendar file instead, an event at a time, so calendars of any size
+ * are imported without being held in memory. The events are checked and added CALENDAR_CHUNK at a time, each chunk in
+ * its own transaction, and each chunk is checked against the chunks added before it. Events without the customer,
+ * contact or user the exported calendars name take them from --customer, --contact and --user.
+ *
+ * Usage: java AppointmentImport appointments.csv [--dry-run]
+ *        java AppointmentImport calendar.ics [--dry-run] [--customer id] [--contact id] [--user id]
+ */
+public final class AppointmentImport {
+
+    //the columns every import file has to name within its header
+    private static final String[] COLUMNS = {"Title", "Description", "Location", "Type", "Start", "End",
+            "Customer_ID", "User_ID", "Contact_ID"};
+
+    //how many calendar events are checked and added at a time
+    private static final int CALENDAR_CHUNK = 10_000;
+
+    private AppointmentImport() {}
+
+    /**
+     * runs the import
+     * @param args the path of the CSV file, followed by --dry-run to only check the rows
+     */
+    public static void main(String[] args) {
+        if (args.length == 0) {
+            System.err.println("Usage: java AppointmentImport <appointments.csv | calendar.ics> [--dry-run] " +
+                    "[--customer id] [--contact id] [--user id]");
+            System.exit(2);
+        }
+        boolean dryRun = false;
+        int customerId = 0;
+        int contactId = 0;
+        int userId = 0;
+        try {
+            for (int i = 1; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--dry-run": dryRun = true; break;
+                    case "--customer": customerId = Integer.parseInt(args[++i]); break;
+                    case "--contact": contactId = Integer.parseInt(args[++i]); break;
+                    case "--user": userId = Integer.parseInt(args[++i]); break;
+                    default: throw new IllegalArgumentException("unknown option " + args[i]);
+                }
+            }
+        } catch (IllegalArgumentException | IndexOutOfBoundsException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(2);
+        }
+
+        try {
+            boolean calendar = args[0].endsWith(".ics") || args[0].endsWith(".ics.gz");
+            System.exit((calendar ? runCalendar(args[0], dryRun, customerId, contactId, userId)
+                    : run(args[0], dryRun)) ? 0 : 1);
+        } catch (IOException | SQLException e) {
+            System.err.println("Import failed: " + e.getMessage());
+            System.exit(2);
+        }
+    }
+
+    /**
+     * reads, checks and adds the appointments of the file, printing a line for every row that was not added
+     * @param path the path of the CSV file
+     * @param dryRun true to only check the rows without adding them
+     * @return true if every row was added (or would have been, for a dry run)
+     * @throws IOException if the file could not be read
+     * @throws SQLException if the database could not be reached
+     */
+    static boolean run(String path, boolean dryRun) throws IOException, SQLException {
+        List<Appointment> appointments = new ArrayList<>();
+        List<Integer> lineNumbers = new ArrayList<>();
+        int invalid = 0;
+
+        //reads every row of the file, reporting the ones that could not be read
+        try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8)) {
+            String header = reader.readLine();
+            if (header == null) { throw new IOException(path + " is empty"); }
+            Map<String, Integer> columns = columnPositions(parseLine(header));
+
+            String line;
+            int lineNumber = 1;
+            StringBuilder row = new StringBuilder();
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                int firstLine = lineNumber;
+                //a quoted field holding line breaks carries the row on over the following lines until it is closed
+                if (openQuote(line)) {
+                    row.setLength(0);
+                    row.append(line);
+                    String next;
+                    while (openQuote(row) && (next = reader.readLine()) != null) {
+                        row.append('\n').append(next);
+                        lineNumber++;
+                    }
+                    line = row.toString();
+                }
+                if (line.trim().isEmpty()) { continue; }
+                try {
+                    appointments.add(toAppointment(parseLine(line), columns));
+                    lineNumbers.add(firstLine);
+                } catch (IllegalArgumentException | DateTimeParseException | IndexOutOfBoundsException e) {
+                    System.out.println("line " + firstLine + ": unreadable row (" + e.getMessage() + ")");
+                    invalid++;
+                }
+            }
+        }
+
+        //checks the business hours and overlaps of the whole file at once and adds the rows that passed within a
+        //single transaction
+        long started = System.nanoTime();
+        int[] outcome = checkAndAdd(appointments, lineNumbers, dryRun);
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        //every row read counts once, whether it was unreadable, rejected by the rules or passed them
+        int rows = appointments.size() + invalid;
+        invalid += outcome[0];
+        if (dryRun) {
+            System.out.println("Checked " + rows + " rows: " + outcome[1] +
+                    " valid, " + invalid + " rejected (dry run, nothing was added)");
+            return invalid == 0;
+        }
+        System.out.println("Added " + outcome[2] + " of " + rows + " rows in " + millis + " ms, " + invalid +
+                " rejected");
+        return invalid == 0 && outcome[2] == outcome[1];
+    }
+
+    /**
+     * reads, checks and adds the events of an iCalendar file a chunk at a time, printing a line for every event that
+     * was not added
+     * @param path the path of the calendar, compressed if it ends in .gz
+     * @param dryRun true to only check the events without adding them, each chunk is then only checked against itself
+     *               and the database
+     * @param customerId the customer of the events that do not name one, 0 if there is none
+     * @param contactId the contact of the events that do not name one, 0 if there is none
+     * @param userId the user of the events that do not name one, 0 if there is none
+     * @return true if every event was added (or would have been, for a dry run)
+     * @throws IOException if the file could not be read
+     * @throws SQLException if the database could not be reached
+     */
+    static boolean runCalendar(String path, boolean dryRun, int customerId, int contactId, int userId)
+            throws IOException, SQLException {
+        List<Appointment> chunk = new ArrayList<>(CALENDAR_CHUNK);
+        List<Integer> lineNumbers = new ArrayList<>(CALENDAR_CHUNK);
+        int events = 0;
+        int invalid = 0;
+        int valid = 0;
+        int written = 0;
+        long started = System.nanoTime();
+
+        InputStream stream = Files.newInputStream(Paths.get(path));
+        if (path.endsWith(".gz")) { stream = new GZIPInputStream(stream, 1 << 16); }
+        try (BufferedReader reader = new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8),
+                1 << 16)) {
+            ICalendar.Reader calendar = new ICalendar.Reader(reader, ZoneId.systemDefault());
+            while (true) {
+                Appointment appointment;
+                try {
+                    appointment = calendar.next(customerId, contactId, userId);
+                } catch (IllegalArgumentException e) {
+                    System.out.println("line " + calendar.eventLine() + ": unreadable event (" + e.getMessage() + ")");
+                    events++;
+                    invalid++;
+                    continue;
+                }
+                if (appointment != null) {
+                    chunk.add(appointment);
+                    lineNumbers.add(calendar.eventLine());
+                    events++;
+                }
+
+                //checks and adds a full chunk, and whatever is left once the calendar has been read
+                if (chunk.size() == CALENDAR_CHUNK || (appointment == null && !chunk.isEmpty())) {
+                    int[] outcome = checkAndAdd(chunk, lineNumbers, dryRun);
+                    invalid += outcome[0];
+                    valid += outcome[1];
+                    written += outcome[2];
+                    chunk.clear();
+                    lineNumbers.clear();
+                }
+                if (appointment == null) { break; }
+            }
+        }
+
+        long millis = (System.nanoTime() - started) / 1_000_000;
+        if (dryRun) {
+            System.out.println("Checked " + events + " events: " + valid + " valid, " + invalid +
+                    " rejected (dry run, nothing was added)");
+            return invalid == 0;
+        }
+        System.out.println("Added " + written + " of " + events + " events in " + millis + " ms, " + invalid +
+                " rejected");
+        return invalid == 0 && written == valid;
+    }
+
+    /**
+     * checks the appointments against the business hours and overlap rules and adds the ones that pass within a single
+     * transaction, printing a line for every appointment that was not added
+     * @param appointments the appointments to check and add
+     * @param lineNumbers the line of the file each appointment was read from
+     * @param dryRun true to only check the appointments
+     * @return the number of appointments rejected by the rules, the number that passed and the number added
+     * @throws SQLException if the database could not be reached
+     */
+    private static int[] checkAndAdd(List<Appointment> appointments, List<Integer> lineNumbers, boolean dryRun)
+            throws SQLException {
+        ScheduleRules.Violation[] violations = ScheduleRules.validate(appointments);
+        List<Appointment> accepted = new ArrayList<>();
+        List<Integer> acceptedLines = new ArrayList<>();
+        int rejected = 0;
+        for (int row = 0; row < appointments.size(); row++) {
+            if (violations[row] == null) {
+                accepted.add(appointments.get(row));
+                acceptedLines.add(lineNumbers.get(row));
+            } else {
+                System.out.println("line " + lineNumbers.get(row) + ": " + violations[row]);
+                rejected++;
+            }
+        }
+        if (dryRun || accepted.isEmpty()) { return new int[] {rejected, accepted.size(), 0}; }
+
+        BatchResult result = new DBAccess().addAppointments(accepted);
+        for (int row = 0; row < result.size(); row++) {
+            if (result.outcome(row) != BatchResult.Outcome.WRITTEN) {
+                System.out.println("line " + acceptedLines.get(row) + ": " + result.outcome(row) + " " +
+                        result.reason(row));
+            }
+        }
+        return new int[] {rejected, accepted.size(), result.count(BatchResult.Outcome.WRITTEN)};
+    }
+
+    /**
+     * finds where each required column is within the header
+     */
+    private static Map<String, Integer> columnPositions(List<String> header) throws IOException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = 0; i < header.size(); i++) { positions.put(header.get(i).trim().toLowerCase(), i); }
+        Map<String, Integer> columns = new HashMap<>();
+        for (String column : COLUMNS) {
+            Integer position = positions.get(column.toLowerCase());
+            if (position == null) { throw new IOException("missing column " + column); }
+            columns.put(column, position);
+        }
+        return columns;
+    }
+
+    /**
+     * creates an appointment from the fields of a row, the id is left as zero until the row is added
+     */
+    private static Appointment toAppointment(List<String> fields, Map<String, Integer> columns) {
+        return new Appointment(0, fields.get(columns.get("Title")), fields.get(columns.get("Description")),
+                fields.get(columns.get("Location")), Integer.parseInt(fields.get(columns.get("Contact_ID")).trim()),
+                fields.get(columns.get("Type")), parseTime(fields.get(columns.get("Start"))),
+                parseTime(fields.get(columns.get("End"))),
+                Integer.parseInt(fields.get(columns.get("Customer_ID")).trim()),
+                Integer.parseInt(fields.get(columns.get("User_ID")).trim()));
+    }
+
+    /**
+     * reads a date time with an offset, or without one in the time zone of the computer
+     */
+    private static ZonedDateTime parseTime(String text) {
+        String value = text.trim();
+        try {
+            return OffsetDateTime.parse(value).atZoneSameInstant(ZoneId.systemDefault());
+        } catch (DateTimeParseException e) {
+            return LocalDateTime.parse(value).atZone(ZoneId.systemDefault());
+        }
+    }
+
+    /**
+     * @return true if the text ends within a quoted field, the doubled quotes within a field counting twice
+     */
+    private static boolean openQuote(CharSequence text) {
+        boolean open = false;
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) == '"') { open = !open; }
+        }
+        return open;
+    }
+
+    /**
+     * splits a CSV row into its fields, allowing fields to be quoted and quotes to be doubled within them
+     */
+    static List<String> parseLine(String line) {
+        List<String> fields = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                fields.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        fields.add(field.toString());
+        return fields;
+    }
+}
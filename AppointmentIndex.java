@@ -0,0 +1,258 @@
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * In-memory index of the appointments keyed by their start and end instants. Each appointment is held in an interval
+ * tree for the whole schedule as well as one for its customer, its contact and its user, so range lookups and overlap
+ * checks only visit the appointments that matter instead of scanning the whole table.
+ *
+ * The index is filled from the appointments table the first time it is needed and kept up to date by the insert,
+ * update and delete methods of the database access class.
+ */
+public final class AppointmentIndex {
+
+    /**
+     * the ways the appointments are grouped within the index
+     */
+    public enum Scope { ALL, CUSTOMER, CONTACT, USER }
+
+    //holds the single index shared through out the program
+    private static final AppointmentIndex INSTANCE = new AppointmentIndex();
+
+    //guards the maps and trees, lookups share the lock while changes hold it alone
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+
+    //holds the appointments by id
+    private final Map<Integer, Appointment> byId = new HashMap<>();
+    //holds the start and end the appointment was indexed with, so it can be found again once changed
+    private final Map<Integer, long[]> indexedTimes = new HashMap<>();
+    //holds the tree of every appointment
+    private final IntervalTree all = new IntervalTree();
+    //holds a tree per customer, contact and user id
+    private final Map<Integer, IntervalTree> byCustomer = new HashMap<>();
+    private final Map<Integer, IntervalTree> byContact = new HashMap<>();
+    private final Map<Integer, IntervalTree> byUser = new HashMap<>();
+
+    //whether the index has been filled from the database
+    private volatile boolean loaded = false;
+
+    private AppointmentIndex() {}
+
+    /**
+     * @return the appointment index shared through out the program
+     */
+    public static AppointmentIndex getInstance() {
+        return INSTANCE;
+    }
+
+    /**
+     * fills the index from the database if it has not been filled yet
+     * @return the index, ready to be queried
+     * @throws SQLException if the appointments could not be read
+     */
+    public AppointmentIndex ensureLoaded() throws SQLException {
+        if (!loaded) {
+            //reading the appointments through the database access class fills the index
+            new DBAccess().getAppointmentArray();
+        }
+        return this;
+    }
+
+    /**
+     * replaces the contents of the index with the passed in appointments
+     * @param appointments every appointment within the appointments table
+     */
+    public void load(Collection<Appointment> appointments) {
+        lock.writeLock().lock();
+        try {
+            byId.clear();
+            indexedTimes.clear();
+            byCustomer.clear();
+            byContact.clear();
+            byUser.clear();
+            all.clear();
+            for (Appointment appointment : appointments) { add(appointment); }
+            loaded = true;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * marks the index as out of date so it is filled again from the database on next use
+     */
+    public void invalidate() {
+        loaded = false;
+    }
+
+    /**
+     * adds the appointment to the index, or moves it if an appointment with the same id is already held
+     * @param appointment the inserted or updated appointment
+     */
+    public void put(Appointment appointment) {
+        lock.writeLock().lock();
+        try {
+            removeHeld(appointment.getAppointment_ID());
+            add(appointment);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * removes the appointment from the index
+     * @param appointmentId the id of the deleted appointment
+     */
+    public void remove(int appointmentId) {
+        lock.writeLock().lock();
+        try {
+            removeHeld(appointmentId);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * @param appointmentId the appointment id
+     * @return the appointment held by the index, null if it is not held
+     */
+    public Appointment get(int appointmentId) {
+        lock.readLock().lock();
+        try {
+            return byId.get(appointmentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * @return the number of appointments held by the index
+     */
+    public int size() {
+        lock.readLock().lock();
+        try {
+            return byId.size();
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * returns the appointments starting within [from, to) in order of start time
+     * @param scope how the appointments are grouped
+     * @param id the customer, contact or user id, ignored for the whole schedule
+     * @param from the inclusive lower bound
+     * @param to the exclusive upper bound
+     * @return the matching appointments
+     */
+    public List<Appointment> startingBetween(Scope scope, int id, Instant from, Instant to) {
+        List<Appointment> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = tree(scope, id);
+            if (tree != null) {
+                tree.startingBetween(from.getEpochSecond(), to.getEpochSecond(), appointmentId -> result.add(byId.get(appointmentId)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * returns the appointments overlapping [from, to) in order of start time
+     * @param scope how the appointments are grouped
+     * @param id the customer, contact or user id, ignored for the whole schedule
+     * @param from the start of the range
+     * @param to the end of the range
+     * @return the overlapping appointments
+     */
+    public List<Appointment> overlapping(Scope scope, int id, Instant from, Instant to) {
+        List<Appointment> result = new ArrayList<>();
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = tree(scope, id);
+            if (tree != null) {
+                tree.overlapping(from.getEpochSecond(), to.getEpochSecond(), appointmentId -> result.add(byId.get(appointmentId)));
+            }
+        } finally {
+            lock.readLock().unlock();
+        }
+        return result;
+    }
+
+    /**
+     * checks to see if [start, end) overlaps any appointment within the group
+     * @param scope how the appointments are grouped
+     * @param id the customer, contact or user id, ignored for the whole schedule
+     * @param start the start of the proposed appointment
+     * @param end the end of the proposed appointment
+     * @param excludeAppointmentId an appointment to ignore, such as the one being modified, -1 to ignore none
+     * @return true if there is an overlap
+     */
+    public boolean overlaps(Scope scope, int id, Instant start, Instant end, int excludeAppointmentId) {
+        lock.readLock().lock();
+        try {
+            IntervalTree tree = tree(scope, id);
+            return tree != null && tree.anyOverlap(start.getEpochSecond(), end.getEpochSecond(), excludeAppointmentId);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * returns the tree for the group, null if the group has no appointments
+     */
+    private IntervalTree tree(Scope scope, int id) {
+        switch (scope) {
+            case CUSTOMER: return byCustomer.get(id);
+            case CONTACT: return byContact.get(id);
+            case USER: return byUser.get(id);
+            default: return all;
+        }
+    }
+
+    /**
+     * adds the appointment to every tree it belongs to, the write lock must be held
+     */
+    private void add(Appointment appointment) {
+        int id = appointment.getAppointment_ID();
+        long start = appointment.getStartEpochSecond();
+        long end = appointment.getEndEpochSecond();
+
+        byId.put(id, appointment);
+        indexedTimes.put(id, new long[]{start, end, appointment.getCustomer_ID(), appointment.getContact_ID(),
+                appointment.getUser_ID()});
+        all.insert(id, start, end);
+        byCustomer.computeIfAbsent(appointment.getCustomer_ID(), k -> new IntervalTree()).insert(id, start, end);
+        byContact.computeIfAbsent(appointment.getContact_ID(), k -> new IntervalTree()).insert(id, start, end);
+        byUser.computeIfAbsent(appointment.getUser_ID(), k -> new IntervalTree()).insert(id, start, end);
+    }
+
+    /**
+     * removes the appointment from every tree it was added to, the write lock must be held
+     */
+    private void removeHeld(int id) {
+        long[] times = indexedTimes.remove(id);
+        if (times == null) { return; }
+        byId.remove(id);
+        all.remove(id, times[0]);
+        removeFrom(byCustomer, (int) times[2], id, times[0]);
+        removeFrom(byContact, (int) times[3], id, times[0]);
+        removeFrom(byUser, (int) times[4], id, times[0]);
+    }
+
+    private static void removeFrom(Map<Integer, IntervalTree> trees, int key, int id, long start) {
+        IntervalTree tree = trees.get(key);
+        if (tree != null) {
+            tree.remove(id, start);
+            if (tree.size() == 0) { trees.remove(key); }
+        }
+    }
+}
@@ -0,0 +1,463 @@
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Consumer;
+import java.util.function.Function;
+import java.util.function.IntConsumer;
+
+/**
+ * Paged source of appointments for the main form's table. Rather than reading the whole appointments table, the pager
+ * reads one page at a time using keyset pagination: each page continues from the sort value and id of the last row
+ * already shown, so the database jumps straight to it through the index instead of counting past an offset. Only a
+ * bounded window of rows is kept, pages that scroll far out of view are dropped and read again if the user scrolls
+ * back to them.
+ *
+ * Sorting is done by the database on any of the table's columns. The columns are taken from a fixed list, never from
+ * user text, so they are safe to place within the SQL, and each shape of page read is prepared once per connection
+ * through the {@link StatementRegistry}. Missing values sort first, as the database sorts NULL, and the keyset
+ * continues across them.
+ *
+ * After the appointments have been changed the rows are brought up to date with {@link #sync}, which reads only the
+ * appointments changed since the last read from the appointment change log and inserts, replaces or removes just those
+ * rows. Without the change log it falls back to reading the first page again.
+ *
+ * All methods are called on the JavaFX Application Thread, the reads themselves run on the {@link AsyncDataService}.
+ */
+public final class AppointmentPager {
+
+    /**
+     * the columns the appointments are able to be sorted by, named the same as the table's cell value properties
+     */
+    public enum SortColumn {
+        APPOINTMENT_ID("Appointment_ID", false, Appointment::getAppointment_ID),
+        TITLE("Title", true, Appointment::getTitle),
+        DESCRIPTION("Description", true, Appointment::getDescription),
+        LOCATION("Location", true, Appointment::getLocation),
+        CONTACT_ID("Contact_ID", false, Appointment::getContact_ID),
+        TYPE("Type", true, Appointment::getType),
+        START("Start", false, appointment -> utc(appointment.getStartInstant())),
+        END("End", false, appointment -> utc(appointment.getEndInstant())),
+        CUSTOMER_ID("Customer_ID", false, Appointment::getCustomer_ID),
+        USER_ID("User_ID", false, Appointment::getUser_ID);
+
+        private final String column;
+        //whether the column may hold NULL, which sorts before every value
+        private final boolean nullable;
+        private final Function<Appointment, Object> key;
+
+        SortColumn(String column, boolean nullable, Function<Appointment, Object> key) {
+            this.column = column;
+            this.nullable = nullable;
+            this.key = key;
+        }
+
+        /**
+         * @return the name of the column within the appointments table
+         */
+        public String column() {
+            return column;
+        }
+    }
+
+    //the rows currently held, used as the items of the table
+    private final ObservableList<Appointment> rows = FXCollections.observableArrayList();
+    //how many rows are read at a time
+    private final int pageSize;
+    //the most rows held at once, pages beyond this are dropped from the far end of the window
+    private final int maxRows;
+
+    //only the latest reload is shown, a newer reload cancels the one still running
+    private final AsyncDataService.Latest<FirstPage> reloads = AsyncDataService.getInstance().latest();
+    //only the latest sync is applied, a newer sync cancels the one still running
+    private final AsyncDataService.Latest<AppointmentChanges> syncs = AsyncDataService.getInstance().latest();
+    //the page being read next to the window, null when no page is being read
+    private CompletableFuture<List<Appointment>> pending;
+    //counts the reloads so a page read for an earlier window is never added to the current one
+    private long generation;
+    //the last change of the appointment change log the rows include, -1 when the log could not be read
+    private long watermark = -1;
+
+    //the optional range of start times shown, null when every appointment is shown
+    private Instant from;
+    private Instant to;
+    //the current sort
+    private SortColumn sortColumn = SortColumn.START;
+    private boolean ascending = true;
+    //whether there are more rows before the first or after the last row held
+    private boolean moreBefore;
+    private boolean moreAfter;
+
+    /**
+     * returns a pager sized by the table.pageSize and table.maxRows settings of the database settings file
+     * @return a new pager
+     */
+    public static AppointmentPager fromSettings() {
+        Properties settings = ConnectionPool.loadProperties();
+        return new AppointmentPager(Integer.parseInt(settings.getProperty("table.pageSize", "100")),
+                Integer.parseInt(settings.getProperty("table.maxRows", "500")));
+    }
+
+    /**
+     * @param pageSize how many rows are read at a time
+     * @param maxRows the most rows held at once, at least two pages
+     */
+    public AppointmentPager(int pageSize, int maxRows) {
+        this.pageSize = pageSize;
+        this.maxRows = Math.max(maxRows, pageSize * 2);
+    }
+
+    /**
+     * @return the rows currently held, to be used as the items of the table
+     */
+    public ObservableList<Appointment> getRows() {
+        return rows;
+    }
+
+    /**
+     * shows the appointments starting within [from, to), or every appointment if both are null, from the first page
+     * @param from the inclusive start of the range, null for no range
+     * @param to the exclusive end of the range, null for no range
+     * @param onLoaded called once the first page is shown
+     * @param onFailure receives the error if the first page could not be read
+     */
+    public void show(Instant from, Instant to, Runnable onLoaded, Consumer<? super Throwable> onFailure) {
+        this.from = from;
+        this.to = to;
+        reload(onLoaded, onFailure);
+    }
+
+    /**
+     * sorts the appointments by the column and shows them from the first page
+     * @param sortColumn the column to sort by
+     * @param ascending true for smallest first
+     * @param onLoaded called once the first page is shown
+     * @param onFailure receives the error if the first page could not be read
+     */
+    public void sortBy(SortColumn sortColumn, boolean ascending, Runnable onLoaded,
+                       Consumer<? super Throwable> onFailure) {
+        this.sortColumn = sortColumn;
+        this.ascending = ascending;
+        reload(onLoaded, onFailure);
+    }
+
+    /**
+     * @param sortColumn the column to compare against
+     * @param ascending the direction to compare against
+     * @return true if the rows are already sorted this way
+     */
+    public boolean isSortedBy(SortColumn sortColumn, boolean ascending) {
+        return this.sortColumn == sortColumn && this.ascending == ascending;
+    }
+
+    /**
+     * reads the first page again with the current range and sort, used after the appointments have been changed
+     * @param onLoaded called once the first page is shown
+     * @param onFailure receives the error if the first page could not be read
+     */
+    public void reload(Runnable onLoaded, Consumer<? super Throwable> onFailure) {
+        //drops any page still being read for the old window
+        generation++;
+        if (pending != null) {
+            pending.cancel(true);
+            pending = null;
+        }
+        rows.clear();
+
+        syncs.cancel();
+
+        Query query = query(true, null);
+        reloads.submit(() -> {
+            //takes the watermark before the page so changes made while it is read are picked up by the next sync
+            long mark = readWatermark();
+            return new FirstPage(mark, read(query));
+        }, first -> {
+            watermark = first.watermark;
+            rows.setAll(first.rows);
+            moreBefore = false;
+            moreAfter = first.rows.size() == pageSize;
+            onLoaded.run();
+        }, onFailure);
+    }
+
+    /**
+     * shows every appointment in order of start time. When that is already what the rows hold, only the appointments
+     * changed since they were read are applied, so a main form opened again keeps its rows
+     * @param onLoaded called once the rows are up to date
+     * @param onFailure receives the error if the rows could not be read
+     */
+    public void showAll(Runnable onLoaded, Consumer<? super Throwable> onFailure) {
+        if (from == null && to == null && isSortedBy(SortColumn.START, true) && watermark >= 0) {
+            sync(onLoaded, onFailure);
+        } else {
+            from = null;
+            to = null;
+            sortColumn = SortColumn.START;
+            ascending = true;
+            reload(onLoaded, onFailure);
+        }
+    }
+
+    /**
+     * brings the rows up to date with the appointments changed since they were read, touching only the changed rows.
+     * Reads the first page again instead when the change log is not available or no longer reaches back far enough
+     * @param onLoaded called once the rows are up to date
+     * @param onFailure receives the error if the rows could not be read
+     */
+    public void sync(Runnable onLoaded, Consumer<? super Throwable> onFailure) {
+        if (watermark < 0) {
+            reload(onLoaded, onFailure);
+            return;
+        }
+        long request = generation;
+        long since = watermark;
+        syncs.submit(() -> new DBAccess().getAppointmentChangesSince(since), changes -> {
+            if (request != generation) { return; }
+            if (!changes.isComplete()) {
+                reload(onLoaded, onFailure);
+                return;
+            }
+            watermark = changes.getWatermark();
+            apply(changes);
+            onLoaded.run();
+        }, error -> {
+            //reads everything again, for example when the change log table has not been created
+            if (request == generation) { reload(onLoaded, onFailure); }
+        });
+    }
+
+    /**
+     * removes the changed and deleted appointments from the rows and inserts the changed ones again at their place
+     * within the sort, leaving out the ones that belong to the rows not held
+     */
+    private void apply(AppointmentChanges changes) {
+        if (changes.isEmpty()) { return; }
+        Set<Integer> touched = new HashSet<>();
+        for (int id : changes.getRemoved()) { touched.add(id); }
+        for (Appointment appointment : changes.getChanged()) { touched.add(appointment.getAppointment_ID()); }
+        rows.removeIf(appointment -> touched.contains(appointment.getAppointment_ID()));
+
+        for (Appointment appointment : changes.getChanged()) {
+            if (from != null && to != null && (appointment.getStartInstant().isBefore(from)
+                    || !appointment.getStartInstant().isBefore(to))) { continue; }
+            int index = Collections.binarySearch(rows, appointment, this::compare);
+            index = index < 0 ? -index - 1 : index;
+            //a row sorting before the first or after the last row held belongs to a page that is not held
+            if ((index == 0 && moreBefore) || (index == rows.size() && moreAfter)) { continue; }
+            rows.add(index, appointment);
+        }
+
+        //drops rows from the end of the window once it holds too many rows
+        int excess = rows.size() - maxRows;
+        if (excess > 0) {
+            rows.remove(rows.size() - excess, rows.size());
+            moreAfter = true;
+        }
+    }
+
+    /**
+     * compares two appointments the way the database sorts the rows, by the sort column and then the id
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private int compare(Appointment a, Appointment b) {
+        int result = 0;
+        if (sortColumn != SortColumn.APPOINTMENT_ID) {
+            Comparable keyA = (Comparable) sortColumn.key.apply(a);
+            Comparable keyB = (Comparable) sortColumn.key.apply(b);
+            //sorts missing values first, the same as the database
+            result = keyA == null ? (keyB == null ? 0 : -1) : keyB == null ? 1 : keyA.compareTo(keyB);
+        }
+        if (result == 0) { result = Integer.compare(a.getAppointment_ID(), b.getAppointment_ID()); }
+        return ascending ? result : -result;
+    }
+
+    /**
+     * reads the latest change of the change log, -1 if it could not be read so the next sync reads everything again
+     */
+    private static long readWatermark() {
+        try {
+            return new DBAccess().getAppointmentWatermark();
+        } catch (SQLException e) {
+            return -1;
+        }
+    }
+
+    /**
+     * reads the page following the last row held, dropping rows from the start of the window once it is full
+     * @param scrollTo receives the index of the row that was last before the page was added, so the view is able to
+     *                 keep its place
+     */
+    public void loadNext(IntConsumer scrollTo) {
+        if (!moreAfter || pending != null || rows.isEmpty()) { return; }
+        long request = generation;
+        int lastIndex = rows.size() - 1;
+        Query query = query(true, rows.get(lastIndex));
+        pending = AsyncDataService.getInstance().submit(() -> read(query), page -> {
+            if (request != generation) { return; }
+            pending = null;
+            moreAfter = page.size() == pageSize;
+            rows.addAll(page);
+
+            //drops whole pages from the start of the window once it holds too many rows
+            int excess = rows.size() - maxRows;
+            if (excess > 0) {
+                rows.remove(0, excess);
+                moreBefore = true;
+            }
+            scrollTo.accept(Math.max(0, lastIndex - Math.max(0, excess)));
+        }, error -> {
+            if (request == generation) { pending = null; }
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * reads the page before the first row held, used once rows have been dropped from the start of the window
+     * @param scrollTo receives the index of the row that was first before the page was added, so the view is able to
+     *                 keep its place
+     */
+    public void loadPrevious(IntConsumer scrollTo) {
+        if (!moreBefore || pending != null || rows.isEmpty()) { return; }
+        long request = generation;
+        Query query = query(false, rows.get(0));
+        pending = AsyncDataService.getInstance().submit(() -> read(query), page -> {
+            if (request != generation) { return; }
+            pending = null;
+            moreBefore = page.size() == pageSize;
+            rows.addAll(0, page);
+
+            //drops rows from the end of the window once it holds too many rows
+            int excess = rows.size() - maxRows;
+            if (excess > 0) {
+                rows.remove(rows.size() - excess, rows.size());
+                moreAfter = true;
+            }
+            scrollTo.accept(page.size());
+        }, error -> {
+            if (request == generation) { pending = null; }
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * builds the query for a page, taken on the JavaFX thread so the background read does not touch the pager
+     * @param forward true to read the page after the row, false for the page before it
+     * @param edge the row to continue from, null for the first page
+     */
+    private Query query(boolean forward, Appointment edge) {
+        //reading backwards runs the sort in reverse, the rows are put back in order once read
+        boolean readAscending = ascending == forward;
+        String order = readAscending ? "ASC" : "DESC";
+        String comparison = readAscending ? ">" : "<";
+
+        StringBuilder sql = new StringBuilder();
+        List<Object> parameters = new ArrayList<>();
+        String joiner = " WHERE ";
+        if (from != null && to != null) {
+            sql.append(joiner).append("Start >= ? AND Start < ?");
+            parameters.add(utc(from));
+            parameters.add(utc(to));
+            joiner = " AND ";
+        }
+        if (edge != null) {
+            if (sortColumn == SortColumn.APPOINTMENT_ID) {
+                sql.append(joiner).append("Appointment_ID ").append(comparison).append(" ?");
+            } else {
+                //continues after the sort value of the edge row, using the id to order rows sharing that value
+                String column = sortColumn.column();
+                Object key = sortColumn.key.apply(edge);
+                if (key == null) {
+                    //NULL sorts first, so reading on after a missing value passes the rest of the missing values and
+                    //then every row with a value, while reading back stays within the missing values
+                    sql.append(joiner).append("((").append(column).append(" IS NULL AND Appointment_ID ")
+                            .append(comparison).append(" ?)");
+                    if (readAscending) { sql.append(" OR ").append(column).append(" IS NOT NULL"); }
+                    sql.append(')');
+                } else {
+                    sql.append(joiner).append('(').append(column).append(' ').append(comparison).append(" ? OR (")
+                            .append(column).append(" = ? AND Appointment_ID ").append(comparison).append(" ?)");
+                    //reading back from a value reaches the missing values at the start
+                    if (!readAscending && sortColumn.nullable) {
+                        sql.append(" OR ").append(column).append(" IS NULL");
+                    }
+                    sql.append(')');
+                    parameters.add(key);
+                    parameters.add(key);
+                }
+            }
+            parameters.add(edge.getAppointment_ID());
+        }
+        sql.append(" ORDER BY ");
+        if (sortColumn != SortColumn.APPOINTMENT_ID) {
+            sql.append(sortColumn.column()).append(' ').append(order).append(", ");
+        }
+        sql.append("Appointment_ID ").append(order).append(" LIMIT ?");
+        parameters.add(pageSize);
+        return new Query(sql.toString(), parameters, !forward);
+    }
+
+    /**
+     * reads a page on a borrowed connection
+     */
+    private static List<Appointment> read(Query query) throws SQLException {
+        List<Appointment> page = new ArrayList<>();
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_PAGE, query.clauses)) {
+            for (int i = 0; i < query.parameters.size(); i++) { ps.setObject(i + 1, query.parameters.get(i)); }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { page.add(AppointmentRowMapper.map(rs)); }
+            }
+        }
+        if (query.reversed) { Collections.reverse(page); }
+        return page;
+    }
+
+    /**
+     * converts the instant to the UTC timestamp stored within the appointments table
+     */
+    private static Timestamp utc(Instant instant) {
+        return Timestamp.valueOf(LocalDateTime.ofInstant(instant, ZoneOffset.UTC));
+    }
+
+    /**
+     * the first page of a reload and the change of the change log it was read at
+     */
+    private static final class FirstPage {
+        private final long watermark;
+        private final List<Appointment> rows;
+
+        FirstPage(long watermark, List<Appointment> rows) {
+            this.watermark = watermark;
+            this.rows = rows;
+        }
+    }
+
+    /**
+     * the clauses added to the page statement and the parameters of a single page read
+     */
+    private static final class Query {
+        private final String clauses;
+        private final List<Object> parameters;
+        private final boolean reversed;
+
+        Query(String clauses, List<Object> parameters, boolean reversed) {
+            this.clauses = clauses;
+            this.parameters = parameters;
+            this.reversed = reversed;
+        }
+    }
+}
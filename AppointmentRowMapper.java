@@ -0,0 +1,62 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+
+/**
+ * Turns rows of the appointments table into appointments. Every statement reading appointments selects
+ * {@link #COLUMNS} in the same order, so the columns are read by position rather than looked up by name, the ids are
+ * read as ints and the times as the driver's own LocalDateTime rather than being parsed from text. The appointment
+ * keeps the times as seconds from the epoch and only shows them in a zone when asked, so building an appointment costs
+ * the same small number of objects whatever the row holds.
+ */
+public final class AppointmentRowMapper {
+
+    //the columns every appointments query selects, in the order they are read
+    public static final String COLUMNS = "Appointment_ID, Title, Description, Location, Contact_ID, Type, Start, End, " +
+            "Customer_ID, User_ID";
+
+    //the position of each column within COLUMNS
+    private static final int APPOINTMENT_ID = 1;
+    private static final int TITLE = 2;
+    private static final int DESCRIPTION = 3;
+    private static final int LOCATION = 4;
+    private static final int CONTACT_ID = 5;
+    private static final int TYPE = 6;
+    private static final int START = 7;
+    private static final int END = 8;
+    private static final int CUSTOMER_ID = 9;
+    private static final int USER_ID = 10;
+
+    private AppointmentRowMapper() {}
+
+    /**
+     * creates an appointment from the current row of a result selecting {@link #COLUMNS}
+     * @param rs the result positioned on an appointments row
+     * @return the appointment held by the row
+     * @throws SQLException if a column could not be read
+     */
+    public static Appointment map(ResultSet rs) throws SQLException {
+        return new Appointment(rs.getInt(APPOINTMENT_ID), rs.getString(TITLE), rs.getString(DESCRIPTION),
+                rs.getString(LOCATION), rs.getInt(CONTACT_ID), rs.getString(TYPE), epochSecond(rs, START),
+                epochSecond(rs, END), rs.getInt(CUSTOMER_ID), rs.getInt(USER_ID));
+    }
+
+    /**
+     * reads a stored time as it is kept in the database, without moving it out of UTC
+     * @param rs the result positioned on a row
+     * @param column the position of the time within the row
+     * @return the stored time
+     * @throws SQLException if the column could not be read
+     */
+    public static LocalDateTime readUtc(ResultSet rs, int column) throws SQLException {
+        return rs.getObject(column, LocalDateTime.class);
+    }
+
+    /**
+     * reads a stored UTC time as seconds from the epoch
+     */
+    private static long epochSecond(ResultSet rs, int column) throws SQLException {
+        return rs.getObject(column, LocalDateTime.class).toEpochSecond(ZoneOffset.UTC);
+    }
+}
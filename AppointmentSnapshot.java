@@ -0,0 +1,376 @@
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.IntPredicate;
+import java.util.function.IntUnaryOperator;
+
+/**
+ * A read-only copy of the appointments held column by column in primitive arrays, for reports and scans over more
+ * appointments than are worth keeping as Appointment objects. Each appointment is a row number, the ids and times are
+ * read from the int and long columns, and the type and location are stored as codes into a dictionary of the distinct
+ * values, so a row costs a few dozen bytes and no objects. The title and description are left out, the snapshot is not
+ * meant for showing single appointments.
+ *
+ * Sets of rows are passed around as int arrays of row numbers, as returned by {@link #rows()}, {@link #filter} and
+ * {@link #sort}, so filtering, sorting and grouping never box a value.
+ */
+public final class AppointmentSnapshot {
+
+    /**
+     * compares two rows of the snapshot, by row number so nothing is boxed
+     */
+    @FunctionalInterface
+    public interface RowComparator {
+        int compare(int a, int b);
+    }
+
+    //the columns a snapshot is read from, in the order read by read(ResultSet)
+    static final String COLUMNS = "Appointment_ID, Type, Location, Start, End, Customer_ID, Contact_ID, User_ID";
+
+    private final int size;
+    private final int[] ids;
+    private final long[] starts; //epoch seconds
+    private final long[] ends; //epoch seconds
+    private final int[] customerIds;
+    private final int[] contactIds;
+    private final int[] userIds;
+    private final int[] typeCodes;
+    private final int[] locationCodes;
+    private final String[] types; //the distinct types, indexed by type code
+    private final String[] locations; //the distinct locations, indexed by location code
+
+    /**
+     * takes over the builder's columns rather than copying them, the builder is not used again
+     */
+    private AppointmentSnapshot(Builder builder) {
+        builder.trim();
+        size = builder.size;
+        ids = builder.ids;
+        starts = builder.starts;
+        ends = builder.ends;
+        customerIds = builder.customerIds;
+        contactIds = builder.contactIds;
+        userIds = builder.userIds;
+        typeCodes = builder.typeCodes;
+        locationCodes = builder.locationCodes;
+        types = builder.types.dictionary();
+        locations = builder.locations.dictionary();
+    }
+
+    /**
+     * @return the number of appointments within the snapshot
+     */
+    public int size() { return size; }
+
+    /**
+     * @return the id of the row's appointment
+     */
+    public int id(int row) { return ids[row]; }
+
+    /**
+     * @return the start of the row's appointment in seconds from the epoch
+     */
+    public long start(int row) { return starts[row]; }
+
+    /**
+     * @return the end of the row's appointment in seconds from the epoch
+     */
+    public long end(int row) { return ends[row]; }
+
+    /**
+     * @return the length of the row's appointment in seconds
+     */
+    public long duration(int row) { return ends[row] - starts[row]; }
+
+    /**
+     * @return the id of the customer the row's appointment is with
+     */
+    public int customerId(int row) { return customerIds[row]; }
+
+    /**
+     * @return the id of the contact the row's appointment is with
+     */
+    public int contactId(int row) { return contactIds[row]; }
+
+    /**
+     * @return the id of the user the row's appointment belongs to
+     */
+    public int userId(int row) { return userIds[row]; }
+
+    /**
+     * @return the code of the row's type, an index into {@link #typeName}
+     */
+    public int typeCode(int row) { return typeCodes[row]; }
+
+    /**
+     * @return the type of the row's appointment, an empty string for none
+     */
+    public String type(int row) { return types[typeCodes[row]]; }
+
+    /**
+     * @return the code of the row's location, an index into {@link #locationName}
+     */
+    public int locationCode(int row) { return locationCodes[row]; }
+
+    /**
+     * @return the location of the row's appointment, an empty string for none
+     */
+    public String location(int row) { return locations[locationCodes[row]]; }
+
+    /**
+     * @return the number of distinct types, the codes run from 0 to one less than it
+     */
+    public int typeCount() { return types.length; }
+
+    /**
+     * @return the type a code stands for, as returned by {@link #typeCode}
+     */
+    public String typeName(int code) { return types[code]; }
+
+    /**
+     * @return the code of the type, or -1 if no appointment has it
+     */
+    public int typeCode(String type) { return indexOf(types, type); }
+
+    /**
+     * @return the number of distinct locations, the codes run from 0 to one less than it
+     */
+    public int locationCount() { return locations.length; }
+
+    /**
+     * @return the location a code stands for, as returned by {@link #locationCode}
+     */
+    public String locationName(int code) { return locations[code]; }
+
+    /**
+     * @return the code of the location, or -1 if no appointment has it
+     */
+    public int locationCode(String location) { return indexOf(locations, location); }
+
+    /**
+     * @return every row of the snapshot in the order it was read
+     */
+    public int[] rows() {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) { rows[row] = row; }
+        return rows;
+    }
+
+    /**
+     * @param rows the rows to filter
+     * @param test the test each kept row passes
+     * @return the rows passing the test, in the order given
+     */
+    public int[] filter(int[] rows, IntPredicate test) {
+        int[] kept = new int[rows.length];
+        int count = 0;
+        for (int row : rows) {
+            if (test.test(row)) { kept[count++] = row; }
+        }
+        return Arrays.copyOf(kept, count);
+    }
+
+    /**
+     * @param rows the rows to filter
+     * @param from the inclusive start of the range in seconds from the epoch
+     * @param to the exclusive end of the range in seconds from the epoch
+     * @return the rows starting within [from, to), in the order given
+     */
+    public int[] startingBetween(int[] rows, long from, long to) {
+        return filter(rows, row -> starts[row] >= from && starts[row] < to);
+    }
+
+    /**
+     * sorts a copy of the rows with a stable merge sort, so rows comparing equal keep their order
+     * @param rows the rows to sort
+     * @param comparator the order of the rows
+     * @return the sorted rows
+     */
+    public int[] sort(int[] rows, RowComparator comparator) {
+        int[] sorted = rows.clone();
+        int[] buffer = new int[sorted.length];
+        for (int width = 1; width < sorted.length; width *= 2) {
+            for (int low = 0; low < sorted.length - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, sorted.length);
+                //skips the merge when the two runs are already in order
+                if (comparator.compare(sorted[middle - 1], sorted[middle]) <= 0) { continue; }
+                System.arraycopy(sorted, low, buffer, low, high - low);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    if (right >= high || (left < middle && comparator.compare(buffer[left], buffer[right]) <= 0)) {
+                        sorted[i] = buffer[left++];
+                    } else {
+                        sorted[i] = buffer[right++];
+                    }
+                }
+            }
+        }
+        return sorted;
+    }
+
+    /**
+     * @return the rows sorted by start, then by id
+     */
+    public int[] sortByStart(int[] rows) {
+        return sort(rows, (a, b) -> starts[a] != starts[b] ? Long.compare(starts[a], starts[b])
+                : Integer.compare(ids[a], ids[b]));
+    }
+
+    /**
+     * counts the rows within each group
+     * @param rows the rows to count
+     * @param group gives the group of a row, from 0 to one less than groups, or a negative number to leave it out
+     * @param groups the number of groups
+     * @return the number of rows within each group, indexed by group
+     */
+    public int[] countBy(int[] rows, IntUnaryOperator group, int groups) {
+        int[] counts = new int[groups];
+        for (int row : rows) {
+            int key = group.applyAsInt(row);
+            if (key >= 0) { counts[key]++; }
+        }
+        return counts;
+    }
+
+    /**
+     * adds up the length of the rows within each group, as used for utilization
+     * @param rows the rows to add up
+     * @param group gives the group of a row, from 0 to one less than groups, or a negative number to leave it out
+     * @param groups the number of groups
+     * @return the total seconds booked within each group, indexed by group
+     */
+    public long[] durationBy(int[] rows, IntUnaryOperator group, int groups) {
+        long[] totals = new long[groups];
+        for (int row : rows) {
+            int key = group.applyAsInt(row);
+            if (key >= 0) { totals[key] += ends[row] - starts[row]; }
+        }
+        return totals;
+    }
+
+    /**
+     * @return the number of rows of each type, indexed by type code
+     */
+    public int[] countByType(int[] rows) {
+        return countBy(rows, row -> typeCodes[row], types.length);
+    }
+
+    private static int indexOf(String[] dictionary, String value) {
+        for (int code = 0; code < dictionary.length; code++) {
+            if (dictionary[code].equals(value)) { return code; }
+        }
+        return -1;
+    }
+
+    /**
+     * reads a snapshot from a result selecting {@link #COLUMNS}, in one pass over the rows
+     * @param rs the result, positioned before the first row
+     * @return the snapshot of the rows
+     * @throws SQLException if a row could not be read
+     */
+    static AppointmentSnapshot read(ResultSet rs) throws SQLException {
+        Builder builder = new Builder();
+        while (rs.next()) {
+            builder.add(rs.getInt(1), rs.getString(2), rs.getString(3),
+                    rs.getObject(4, LocalDateTime.class).toEpochSecond(ZoneOffset.UTC),
+                    rs.getObject(5, LocalDateTime.class).toEpochSecond(ZoneOffset.UTC), rs.getInt(6), rs.getInt(7),
+                    rs.getInt(8));
+        }
+        return builder.build();
+    }
+
+    /**
+     * collects the rows of a snapshot, growing the columns as needed
+     */
+    static final class Builder {
+        private int size;
+        private int[] ids = new int[1024];
+        private long[] starts = new long[1024];
+        private long[] ends = new long[1024];
+        private int[] customerIds = new int[1024];
+        private int[] contactIds = new int[1024];
+        private int[] userIds = new int[1024];
+        private int[] typeCodes = new int[1024];
+        private int[] locationCodes = new int[1024];
+        private final Dictionary types = new Dictionary();
+        private final Dictionary locations = new Dictionary();
+
+        Builder add(int id, String type, String location, long start, long end, int customerId, int contactId,
+                    int userId) {
+            if (size == ids.length) {
+                int capacity = size * 2;
+                ids = Arrays.copyOf(ids, capacity);
+                starts = Arrays.copyOf(starts, capacity);
+                ends = Arrays.copyOf(ends, capacity);
+                customerIds = Arrays.copyOf(customerIds, capacity);
+                contactIds = Arrays.copyOf(contactIds, capacity);
+                userIds = Arrays.copyOf(userIds, capacity);
+                typeCodes = Arrays.copyOf(typeCodes, capacity);
+                locationCodes = Arrays.copyOf(locationCodes, capacity);
+            }
+            ids[size] = id;
+            starts[size] = start;
+            ends[size] = end;
+            customerIds[size] = customerId;
+            contactIds[size] = contactId;
+            userIds[size] = userId;
+            typeCodes[size] = types.code(type);
+            locationCodes[size] = locations.code(location);
+            size++;
+            return this;
+        }
+
+        /**
+         * hands the columns over to the snapshot, after which the builder is not used again
+         */
+        AppointmentSnapshot build() {
+            return new AppointmentSnapshot(this);
+        }
+
+        /**
+         * shortens the columns to the rows added once more than a quarter of them is unused, a column at a time so
+         * only one is ever held twice. Below that the copy would cost more than the unused rows it frees
+         */
+        private void trim() {
+            if (ids.length - size <= ids.length / 4) { return; }
+            ids = Arrays.copyOf(ids, size);
+            starts = Arrays.copyOf(starts, size);
+            ends = Arrays.copyOf(ends, size);
+            customerIds = Arrays.copyOf(customerIds, size);
+            contactIds = Arrays.copyOf(contactIds, size);
+            userIds = Arrays.copyOf(userIds, size);
+            typeCodes = Arrays.copyOf(typeCodes, size);
+            locationCodes = Arrays.copyOf(locationCodes, size);
+        }
+    }
+
+    /**
+     * gives each distinct value a code in the order first seen, only used while building
+     */
+    private static final class Dictionary {
+        private final Map<String, Integer> codes = new HashMap<>();
+        private String[] values = new String[16];
+
+        int code(String value) {
+            String key = value == null ? "" : value;
+            Integer code = codes.get(key);
+            if (code == null) {
+                code = codes.size();
+                if (code == values.length) { values = Arrays.copyOf(values, code * 2); }
+                values[code] = key;
+                codes.put(key, code);
+            }
+            return code;
+        }
+
+        String[] dictionary() {
+            return Arrays.copyOf(values, codes.size());
+        }
+    }
+}
@@ -0,0 +1,182 @@
+import javafx.application.Platform;
+
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+/**
+ * Runs database work away from the JavaFX Application Thread so the forms stay responsive during every round trip.
+ * The work is handed to a background executor (virtual threads when the running Java supports them and the
+ * async.virtualThreads setting allows it, otherwise a small pool of daemon threads) and the results are handed back to
+ * the JavaFX Application Thread through {@link Platform#runLater(Runnable)}.
+ *
+ * A {@link Latest} request channel keeps only the most recent request alive, so when the user flips the date picker
+ * quickly the earlier loads are cancelled and their results are never shown.
+ */
+public final class AsyncDataService {
+
+    //holds the single service shared through out the program
+    private static volatile AsyncDataService instance;
+
+    //runs the submitted work
+    private final ExecutorService executor;
+
+    /**
+     * returns the shared service, built from the async settings of the database settings file
+     * @return the async data service
+     */
+    public static AsyncDataService getInstance() {
+        if (instance == null) {
+            synchronized (AsyncDataService.class) {
+                if (instance == null) {
+                    instance = new AsyncDataService(createExecutor());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param executor the executor running the submitted work
+     */
+    AsyncDataService(ExecutorService executor) {
+        this.executor = executor;
+    }
+
+    /**
+     * runs the work in the background, the returned future is completed on the background thread
+     * @param work the database work to run
+     * @param <T> the type of the result
+     * @return the future result of the work, cancelling it interrupts the work if it has started
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work) {
+        CompletableFuture<T> result = new CompletableFuture<>();
+        Future<?> task = executor.submit(() -> {
+            if (result.isDone()) { return; }
+            try {
+                result.complete(work.call());
+            } catch (Throwable e) {
+                result.completeExceptionally(e);
+            }
+        });
+        //passes the cancel on to the running work
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) { task.cancel(true); }
+        });
+        return result;
+    }
+
+    /**
+     * runs the work in the background and hands the outcome to one of the callbacks on the JavaFX Application Thread,
+     * neither callback is called if the returned future is cancelled
+     * @param work the database work to run
+     * @param onSuccess receives the result of the work
+     * @param onFailure receives the error thrown by the work
+     * @param <T> the type of the result
+     * @return the future result of the work
+     */
+    public <T> CompletableFuture<T> submit(Callable<T> work, Consumer<? super T> onSuccess,
+                                           Consumer<? super Throwable> onFailure) {
+        CompletableFuture<T> result = submit(work);
+        result.whenComplete((value, error) -> {
+            if (result.isCancelled()) { return; }
+            Platform.runLater(() -> {
+                if (error == null) { onSuccess.accept(value); } else { onFailure.accept(error); }
+            });
+        });
+        return result;
+    }
+
+    /**
+     * @param <T> the type of the results
+     * @return a new request channel where each request supersedes the one before it
+     */
+    public <T> Latest<T> latest() {
+        return new Latest<>(this);
+    }
+
+    /**
+     * stops accepting work, the work already submitted is allowed to finish
+     */
+    public void shutdown() {
+        executor.shutdown();
+    }
+
+    /**
+     * a channel of requests where only the most recent one is allowed to deliver its result, used for loads that
+     * replace what is displayed such as the appointment table
+     * @param <T> the type of the results
+     */
+    public static final class Latest<T> {
+        private final AsyncDataService service;
+        //counts the requests so a result is only delivered if no newer request was made
+        private final AtomicLong generation = new AtomicLong();
+        //holds the request that is currently running
+        private volatile CompletableFuture<T> current;
+
+        private Latest(AsyncDataService service) {
+            this.service = service;
+        }
+
+        /**
+         * cancels the previous request of this channel and runs the new one in the background
+         * @param work the database work to run
+         * @param onSuccess receives the result on the JavaFX Application Thread, if no newer request was made
+         * @param onFailure receives the error on the JavaFX Application Thread, if no newer request was made
+         * @return the future result of the work
+         */
+        public synchronized CompletableFuture<T> submit(Callable<T> work, Consumer<? super T> onSuccess,
+                                                        Consumer<? super Throwable> onFailure) {
+            long request = generation.incrementAndGet();
+            cancel(current);
+            current = service.submit(work,
+                    value -> { if (generation.get() == request) { onSuccess.accept(value); } },
+                    error -> { if (generation.get() == request) { onFailure.accept(error); } });
+            return current;
+        }
+
+        /**
+         * cancels the running request so its result is never delivered
+         */
+        public synchronized void cancel() {
+            generation.incrementAndGet();
+            cancel(current);
+            current = null;
+        }
+
+        private static void cancel(CompletableFuture<?> future) {
+            if (future != null) { future.cancel(true); }
+        }
+    }
+
+    /**
+     * builds the executor named by the settings, using virtual threads when the running Java has them
+     */
+    private static ExecutorService createExecutor() {
+        Properties settings = ConnectionPool.loadProperties();
+        if (Boolean.parseBoolean(settings.getProperty("async.virtualThreads", "true"))) {
+            try {
+                //looked up by name so the program still runs on versions of Java without virtual threads
+                return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (ReflectiveOperationException e) {
+                //falls through to the platform thread pool
+            }
+        }
+
+        int threads = Integer.parseInt(settings.getProperty("async.threads", "4"));
+        AtomicInteger count = new AtomicInteger();
+        ThreadFactory factory = runnable -> {
+            Thread thread = new Thread(runnable, "async-data-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        return Executors.newFixedThreadPool(threads, factory);
+    }
+}
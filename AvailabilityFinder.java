@@ -0,0 +1,132 @@
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Finds the earliest times a customer and a contact are both free for an appointment of a given length, within the
+ * business hours of {@link ScheduleRules}. The appointments of the customer and of the contact within the horizon are
+ * read from the {@link AppointmentIndex}, merged into a single sorted list of busy intervals, and the business hours of
+ * each day are walked once alongside it, so the search costs the same as reading the two schedules rather than a
+ * check per candidate time.
+ */
+public final class AvailabilityFinder {
+
+    /**
+     * a free time, [start, end)
+     */
+    public static final class Slot {
+        private static final DateTimeFormatter DAY_FORMAT = DateTimeFormatter.ofPattern("EEE yyyy-MM-dd HH:mm");
+        private static final DateTimeFormatter TIME_FORMAT = DateTimeFormatter.ofPattern("HH:mm");
+
+        private final Instant start;
+        private final Instant end;
+
+        Slot(Instant start, Instant end) {
+            this.start = start;
+            this.end = end;
+        }
+
+        public Instant getStart() { return start; }
+
+        public Instant getEnd() { return end; }
+
+        /**
+         * @return the day and times of the slot in the user's time zone, as shown by the add appointment form
+         */
+        @Override
+        public String toString() {
+            ZoneId zone = ZoneId.systemDefault();
+            return DAY_FORMAT.format(start.atZone(zone)) + " - " + TIME_FORMAT.format(end.atZone(zone));
+        }
+    }
+
+    private AvailabilityFinder() {}
+
+    /**
+     * finds the earliest free times for an appointment
+     * @param customerId the customer of the appointment
+     * @param contactId the contact of the appointment, 0 to only look at the customer's appointments
+     * @param length how long the appointment is
+     * @param from the earliest the appointment may start
+     * @param horizon how far past from to look
+     * @param count the most slots to return
+     * @param step the slots start on multiples of the step after the opening time, and the next slot of a free
+     *             stretch starts a step after the last
+     * @return up to count slots in order of start time, fewer if the horizon has no more room
+     * @throws SQLException if the appointment index had to be filled and the appointments could not be read
+     */
+    public static List<Slot> earliestSlots(int customerId, int contactId, Duration length, Instant from,
+                                           Duration horizon, int count, Duration step) throws SQLException {
+        List<Slot> slots = new ArrayList<>(count);
+        long seconds = length.getSeconds();
+        long stepSeconds = Math.max(60, step.getSeconds());
+        if (seconds <= 0 || count <= 0) { return slots; }
+
+        Instant to = from.plus(horizon);
+        AppointmentIndex index = AppointmentIndex.getInstance().ensureLoaded();
+        long[][] busy = merge(index.overlapping(AppointmentIndex.Scope.CUSTOMER, customerId, from, to),
+                contactId > 0 ? index.overlapping(AppointmentIndex.Scope.CONTACT, contactId, from, to)
+                        : new ArrayList<>());
+
+        long first = from.getEpochSecond();
+        long last = to.getEpochSecond();
+        int next = 0;
+        ZoneId zone = ScheduleRules.BUSINESS_ZONE;
+        LocalDate lastDay = to.atZone(zone).toLocalDate();
+        for (LocalDate day = from.atZone(zone).toLocalDate(); !day.isAfter(lastDay) && slots.size() < count;
+             day = day.plusDays(1)) {
+            long opening = day.atTime(ScheduleRules.OPENING).atZone(zone).toEpochSecond();
+            long closing = Math.min(last, day.atTime(ScheduleRules.CLOSING).atZone(zone).toEpochSecond());
+            long start = alignUp(Math.max(first, opening), opening, stepSeconds);
+
+            while (start + seconds <= closing && slots.size() < count) {
+                //passes the busy intervals that end before the candidate, the candidate only moves forward
+                while (next < busy.length && busy[next][1] <= start) { next++; }
+                if (next < busy.length && busy[next][0] < start + seconds) {
+                    //jumps past the interval in the way rather than trying each step within it
+                    start = alignUp(busy[next][1], opening, stepSeconds);
+                    continue;
+                }
+                slots.add(new Slot(Instant.ofEpochSecond(start), Instant.ofEpochSecond(start + seconds)));
+                start += stepSeconds;
+            }
+        }
+        return slots;
+    }
+
+    /**
+     * merges two lists of appointments, each in order of start time, into the busy intervals they cover together, in
+     * order and with the intervals that touch or overlap joined
+     */
+    static long[][] merge(List<Appointment> a, List<Appointment> b) {
+        List<long[]> merged = new ArrayList<>(a.size() + b.size());
+        int i = 0;
+        int j = 0;
+        while (i < a.size() || j < b.size()) {
+            Appointment appointment = j == b.size() || (i < a.size()
+                    && a.get(i).getStartEpochSecond() <= b.get(j).getStartEpochSecond()) ? a.get(i++) : b.get(j++);
+            long start = appointment.getStartEpochSecond();
+            long end = appointment.getEndEpochSecond();
+            long[] previous = merged.isEmpty() ? null : merged.get(merged.size() - 1);
+            if (previous != null && start <= previous[1]) {
+                previous[1] = Math.max(previous[1], end);
+            } else {
+                merged.add(new long[] {start, end});
+            }
+        }
+        return merged.toArray(new long[0][]);
+    }
+
+    /**
+     * rounds a time up to the next step after the opening time
+     */
+    private static long alignUp(long time, long opening, long step) {
+        if (time <= opening) { return opening; }
+        return opening + Math.floorDiv(time - opening + step - 1, step) * step;
+    }
+}
@@ -0,0 +1,110 @@
+import java.util.Arrays;
+
+/**
+ * The outcome of a batch write, holding for every row of the batch (in the order the rows were passed in) whether it
+ * was written, the id generated for inserted rows and the reason a row was not written.
+ */
+public final class BatchResult {
+
+    /**
+     * what happened to a single row of the batch
+     */
+    public enum Outcome {
+        /** the row was written */
+        WRITTEN,
+        /** the row to update or delete does not exist */
+        NOT_FOUND,
+        /** the row broke a scheduling rule and was not sent to the database */
+        REJECTED,
+        /** the batch failed and the transaction was rolled back */
+        FAILED
+    }
+
+    private final int[] keys; //holds the generated id of each inserted row, -1 if there is none
+    private final Outcome[] outcomes; //holds the outcome of each row
+    private final String[] reasons; //holds why each row was not written, null if it was
+
+    /**
+     * @param size the number of rows within the batch
+     */
+    BatchResult(int size) {
+        keys = new int[size];
+        outcomes = new Outcome[size];
+        reasons = new String[size];
+        Arrays.fill(keys, -1);
+        Arrays.fill(outcomes, Outcome.WRITTEN);
+    }
+
+    void setKey(int row, int key) {
+        keys[row] = key;
+    }
+
+    void setOutcome(int row, Outcome outcome, String reason) {
+        outcomes[row] = outcome;
+        reasons[row] = reason;
+    }
+
+    /**
+     * marks every row that has not already been rejected as failed, used once the transaction is rolled back
+     * @param reason why the batch failed
+     */
+    void failAll(String reason) {
+        for (int row = 0; row < outcomes.length; row++) {
+            if (outcomes[row] != Outcome.REJECTED) {
+                outcomes[row] = Outcome.FAILED;
+                reasons[row] = reason;
+                keys[row] = -1;
+            }
+        }
+    }
+
+    /**
+     * @return the number of rows within the batch
+     */
+    public int size() {
+        return outcomes.length;
+    }
+
+    /**
+     * @param row the index of the row within the batch
+     * @return the id generated for the inserted row, -1 if no id was generated
+     */
+    public int key(int row) {
+        return keys[row];
+    }
+
+    /**
+     * @param row the index of the row within the batch
+     * @return what happened to the row
+     */
+    public Outcome outcome(int row) {
+        return outcomes[row];
+    }
+
+    /**
+     * @param row the index of the row within the batch
+     * @return why the row was not written, null if it was
+     */
+    public String reason(int row) {
+        return reasons[row];
+    }
+
+    /**
+     * @param outcome the outcome to count
+     * @return the number of rows with the outcome
+     */
+    public int count(Outcome outcome) {
+        int count = 0;
+        for (Outcome rowOutcome : outcomes) {
+            if (rowOutcome == outcome) { count++; }
+        }
+        return count;
+    }
+
+    @Override
+    public String toString() {
+        return "BatchResult[rows=" + size() + ", written=" + count(Outcome.WRITTEN) + ", notFound=" +
+                count(Outcome.NOT_FOUND) + ", rejected=" + count(Outcome.REJECTED) + ", failed=" +
+                count(Outcome.FAILED) + "]";
+    }
+}
@@ -0,0 +1,285 @@
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Tells the other running copies of the program about the rows this copy wrote, so they are able to drop what their
+ * caches and tables hold of them. The database access class publishes every appointment and customer it writes, and
+ * the caches subscribe to the changes made by the other copies.
+ *
+ * The changes travel through a {@link Transport}. The one built in is {@link FileChangeTransport}, a file every copy
+ * appends to and reads from, set with bus.file; without it the bus stays within this copy. A single background thread
+ * sends and receives every bus.pollMillis. Changes within a poll are coalesced, so a burst of writes to the same rows is
+ * sent and delivered once, and a burst of more than bus.maxIds rows of a topic is delivered as a change to every row.
+ *
+ * Staleness is bounded: another copy's change reaches the subscribers within about two polls. If nothing could be
+ * received for bus.maxStalenessMillis, the subscribers are told every row changed, and are told again each time that
+ * much time passes, so nothing is kept longer than that while the transport is down.
+ */
+public final class ChangeBus {
+
+    /**
+     * the kinds of rows changes are published for
+     */
+    public enum Topic { APPOINTMENT, CUSTOMER }
+
+    /**
+     * a change to a single row, or to every row of a topic when the id is {@link #ALL}
+     */
+    public static final class Change {
+        /** the id of a change to every row of its topic */
+        public static final int ALL = -1;
+
+        private final Topic topic;
+        private final int id;
+        private final long epochSecond;
+
+        /**
+         * @param topic the kind of row changed
+         * @param id the id of the row, {@link #ALL} for every row
+         * @param epochSecond the start of a changed appointment, or -1 when there is none or it is not known
+         */
+        public Change(Topic topic, int id, long epochSecond) {
+            this.topic = topic;
+            this.id = id;
+            this.epochSecond = epochSecond;
+        }
+
+        public Topic getTopic() { return topic; }
+
+        public int getId() { return id; }
+
+        /**
+         * @return the start of a changed appointment, -1 when there is none
+         */
+        public long getEpochSecond() { return epochSecond; }
+
+        /**
+         * @return true if every row of the topic is to be treated as changed
+         */
+        public boolean isAll() { return id == ALL; }
+
+        @Override
+        public String toString() {
+            return topic + " " + id + " " + epochSecond;
+        }
+    }
+
+    /**
+     * carries the changes between the running copies of the program
+     */
+    public interface Transport {
+        /**
+         * sends changes to the other copies
+         * @param origin the id of this copy
+         * @param changes the changes, already coalesced
+         * @throws IOException if the changes could not be sent, they are sent again with the next poll
+         */
+        void publish(String origin, List<Change> changes) throws IOException;
+
+        /**
+         * @param origin the id of this copy, changes it sent itself are left out
+         * @return the changes sent by the other copies since the last call
+         * @throws IOException if the changes could not be received
+         */
+        List<Change> receive(String origin) throws IOException;
+
+        /**
+         * releases what the transport holds open
+         */
+        void close();
+    }
+
+    private static volatile ChangeBus instance;
+
+    //identifies this copy of the program to the transport
+    private final String origin = UUID.randomUUID().toString();
+    private final Transport transport;
+    private final int maxIds;
+    private final long maxStalenessMillis;
+
+    //the changes written by this copy, waiting for the next poll
+    private final Queue<Change> outgoing = new ConcurrentLinkedQueue<>();
+    private final Map<Topic, List<Consumer<List<Change>>>> subscribers = new EnumMap<>(Topic.class);
+    private final ScheduledExecutorService poller;
+
+    //only touched by the poller thread
+    private final Map<String, Change> unsent = new LinkedHashMap<>();
+    private long lastReceived = System.currentTimeMillis();
+
+    ChangeBus(Transport transport, long pollMillis, int maxIds, long maxStalenessMillis) {
+        this.transport = transport;
+        this.maxIds = maxIds;
+        this.maxStalenessMillis = maxStalenessMillis;
+        for (Topic topic : Topic.values()) { subscribers.put(topic, new CopyOnWriteArrayList<>()); }
+        if (transport == null) {
+            poller = null;
+            return;
+        }
+        //polls on a daemon thread so it never keeps the application open
+        poller = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "change-bus");
+            thread.setDaemon(true);
+            return thread;
+        });
+        poller.scheduleWithFixedDelay(this::poll, pollMillis, pollMillis, TimeUnit.MILLISECONDS);
+        //sends whatever is still waiting when the program closes
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "change-bus-shutdown"));
+    }
+
+    /**
+     * returns the shared bus, using the bus settings of the database settings file
+     * @return the change bus
+     */
+    public static ChangeBus getInstance() {
+        if (instance == null) {
+            synchronized (ChangeBus.class) {
+                if (instance == null) {
+                    Properties properties = ConnectionPool.loadProperties();
+                    String file = properties.getProperty("bus.file", "").trim();
+                    Transport transport = null;
+                    if (!file.isEmpty()) {
+                        transport = new FileChangeTransport(Paths.get(file),
+                                Long.parseLong(properties.getProperty("bus.file.maxBytes", "1048576")));
+                    }
+                    instance = new ChangeBus(transport,
+                            Long.parseLong(properties.getProperty("bus.pollMillis", "250")),
+                            Integer.parseInt(properties.getProperty("bus.maxIds", "256")),
+                            Long.parseLong(properties.getProperty("bus.maxStalenessMillis", "30000")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if changes are sent to and received from other copies of the program
+     */
+    public boolean isConnected() {
+        return transport != null;
+    }
+
+    /**
+     * queues a change made by this copy to be sent with the next poll, returning at once
+     * @param topic the kind of row changed
+     * @param id the id of the row, {@link Change#ALL} if it is not known
+     * @param epochSecond the start of a changed appointment, -1 when there is none
+     */
+    public void publish(Topic topic, int id, long epochSecond) {
+        if (transport != null) { outgoing.add(new Change(topic, id, epochSecond)); }
+    }
+
+    /**
+     * receives the changes other copies made to a topic, on the bus thread
+     * @param topic the kind of rows
+     * @param subscriber receives the coalesced changes of each poll
+     */
+    public void subscribe(Topic topic, Consumer<List<Change>> subscriber) {
+        subscribers.get(topic).add(subscriber);
+    }
+
+    /**
+     * @param topic the kind of rows
+     * @param subscriber a subscriber passed to {@link #subscribe}
+     */
+    public void unsubscribe(Topic topic, Consumer<List<Change>> subscriber) {
+        subscribers.get(topic).remove(subscriber);
+    }
+
+    /**
+     * sends the waiting changes and closes the transport
+     */
+    public void close() {
+        if (poller == null || poller.isShutdown()) { return; }
+        poller.shutdown();
+        try {
+            poller.awaitTermination(2, TimeUnit.SECONDS);
+            send();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (IOException e) {
+            System.err.println("change bus: " + e.getMessage());
+        }
+        transport.close();
+    }
+
+    /**
+     * sends the changes made since the last poll and delivers the ones received
+     */
+    private void poll() {
+        try {
+            send();
+        } catch (IOException e) {
+            //keeps the changes and tries again with the next poll
+            System.err.println("change bus: " + e.getMessage());
+        }
+
+        long now = System.currentTimeMillis();
+        List<Change> received;
+        try {
+            received = transport.receive(origin);
+            lastReceived = now;
+        } catch (IOException e) {
+            System.err.println("change bus: " + e.getMessage());
+            if (now - lastReceived >= maxStalenessMillis) {
+                //treats everything as changed rather than keeping rows longer than the staleness bound
+                lastReceived = now;
+                received = new ArrayList<>();
+                for (Topic topic : Topic.values()) { received.add(new Change(topic, Change.ALL, -1)); }
+            } else {
+                return;
+            }
+        }
+        if (!received.isEmpty()) { deliver(received); }
+    }
+
+    /**
+     * sends the waiting changes coalesced by row, the latest change of each row wins
+     */
+    private void send() throws IOException {
+        for (Change change; (change = outgoing.poll()) != null; ) {
+            unsent.put(change.topic + ":" + change.id, change);
+        }
+        if (unsent.isEmpty()) { return; }
+        transport.publish(origin, new ArrayList<>(unsent.values()));
+        unsent.clear();
+    }
+
+    /**
+     * coalesces the received changes by topic and row and hands each topic's changes to its subscribers
+     */
+    private void deliver(List<Change> received) {
+        Map<Topic, Map<Integer, Change>> byTopic = new EnumMap<>(Topic.class);
+        for (Change change : received) {
+            byTopic.computeIfAbsent(change.topic, topic -> new LinkedHashMap<>()).put(change.id, change);
+        }
+        for (Map.Entry<Topic, Map<Integer, Change>> entry : byTopic.entrySet()) {
+            Map<Integer, Change> changes = entry.getValue();
+            List<Change> delivered = changes.containsKey(Change.ALL) || changes.size() > maxIds
+                    ? Collections.singletonList(new Change(entry.getKey(), Change.ALL, -1))
+                    : new ArrayList<>(changes.values());
+            for (Consumer<List<Change>> subscriber : subscribers.get(entry.getKey())) {
+                try {
+                    subscriber.accept(delivered);
+                } catch (RuntimeException e) {
+                    //one failing subscriber does not keep the changes from the others
+                    e.printStackTrace();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,492 @@
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Bounded pool of database connections shared by every method of the database access class so that each call borrows
+ * an already open connection instead of opening and tearing down a new one. Connections are validated when they are
+ * borrowed, evicted after sitting idle too long, and reported if they are held past the leak threshold.
+ *
+ * The settings are read from the database.properties file (or the file named by the scheduler.db.config system
+ * property) so the same pool can be pointed at the live server or an in-memory database such as
+ * jdbc:h2:mem:scheduler for testing.
+ */
+public class ConnectionPool {
+
+    //name of the settings file and the system property that is able to override it
+    private static final String CONFIG_FILE = "database.properties";
+    private static final String CONFIG_PROPERTY = "scheduler.db.config";
+
+    //holds the single pool shared through out the program
+    private static volatile ConnectionPool instance;
+
+    //holds the information that allows the pool to open connections to the database
+    private final String url;
+    private final String userName;
+    private final String password;
+
+    //holds the limits and timings of the pool
+    private final int maxSize;
+    private final long borrowTimeoutMillis;
+    private final long idleTimeoutMillis;
+    private final long leakThresholdMillis; //0 or less turns the leak reports off
+    private final int validationTimeoutSeconds;
+
+    //holds the connections waiting to be borrowed, most recently returned first
+    private final Deque<PooledConnection> idle = new ArrayDeque<>();
+    //holds the connections currently borrowed
+    private final ConcurrentHashMap<PooledConnection, Boolean> borrowed = new ConcurrentHashMap<>();
+    //guards the idle list and the total count
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition returned = lock.newCondition();
+    private int totalConnections = 0;
+    private boolean closed = false;
+
+    //background task that evicts idle connections and reports leaks
+    private final ScheduledExecutorService housekeeper;
+
+    //holds the metrics of the pool
+    private final AtomicLong borrowCount = new AtomicLong();
+    private final AtomicLong createdCount = new AtomicLong();
+    private final AtomicLong evictedCount = new AtomicLong();
+    private final AtomicLong invalidCount = new AtomicLong();
+    private final AtomicLong leakCount = new AtomicLong();
+    private final AtomicLong timeoutCount = new AtomicLong();
+    private final AtomicLong totalWaitNanos = new AtomicLong();
+
+    /**
+     * returns the shared pool, creating it from the settings file the first time it is called
+     * @return the connection pool used by the database access class
+     */
+    public static ConnectionPool getInstance() {
+        if (instance == null) {
+            synchronized (ConnectionPool.class) {
+                if (instance == null) {
+                    instance = new ConnectionPool(loadProperties());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * replaces the shared pool, closing the previous one, used to point the program at a different database
+     * @param properties the settings for the new pool
+     */
+    public static synchronized void configure(Properties properties) {
+        ConnectionPool previous = instance;
+        instance = new ConnectionPool(properties);
+        if (previous != null) { previous.close(); }
+    }
+
+    /**
+     * creates a pool based on the passed in settings
+     * @param properties holds the db.* settings of the pool
+     */
+    public ConnectionPool(Properties properties) {
+        this.url = properties.getProperty("db.url");
+        this.userName = properties.getProperty("db.user");
+        this.password = properties.getProperty("db.password");
+        this.maxSize = Integer.parseInt(properties.getProperty("db.pool.maxSize", "4"));
+        this.borrowTimeoutMillis = Long.parseLong(properties.getProperty("db.pool.borrowTimeoutMillis", "10000"));
+        this.idleTimeoutMillis = Long.parseLong(properties.getProperty("db.pool.idleTimeoutMillis", "300000"));
+        this.leakThresholdMillis = Long.parseLong(properties.getProperty("db.pool.leakThresholdMillis", "60000"));
+        this.validationTimeoutSeconds = Integer.parseInt(properties.getProperty("db.pool.validationTimeoutSeconds", "2"));
+
+        //runs the housekeeping on a daemon thread so it never keeps the application open
+        housekeeper = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "connection-pool-housekeeper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1000, (leakThresholdMillis > 0 ? Math.min(idleTimeoutMillis, leakThresholdMillis)
+                : idleTimeoutMillis) / 2);
+        housekeeper.scheduleAtFixedRate(this::housekeeping, period, period, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * reads the pool settings from the configured file, falling back to the copy on the class path
+     * @return the settings of the pool
+     */
+    static Properties loadProperties() {
+        Properties properties = new Properties();
+        Path path = Paths.get(System.getProperty(CONFIG_PROPERTY, CONFIG_FILE));
+        try (InputStream in = Files.exists(path) ? Files.newInputStream(path)
+                : ConnectionPool.class.getResourceAsStream("/" + CONFIG_FILE)) {
+            if (in == null) {
+                throw new IllegalStateException("Unable to find the database settings file " + path);
+            }
+            properties.load(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Unable to read the database settings file " + path, e);
+        }
+        return properties;
+    }
+
+    /**
+     * borrows a connection from the pool, the connection is returned to the pool when it is closed
+     * @return an open and validated connection
+     * @throws SQLException if no connection could be opened or borrowed in time
+     */
+    public Connection getConnection() throws SQLException {
+        long startWait = System.nanoTime();
+        long deadline = startWait + TimeUnit.MILLISECONDS.toNanos(borrowTimeoutMillis);
+
+        while (true) {
+            PooledConnection pooled = null;
+            boolean create = false;
+
+            lock.lock();
+            try {
+                //waits until a connection is free or there is room to open a new one
+                while (!closed && idle.isEmpty() && totalConnections >= maxSize) {
+                    long remaining = deadline - System.nanoTime();
+                    if (remaining <= 0) {
+                        timeoutCount.incrementAndGet();
+                        throw new SQLTransientConnectionException("Timed out after " + borrowTimeoutMillis +
+                                "ms waiting for a database connection " + metrics());
+                    }
+                    try {
+                        returned.awaitNanos(remaining);
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        throw new SQLTransientConnectionException("Interrupted waiting for a database connection", e);
+                    }
+                }
+                if (closed) { throw new SQLException("The connection pool has been closed"); }
+
+                if (!idle.isEmpty()) {
+                    pooled = idle.pollFirst();
+                } else {
+                    //reserves the slot before opening so the limit holds while the connection is being opened
+                    totalConnections++;
+                    create = true;
+                }
+            } finally {
+                lock.unlock();
+            }
+
+            if (create) {
+                try {
+                    pooled = new PooledConnection(DriverManager.getConnection(url, userName, password));
+                    createdCount.incrementAndGet();
+                } catch (SQLException | RuntimeException e) {
+                    release();
+                    throw e;
+                }
+            } else if (!pooled.isValid(validationTimeoutSeconds)) {
+                //drops the broken connection and tries again with another one
+                invalidCount.incrementAndGet();
+                discard(pooled);
+                continue;
+            }
+
+            totalWaitNanos.addAndGet(System.nanoTime() - startWait);
+            borrowCount.incrementAndGet();
+            return pooled.borrow();
+        }
+    }
+
+    /**
+     * returns a connection to the idle list, called when the borrowed connection is closed
+     * @param pooled the connection being given back
+     */
+    private void giveBack(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        try {
+            //resets any state the borrower may have changed
+            if (!pooled.physical.getAutoCommit()) {
+                pooled.physical.rollback();
+                pooled.physical.setAutoCommit(true);
+            }
+        } catch (SQLException e) {
+            discard(pooled);
+            return;
+        }
+
+        lock.lock();
+        try {
+            if (closed) {
+                pooled.closeQuietly();
+                totalConnections--;
+            } else {
+                pooled.lastUsed = System.currentTimeMillis();
+                idle.addFirst(pooled);
+            }
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * closes a connection that is no longer usable and frees its slot in the pool
+     * @param pooled the connection to throw away
+     */
+    private void discard(PooledConnection pooled) {
+        borrowed.remove(pooled);
+        pooled.closeQuietly();
+        release();
+    }
+
+    /**
+     * frees a slot in the pool and wakes up a waiting borrower
+     */
+    private void release() {
+        lock.lock();
+        try {
+            totalConnections--;
+            returned.signal();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * evicts the connections idle past the timeout and reports any connection held past the leak threshold
+     */
+    private void housekeeping() {
+        long now = System.currentTimeMillis();
+        List<PooledConnection> expired = new ArrayList<>();
+
+        lock.lock();
+        try {
+            //the oldest idle connections are at the end of the list
+            while (!idle.isEmpty() && now - idle.peekLast().lastUsed > idleTimeoutMillis) {
+                expired.add(idle.pollLast());
+            }
+        } finally {
+            lock.unlock();
+        }
+        for (PooledConnection pooled : expired) {
+            evictedCount.incrementAndGet();
+            discard(pooled);
+        }
+
+        if (leakThresholdMillis <= 0) { return; }
+        for (PooledConnection pooled : borrowed.keySet()) {
+            Throwable site = pooled.borrowSite;
+            if (!pooled.leakReported && site != null && now - pooled.borrowedAt > leakThresholdMillis) {
+                pooled.leakReported = true;
+                leakCount.incrementAndGet();
+                LeakTrace trace = new LeakTrace(now - pooled.borrowedAt);
+                trace.setStackTrace(site.getStackTrace());
+                trace.printStackTrace();
+            }
+        }
+    }
+
+    /**
+     * closes every idle connection and stops handing out new ones, borrowed connections are closed when returned
+     */
+    public void close() {
+        List<PooledConnection> toClose;
+        lock.lock();
+        try {
+            closed = true;
+            toClose = new ArrayList<>(idle);
+            idle.clear();
+            totalConnections -= toClose.size();
+            returned.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        toClose.forEach(PooledConnection::closeQuietly);
+        housekeeper.shutdownNow();
+    }
+
+    /**
+     * @return a snapshot of the pool's current usage and counters
+     */
+    public Metrics metrics() {
+        lock.lock();
+        try {
+            return new Metrics(totalConnections, idle.size(), borrowed.size(), borrowCount.get(),
+                    createdCount.get(), evictedCount.get(), invalidCount.get(), leakCount.get(), timeoutCount.get(),
+                    borrowCount.get() == 0 ? 0 : totalWaitNanos.get() / borrowCount.get());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * holds the counters of the pool at the time it was taken
+     */
+    public static class Metrics {
+        public final int total; //connections currently open
+        public final int idle; //connections waiting to be borrowed
+        public final int active; //connections currently borrowed
+        public final long borrows; //times a connection was handed out
+        public final long created; //physical connections opened
+        public final long evicted; //connections closed after sitting idle
+        public final long invalid; //connections that failed validation on borrow
+        public final long leaks; //connections held past the leak threshold
+        public final long timeouts; //borrowers that gave up waiting
+        public final long averageWaitNanos; //average time spent waiting to borrow
+
+        Metrics(int total, int idle, int active, long borrows, long created, long evicted, long invalid, long leaks,
+                long timeouts, long averageWaitNanos) {
+            this.total = total;
+            this.idle = idle;
+            this.active = active;
+            this.borrows = borrows;
+            this.created = created;
+            this.evicted = evicted;
+            this.invalid = invalid;
+            this.leaks = leaks;
+            this.timeouts = timeouts;
+            this.averageWaitNanos = averageWaitNanos;
+        }
+
+        @Override
+        public String toString() {
+            return "[total=" + total + ", idle=" + idle + ", active=" + active + ", borrows=" + borrows +
+                    ", created=" + created + ", evicted=" + evicted + ", invalid=" + invalid + ", leaks=" + leaks +
+                    ", timeouts=" + timeouts + ", avgWaitMicros=" + averageWaitNanos / 1000 + "]";
+        }
+    }
+
+    /**
+     * exception used only to print where a leaked connection was borrowed from
+     */
+    private static class LeakTrace extends Exception {
+        private static final long serialVersionUID = 1L;
+
+        LeakTrace(long heldMillis) {
+            super("Database connection held for " + heldMillis + "ms without being closed, borrowed at:");
+        }
+    }
+
+    /**
+     * wraps a physical connection with the information the pool tracks about it
+     */
+    private class PooledConnection implements InvocationHandler {
+        private final Connection physical; //the real connection to the database
+        private volatile long lastUsed = System.currentTimeMillis(); //when the connection was last returned
+        private volatile long borrowedAt; //when the connection was last borrowed
+        //where the connection was last borrowed from, null when the leak reports are off
+        private volatile Throwable borrowSite;
+        private volatile boolean leakReported; //whether the current borrow was already reported as a leak
+        //holds the named statements already prepared on this connection, kept open between borrows
+        private final EnumMap<SqlStatement, PreparedStatement> statements = new EnumMap<>(SqlStatement.class);
+        //holds the named statements with clauses added, by their full text
+        private final Map<String, PreparedStatement> extendedStatements = new HashMap<>();
+
+        PooledConnection(Connection physical) {
+            this.physical = physical;
+        }
+
+        /**
+         * marks the connection as borrowed and returns a handle whose close method gives the connection back
+         * @return the handle used by the borrower
+         */
+        Connection borrow() {
+            borrowedAt = System.currentTimeMillis();
+            //a new throwable only records the stack, the frames are turned into elements if a leak is ever reported
+            borrowSite = leakThresholdMillis > 0 ? new Throwable() : null;
+            leakReported = false;
+            borrowed.put(this, Boolean.TRUE);
+            return (Connection) Proxy.newProxyInstance(ConnectionPool.class.getClassLoader(),
+                    new Class<?>[]{Connection.class, StatementRegistry.CachingConnection.class}, new Handle(this));
+        }
+
+        boolean isValid(int timeoutSeconds) {
+            try {
+                return !physical.isClosed() && physical.isValid(timeoutSeconds);
+            } catch (SQLException e) {
+                return false;
+            }
+        }
+
+        void closeQuietly() {
+            try {
+                physical.close();
+            } catch (SQLException ignored) {
+                //the connection is being thrown away, there is nothing left to do
+            }
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            try {
+                return method.invoke(physical, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+
+    /**
+     * the connection handle given to a borrower, only able to give the connection back once, which also keeps the
+     * statements prepared through the statement registry with the physical connection
+     */
+    private class Handle implements InvocationHandler {
+        private PooledConnection pooled;
+
+        Handle(PooledConnection pooled) {
+            this.pooled = pooled;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            switch (method.getName()) {
+                case "close":
+                    if (pooled != null) {
+                        PooledConnection toReturn = pooled;
+                        pooled = null;
+                        giveBack(toReturn);
+                    }
+                    return null;
+                case "isClosed":
+                    return pooled == null;
+                case "equals":
+                    return proxy == args[0];
+                case "hashCode":
+                    return System.identityHashCode(proxy);
+                case "cachedStatement":
+                    if (pooled == null) { return null; }
+                    return args[0] instanceof SqlStatement ? pooled.statements.get((SqlStatement) args[0])
+                            : pooled.extendedStatements.get((String) args[0]);
+                case "cacheStatement":
+                    if (pooled == null) { return null; }
+                    if (args[0] instanceof SqlStatement) {
+                        pooled.statements.put((SqlStatement) args[0], (PreparedStatement) args[1]);
+                    } else {
+                        pooled.extendedStatements.put((String) args[0], (PreparedStatement) args[1]);
+                    }
+                    return null;
+                case "toString":
+                    return "PooledConnection" + (pooled == null ? "[returned]" : "[" + pooled.physical + "]");
+                default:
+                    if (pooled == null) { throw new SQLException("Connection has already been returned to the pool"); }
+                    return pooled.invoke(proxy, method, args);
+            }
+        }
+    }
+}
@@ -62,4 +62,12 @@ public class Contact {
     public void setEmail(String email) {
         this.email = email;
     }
+
+    /**
+     * @return the contact name, which is how the contact is shown within the combo boxes
+     */
+    @Override
+    public String toString() {
+        return contactName;
+    }
 }
@@ -108,10 +108,8 @@ public class Customer {
      * @throws SQLException handles invalid table values
      */
     public String getCountry() throws SQLException {
-        //initializes method to access database methods
-        DBAccess data = new DBAccess();
-        //returns the result of the method call
-        return data.getCountryFromDiv(getDivision_ID());
+        //returns the country from the reference data cache without a trip to the database
+        return ReferenceDataCache.getInstance().getCountryForDivision(getDivision_ID());
     }
 
     /**
@@ -134,9 +132,15 @@ public class Customer {
      * @throws SQLException handles invalid table values
      */
     public String getDivision() throws SQLException {
-        //initializes method to access database methods
-        DBAccess data = new DBAccess();
-        //returns the result of the method call
-        return data.getDivisionFromDivID(getDivision_ID());
+        //returns the division name from the reference data cache without a trip to the database
+        return ReferenceDataCache.getInstance().getDivisionName(getDivision_ID());
+    }
+
+    /**
+     * @return the customer name, which is how the customer is shown within the combo boxes
+     */
+    @Override
+    public String toString() {
+        return Customer_Name;
     }
 }
@@ -3,7 +3,10 @@ import javafx.collections.ObservableList;
 
 import java.sql.*;
 import java.time.*;
-import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
 
 /**
  * This is the class that is handling the access to the database through method calls from the user to ensure the
@@ -11,10 +14,32 @@ import java.time.format.DateTimeFormatter;
  */
 public class DBAccess {
 
-    //holds the information that allows the class to access the database
-    private static final String userName = "U07bdJ";
-    private static final String password = "53688980572";
-    private static final String url = "jdbc:mysql://wgudb.ucertify.com:3306/WJ07bdJ";
+    //how many rows the batch writes send to the database at a time, set by db.batch.size in database.properties
+    private static final int BATCH_SIZE =
+            Integer.parseInt(ConnectionPool.loadProperties().getProperty("db.batch.size", "500"));
+    //how old a change of the appointment change log has to be before the readers move past it, set by
+    //changes.settleSeconds in database.properties
+    private static final int CHANGE_SETTLE_SECONDS =
+            Integer.parseInt(ConnectionPool.loadProperties().getProperty("changes.settleSeconds", "60"));
+
+    //every method borrows from ConnectionPool.getInstance() as it runs rather than keeping the pool, so a pool
+    //configured after this object was made is the one used
+    //holds the countries, divisions, contacts and users so they are not queried on every call
+    private final ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+    //holds months of appointments outside of the heap when cache.offHeap.maxBytes is set
+    private final OffHeapAppointmentStore offHeap = OffHeapAppointmentStore.getInstance();
+    //tells the other running copies of the program about the rows written here
+    private final ChangeBus bus = ChangeBus.getInstance();
+    //whether the users table has the Password_Hash column of user_password_hashes.sql, null until first checked
+    private static volatile Boolean passwordHashColumn;
+
+    static {
+        //drops what the appointment caches hold of the appointments other copies of the program changed
+        ChangeBus.getInstance().subscribe(ChangeBus.Topic.APPOINTMENT, DBAccess::appointmentsChangedElsewhere);
+        //reads the customers' divisions again before the report counts are next read
+        ChangeBus.getInstance().subscribe(ChangeBus.Topic.CUSTOMER,
+                changes -> MaterializedAggregates.getInstance().customersChanged());
+    }
 
     /**
      * gets the location array for the user
@@ -25,13 +50,8 @@ public class DBAccess {
         //defines the list to hold the different values
         ObservableList list = FXCollections.observableArrayList();
 
-        //attempts the connection to the server, calling a SQL statement to retrieve the whole 'countries' table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM countries");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the queries resulting set and adds all the country values
-            while(rs.next()) { list.add(rs.getString("Country")); }
-        }
+        //adds all the country values from the reference data cache, loading the 'countries' table if needed
+        list.addAll(referenceData.getCountryNames());
 
         //returns the completed list of the different countries
         return list;
@@ -47,16 +67,8 @@ public class DBAccess {
         //defines the list of divisions to hold
         ObservableList list = FXCollections.observableArrayList();
 
-        //attempts to connect to the database and query for a result based on a sub-query to find the proper country
-        //id and applies that to the parent query to find the divisions isolated by the country
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM first_level_divisions" +
-                     " WHERE COUNTRY_ID = (" +
-                     "SELECT Country_ID FROM countries WHERE Country = \"" + countryString + "\")" );
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the results and adds all of the division values to the list
-            while(rs.next()) { list.add(rs.getString("Division")); }
-        }
+        //adds all of the division values that are isolated by the country from the reference data cache
+        list.addAll(referenceData.getDivisionNames(countryString));
 
         //returns the list to the user
         return list;
@@ -84,14 +96,19 @@ public class DBAccess {
             throws SQLException {
         //attempts to connect to the database, then call a statement that creates a new entry into the customers
         //table based on the values passed in through the method
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("INSERT INTO customers(Customer_Name," +
-                     " Address, Postal_Code, Phone, Created_By, Last_Updated_By, Division_ID) " +
-                     "VALUES(\"" + cName + "\", \"" + cAddress + "\", \"" + pC + "\", \"" + phone + "\", " +
-                     "NULL, NULL, \"" +  divisionId + "\");" );
-             ) {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.INSERT_CUSTOMER)) {
+            ps.setString(1, cName);
+            ps.setString(2, cAddress);
+            ps.setString(3, pC);
+            ps.setString(4, phone);
+            ps.setInt(5, divisionId);
             //returns the success or failure of the statement
-            return ps.execute(); }
+            boolean result = ps.execute();
+            //a new customer changes the lists of customers rather than any customer already held
+            bus.publish(ChangeBus.Topic.CUSTOMER, ChangeBus.Change.ALL, -1);
+            MaterializedAggregates.getInstance().customersChanged();
+            return result; }
     }
 
     /**
@@ -109,14 +126,20 @@ public class DBAccess {
             throws SQLException {
         //attempts to connect to the database, and sends a request to the server to update the values of the user based
         //on the user's id to the given values
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("UPDATE customers " +
-                             "SET Customer_Name = \"" + cName + "\", Address = \"" + cAddress + "\", Postal_Code = \"" +
-                             pC + "\", Phone = \"" + phone + "\", Division_ID = \"" + divisionId + "\"" +
-                             "WHERE Customer_ID = \"" + cID + "\";")
-        ) {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.UPDATE_CUSTOMER)) {
+            ps.setString(1, cName);
+            ps.setString(2, cAddress);
+            ps.setString(3, pC);
+            ps.setString(4, phone);
+            ps.setInt(5, divisionId);
+            ps.setInt(6, cID);
             //returns the status of the query
-            return ps.execute();
+            boolean result = ps.execute();
+            bus.publish(ChangeBus.Topic.CUSTOMER, cID, -1);
+            //counts the customer's appointments under the country of its division
+            MaterializedAggregates.getInstance().customerMoved(cID, divisionId);
+            return result;
         }
     }
 
@@ -127,24 +150,15 @@ public class DBAccess {
      * @throws SQLException any invalid division strings
      */
     public int getDivisionID(Object DivisionString) throws SQLException {
-        //attempts to connect to the database and returns the proper division id based on the string
-        try (Connection conn = DriverManager.getConnection(url, userName, password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM first_level_divisions WHERE " +
-                     "Division = \"" + DivisionString + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting table
-            while(rs.next()) {
-                //returns the value of the row
-                return Integer.parseInt(rs.getString("Division_ID"));
-            }
-        }
-        //returns default not found value if could not be found
-        return -1;
+        //returns the proper division id based on the string, -1 if it could not be found
+        return referenceData.getDivisionID(String.valueOf(DivisionString));
     }
 
     /**
-     * checks to see if the user's login was successful by matching the username and password to the combination
-     * stored within the database
+     * checks to see if the user's login was successful by matching the username and password to the salted hash
+     * stored within the database. Once user_password_hashes.sql has been run, a user without a hash is checked against
+     * the plain text Password column and then has a hash written to Password_Hash, the Password column is never
+     * written so the other clients reading it keep working. Without that column only the Password column is checked
      * @param username the user's username value
      * @param pWord the user's password (plain text)
      * @return the user's id if successful login, -1 if unsuccessful
@@ -152,23 +166,69 @@ public class DBAccess {
      */
      public int checkLogin(String username, String pWord) throws SQLException {
          //attempts to connect to the database, then run a query to pull any users with a matching username
-         try (Connection conn = DriverManager.getConnection(url, userName, password);
-              PreparedStatement ps = conn.prepareStatement("SELECT * FROM users " +
-                     "WHERE User_Name = \"" + username + "\";");
-              ResultSet rs = ps.executeQuery()) {
-             //loops through the results
-             while(rs.next()){
-                 //retrieves the password and checks to see if it is an equal value
-                 if(rs.getString("Password").equals(pWord)){
-                     //returns the user id of the user whose password matches
-                     return Integer.parseInt(rs.getString("User_ID"));
-                }
-            }
+         try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+             boolean hashed = hasPasswordHashColumn(conn);
+             boolean found = false;
+             try (PreparedStatement ps = StatementRegistry.prepare(conn,
+                     hashed ? SqlStatement.USER_LOGIN_HASHED : SqlStatement.USER_LOGIN)) {
+                 ps.setString(1, username);
+                 try (ResultSet rs = ps.executeQuery()) {
+                     //loops through the results
+                     while(rs.next()){
+                         found = true;
+                         //retrieves the stored hash, or the plain text password of a user not yet hashed, and checks
+                         //the entered one against it
+                         String stored = hashed ? rs.getString("Password_Hash") : null;
+                         if (stored == null) { stored = rs.getString("Password"); }
+                         if(PasswordHasher.verify(pWord, stored)){
+                             int userId = rs.getInt("User_ID");
+                             //writes a current hash for a plain text or weaker one, leaving the Password column as is
+                             if (hashed && PasswordHasher.needsRehash(stored)) {
+                                 try (PreparedStatement update = StatementRegistry.prepare(conn,
+                                         SqlStatement.UPDATE_USER_PASSWORD_HASH)) {
+                                     update.setString(1, PasswordHasher.hash(pWord));
+                                     update.setInt(2, userId);
+                                     update.executeUpdate();
+                                 } catch (SQLException e) {
+                                     //the password was right, so a hash that could not be written is tried again
+                                     //on the next login rather than refusing this one
+                                     e.printStackTrace();
+                                 }
+                             }
+                             //returns the user id of the user whose password matches
+                             return userId;
+                         }
+                     }
+                 }
+             }
+             //spends the time of a hash check when the user does not exist, so the answer does not give that away
+             if (!found) { PasswordHasher.verifyDummy(pWord); }
          }
          //returns -1 if no password match or user name was found
          return -1;
     }
 
+    /**
+     * checks once whether user_password_hashes.sql has added the Password_Hash column to the users table
+     */
+    private static boolean hasPasswordHashColumn(Connection conn) throws SQLException {
+        Boolean known = passwordHashColumn;
+        if (known != null) { return known; }
+        boolean found = false;
+        DatabaseMetaData metaData = conn.getMetaData();
+        //the table name is matched as stored, which is upper case on some databases
+        for (String table : new String[] {"users", "USERS"}) {
+            try (ResultSet rs = metaData.getColumns(conn.getCatalog(), null, table, null)) {
+                while (rs.next()) {
+                    if ("Password_Hash".equalsIgnoreCase(rs.getString("COLUMN_NAME"))) { found = true; }
+                }
+            }
+            if (found) { break; }
+        }
+        passwordHashColumn = found;
+        return found;
+    }
+
     /**
      * returns the array of customers from the database
      * @return the list of customers saved as class objects
@@ -179,8 +239,8 @@ public class DBAccess {
         ObservableList<Customer> list = FXCollections.observableArrayList();
 
         //attempts to connect to the database and retrieves the entire customer table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM customers");
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_CUSTOMERS);
              ResultSet rs = ps.executeQuery()) {
 
             //loops through the result
@@ -209,29 +269,115 @@ public class DBAccess {
         ObservableList<Appointment> list = FXCollections.observableArrayList();
 
         //attempts to connect to the database and retrieves the appointments table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM appointments");
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_APPOINTMENTS);
              ResultSet rs = ps.executeQuery()) {
 
-            //loops through the result
-            while(rs.next()) {
-                //then converts the times in format to the zone at which it was made after changing the value from a
-                // timestamp style to the proper zone id of the user's computer
-                ZonedDateTime start = (Timestamp.valueOf(rs.getString("Start")).toLocalDateTime().atZone(
-                        ZoneId.of("UTC"))).withZoneSameInstant(ZoneId.systemDefault());
-                ZonedDateTime end = (Timestamp.valueOf(rs.getString("End")).toLocalDateTime().atZone(
-                        ZoneId.of("UTC"))).withZoneSameInstant(ZoneId.systemDefault());
-                //creates a new class object and saves the information of the row values
-                Appointment newAppointment = new Appointment(rs.getInt("Appointment_ID"),
-                        rs.getString("Title"), rs.getString("Description"),
-                        rs.getString("Location"), rs.getInt("Contact_ID"),
-                        rs.getString("Type"),
-                        start.withZoneSameInstant(ZoneId.systemDefault()),
-                        end.withZoneSameInstant(ZoneId.systemDefault()),
-                        rs.getInt("Customer_ID"), Integer.parseInt(rs.getString("User_ID")));
-
-                //adds the new object to the list
-                list.add(newAppointment);
+            //loops through the result, the stored UTC times are shown in the zone of the user's computer when asked for
+            while(rs.next()) { list.add(AppointmentRowMapper.map(rs)); }
+        }
+
+        //refreshes the appointment index with the complete table that was just read
+        AppointmentIndex.getInstance().load(list);
+
+        //returns the resulting list to the user
+        return list;
+    }
+
+    /**
+     * retrieves the appointments starting within [from, to), filtered by the database so only the rows in the range
+     * are transferred
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @return list of the appointments within the range in order of start time
+     * @throws SQLException handles any invalid input or table data
+     */
+    public ObservableList<Appointment> getAppointmentsBetween(Instant from, Instant to) throws SQLException {
+        //serves the range from the off-heap store when it is turned on, reading only the months it does not hold
+        if (offHeap.isEnabled()) {
+            return FXCollections.observableArrayList(offHeap.between(from, to, (monthStart, monthEnd) ->
+                    getAppointmentsBetween(SqlStatement.APPOINTMENTS_BETWEEN, -1, monthStart, monthEnd)));
+        }
+        return getAppointmentsBetween(SqlStatement.APPOINTMENTS_BETWEEN, -1, from, to);
+    }
+
+    /**
+     * retrieves a single appointment by its id, from the off-heap store when its month is held there
+     * @param appointmentId the appointment's id
+     * @return the appointment, or null if there is no appointment with the id
+     * @throws SQLException handles any invalid input or table data
+     */
+    public Appointment getAppointment(int appointmentId) throws SQLException {
+        Appointment cached = offHeap.get(appointmentId);
+        if (cached != null) { return cached; }
+
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_BY_ID)) {
+            ps.setInt(1, appointmentId);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? AppointmentRowMapper.map(rs) : null;
+            }
+        }
+    }
+
+    /**
+     * retrieves the appointments of a contact starting within [from, to)
+     * @param contactId the contact's reference number
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @return list of the contact's appointments within the range in order of start time
+     * @throws SQLException handles any invalid input or table data
+     */
+    public ObservableList<Appointment> getContactAppointmentsBetween(int contactId, Instant from, Instant to)
+            throws SQLException {
+        return getAppointmentsBetween(SqlStatement.CONTACT_APPOINTMENTS_BETWEEN, contactId, from, to);
+    }
+
+    /**
+     * retrieves the appointments of a customer starting within [from, to)
+     * @param customerId the customer's id
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @return list of the customer's appointments within the range in order of start time
+     * @throws SQLException handles any invalid input or table data
+     */
+    public ObservableList<Appointment> getCustomerAppointmentsBetween(int customerId, Instant from, Instant to)
+            throws SQLException {
+        return getAppointmentsBetween(SqlStatement.CUSTOMER_APPOINTMENTS_BETWEEN, customerId, from, to);
+    }
+
+    /**
+     * retrieves the appointments of a user starting within [from, to)
+     * @param userId the user's id
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @return list of the user's appointments within the range in order of start time
+     * @throws SQLException handles any invalid input or table data
+     */
+    public ObservableList<Appointment> getUserAppointmentsBetween(int userId, Instant from, Instant to)
+            throws SQLException {
+        return getAppointmentsBetween(SqlStatement.USER_APPOINTMENTS_BETWEEN, userId, from, to);
+    }
+
+    /**
+     * runs one of the range statements, binding the scope id first when the statement has one
+     */
+    private ObservableList<Appointment> getAppointmentsBetween(SqlStatement statement, int scopeId, Instant from,
+                                                               Instant to) throws SQLException {
+        //creates a list to hold the appointments
+        ObservableList<Appointment> list = FXCollections.observableArrayList();
+
+        //attempts to connect to the database and retrieves only the rows within the range, the times are stored in UTC
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, statement)) {
+            int index = 1;
+            if (statement != SqlStatement.APPOINTMENTS_BETWEEN) { ps.setInt(index++, scopeId); }
+            ps.setTimestamp(index++, Timestamp.valueOf(LocalDateTime.ofInstant(from, ZoneOffset.UTC)));
+            ps.setTimestamp(index, Timestamp.valueOf(LocalDateTime.ofInstant(to, ZoneOffset.UTC)));
+
+            try (ResultSet rs = ps.executeQuery()) {
+                //loops through the result
+                while (rs.next()) { list.add(AppointmentRowMapper.map(rs)); }
             }
         }
 
@@ -239,6 +385,130 @@ public class DBAccess {
         return list;
     }
 
+    /**
+     * reads every appointment into a columnar snapshot, holding the ids, times, type and location of each without
+     * creating an object per appointment
+     * @return the snapshot of the appointments table
+     * @throws SQLException handles any invalid input or table data
+     */
+    public AppointmentSnapshot getAppointmentSnapshot() throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_SNAPSHOT);
+             ResultSet rs = ps.executeQuery()) {
+            return AppointmentSnapshot.read(rs);
+        }
+    }
+
+    /**
+     * reads the appointments starting within [from, to) into a columnar snapshot, in order of start time
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @return the snapshot of the appointments within the range
+     * @throws SQLException handles any invalid input or table data
+     */
+    public AppointmentSnapshot getAppointmentSnapshotBetween(Instant from, Instant to) throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_SNAPSHOT_BETWEEN)) {
+            ps.setTimestamp(1, Timestamp.valueOf(LocalDateTime.ofInstant(from, ZoneOffset.UTC)));
+            ps.setTimestamp(2, Timestamp.valueOf(LocalDateTime.ofInstant(to, ZoneOffset.UTC)));
+            try (ResultSet rs = ps.executeQuery()) {
+                return AppointmentSnapshot.read(rs);
+            }
+        }
+    }
+
+    /**
+     * returns the latest settled change of the appointment change log, taken before reading the appointments so the
+     * changes made while they are read, and the recent ones whose writes may not have committed yet, are picked up by
+     * the next {@link #getAppointmentChangesSince}
+     * @return the id of the latest change older than changes.settleSeconds, 0 if there is none
+     * @throws SQLException if the change log could not be read
+     */
+    public long getAppointmentWatermark() throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            long last;
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_CHANGE_RANGE);
+                 ResultSet rs = ps.executeQuery()) {
+                last = rs.next() ? rs.getLong(2) : 0;
+            }
+            return settledWatermark(conn, 0, last);
+        }
+    }
+
+    /**
+     * finds how far a reader may move its watermark. The change ids are handed out before a write commits, so a write
+     * holding a lower id may still commit after a higher one was read; the changes made within the last
+     * changes.settleSeconds are left after the watermark to be read again
+     * @param after the watermark the reader has now
+     * @param last the latest change read
+     * @return the change just before the first recent change after the watermark, or last if there is none
+     */
+    private static long settledWatermark(Connection conn, long after, long last) throws SQLException {
+        try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.FIRST_UNSETTLED_CHANGE)) {
+            ps.setLong(1, after);
+            ps.setInt(2, -CHANGE_SETTLE_SECONDS);
+            try (ResultSet rs = ps.executeQuery()) {
+                long unsettled = rs.next() ? rs.getLong(1) : 0;
+                if (rs.wasNull() || unsettled == 0 || unsettled > last) { return last; }
+                return Math.max(after, unsettled - 1);
+            }
+        }
+    }
+
+    /**
+     * reads the appointments changed after a change of the appointment change log, so a view of the appointments is
+     * able to apply only what changed instead of reading every row again. The watermark returned stays before the
+     * changes made within the last changes.settleSeconds, which are read again by the next call since an earlier id
+     * may still commit among them
+     * @param watermark the last change already seen, from {@link #getAppointmentWatermark} or the previous changes
+     * @return the rows added or updated and the ids deleted since the watermark, incomplete if the log has been pruned
+     * past it
+     * @throws SQLException if the change log could not be read
+     */
+    public AppointmentChanges getAppointmentChangesSince(long watermark) throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            //finds how far the log reaches, a gap after the watermark means changes were pruned before being seen
+            long first;
+            long last;
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_CHANGE_RANGE);
+                 ResultSet rs = ps.executeQuery()) {
+                rs.next();
+                first = rs.getLong(1);
+                last = rs.getLong(2);
+                if (rs.wasNull()) {
+                    return watermark == 0 ? new AppointmentChanges(0, true, new ArrayList<>(), new int[0])
+                            : AppointmentChanges.incomplete(watermark);
+                }
+            }
+            if (first > watermark + 1) { return AppointmentChanges.incomplete(watermark); }
+            if (last <= watermark) { return new AppointmentChanges(watermark, true, new ArrayList<>(), new int[0]); }
+
+            //reads the ids changed within (watermark, last] and the rows that still exist for them
+            Set<Integer> ids = new HashSet<>();
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CHANGED_APPOINTMENT_IDS)) {
+                ps.setLong(1, watermark);
+                ps.setLong(2, last);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) { ids.add(rs.getInt(1)); }
+                }
+            }
+            List<Appointment> changed = new ArrayList<>();
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CHANGED_APPOINTMENTS)) {
+                ps.setLong(1, watermark);
+                ps.setLong(2, last);
+                try (ResultSet rs = ps.executeQuery()) {
+                    while (rs.next()) { changed.add(AppointmentRowMapper.map(rs)); }
+                }
+            }
+
+            //the changed ids without a row were deleted
+            for (Appointment appointment : changed) { ids.remove(appointment.getAppointment_ID()); }
+            int[] removed = ids.stream().mapToInt(Integer::intValue).toArray();
+            long settled = settledWatermark(conn, watermark, last);
+            return new AppointmentChanges(settled, true, changed, removed, settled == last);
+        }
+    }
+
     /**
      * Retrieves the country string value based on a passed div id parameter
      * @param divID represents the division location that is within the target country
@@ -246,20 +516,9 @@ public class DBAccess {
      * @throws SQLException handles invalid div id parameter bounds
      */
     public String getCountryFromDiv(int divID) throws SQLException {
-        //attempts to connect to the database, then retrieves the country id from the first_level_divisions table
-        //as a sub-query to then look within the countries table to retrieve the string value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM countries WHERE country_ID = " +
-                     "(SELECT COUNTRY_ID FROM first_level_divisions WHERE Division_ID = " + divID + ");");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting array
-            while (rs.next()) {
-                //the array should only have one matching value, returns the value
-                return rs.getString("Country");
-            }
-        }
-        //if no match is found, return a blank string
-        return "";
+        //looks up the division within the reference data cache and returns the country that holds it, or a blank
+        //string if no match is found
+        return referenceData.getCountryForDivision(divID);
     }
 
     /**
@@ -270,18 +529,8 @@ public class DBAccess {
      * @throws SQLException handles invalid div id input
      */
     public String getDivisionFromDivID(int divID) throws SQLException {
-        //attempts to connect to the database, then query for the row that has the matching division id value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM first_level_divisions WHERE Division_ID = \"" + divID + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the results (should only be one
-            while (rs.next()){
-                //returns the value found
-                return rs.getString("Division");
-            }
-        }
-        //if there was no results found, return an empty string
-        return "";
+        //returns the name of the division with the matching id, or an empty string if there was no match
+        return referenceData.getDivisionName(divID);
     }
 
     /**
@@ -293,20 +542,8 @@ public class DBAccess {
         //list to hold the resulting contacts list
         ObservableList<Contact> list = FXCollections.observableArrayList();
 
-        //attempts to connect to the database and query for the contacts table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM contacts");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting set
-            while(rs.next()){
-                //saves the row values of the table to a new class object
-                Contact newContact = new Contact(rs.getInt("Contact_ID"),
-                        rs.getString("Contact_Name"), rs.getString("Email"));
-
-                //adds the resulting object to the list
-                list.add(newContact);
-            }
-        }
+        //adds the contacts held by the reference data cache, loading the contacts table if needed
+        list.addAll(referenceData.getContacts());
 
         //returns the resulting list
         return list;
@@ -321,20 +558,8 @@ public class DBAccess {
         //list to hold the resulting users list
         ObservableList<User> list = FXCollections.observableArrayList();
 
-        //attempts to connect to the database and query for the users table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting set
-            while(rs.next()){
-                //saves the row values of the table to a new class object
-                User newUser = new User(Integer.parseInt(rs.getString("User_ID")), 
-                        rs.getString("User_Name"));
-
-                //adds the resulting object to the list
-                list.add(newUser);
-            }
-        }
+        //adds the users held by the reference data cache, loading the users table if needed
+        list.addAll(referenceData.getUsers());
 
         //returns the resulting list
         return list;
@@ -404,16 +629,40 @@ public class DBAccess {
 
         //attempts to connect to the database and call an insert into query with the passed parameter values assigned to
         //the different column values of the new row
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("INSERT INTO appointments(Title," +
-                     " Description, Location, Type, Start, End, Customer_ID, User_ID, Contact_ID) " +
-                     "VALUES(\"" + title + "\", \"" + description + "\", \"" + location + "\", \"" + type + "\", \"" +
-                     Timestamp.valueOf(startTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()) + "\", \"" +
-                     Timestamp.valueOf(endTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()) + "\", \"" +
-                     customerId + "\",\""+ user_id + "\",\"" + contactID + "\");" );
-        ) {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.INSERT_APPOINTMENT)) {
+            ps.setString(1, title);
+            ps.setString(2, description);
+            ps.setString(3, location);
+            ps.setString(4, type);
+            ps.setTimestamp(5, Timestamp.valueOf(startTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()));
+            ps.setTimestamp(6, Timestamp.valueOf(endTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()));
+            ps.setInt(7, customerId);
+            ps.setInt(8, user_id);
+            ps.setInt(9, contactID);
+            boolean result = ps.execute();
+            offHeap.invalidateAt(startTime.toEpochSecond());
+
+            //adds the new appointment to the appointment index, the reminders and the report counts under the id
+            //generated by the database
+            try (ResultSet keys = ps.getGeneratedKeys()) {
+                if (keys.next()) {
+                    Appointment added = new Appointment(keys.getInt(1), title, description, location, contactID, type,
+                            startTime, endTime, customerId, user_id);
+                    AppointmentIndex.getInstance().put(added);
+                    ReminderService.getInstance().put(added);
+                    MaterializedAggregates.getInstance().put(added);
+                    bus.publish(ChangeBus.Topic.APPOINTMENT, added.getAppointment_ID(), added.getStartEpochSecond());
+                } else {
+                    AppointmentIndex.getInstance().invalidate();
+                    ReminderService.getInstance().refresh();
+                    MaterializedAggregates.getInstance().changedElsewhere();
+                    bus.publish(ChangeBus.Topic.APPOINTMENT, ChangeBus.Change.ALL, -1);
+                }
+            }
+
             //returns the resulting boolean value of the success or failure of the insertion call
-            return ps.execute();
+            return result;
         }
     }
 
@@ -438,22 +687,284 @@ public class DBAccess {
                                      int customerId, int userID) throws SQLException {
         //attempts to connect to the database and updates the column values of the row that matches the appointment id
         //value, based on the passed parameters
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("UPDATE appointments SET Title = \"" + title +
-                     "\", Description = \"" + description + "\", Location = \"" +
-                     location + "\", Contact_ID = \"" + contactID + "\", Type = \"" + type + "\", " + "Start =  \"" +
-                     Timestamp.valueOf(startTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()) +
-                     "\", End = \"" +
-                     Timestamp.valueOf(endTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()) +
-                     "\", Customer_ID = \"" + customerId + "\", User_ID = \"" + userID + "\" " +
-                     "WHERE Appointment_ID = " + appointmentID + ";")
-             //user is not edited as the original maker is the value to be saved
-        ) {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.UPDATE_APPOINTMENT)) {
+            ps.setString(1, title);
+            ps.setString(2, description);
+            ps.setString(3, location);
+            ps.setInt(4, contactID);
+            ps.setString(5, type);
+            ps.setTimestamp(6, Timestamp.valueOf(startTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()));
+            ps.setTimestamp(7, Timestamp.valueOf(endTime.withZoneSameInstant(ZoneId.of("UTC")).toLocalDateTime()));
+            ps.setInt(8, customerId);
+            ps.setInt(9, userID);
+            ps.setInt(10, appointmentID);
+            boolean result = ps.execute();
+            offHeap.invalidateAppointment(appointmentID);
+            offHeap.invalidateAt(startTime.toEpochSecond());
+
+            //moves the appointment within the appointment index, the reminders and the report counts to its new times
+            //and assignments
+            Appointment modified = new Appointment(appointmentID, title, description, location, contactID, type,
+                    startTime, endTime, customerId, userID);
+            AppointmentIndex.getInstance().put(modified);
+            ReminderService.getInstance().put(modified);
+            MaterializedAggregates.getInstance().put(modified);
+            bus.publish(ChangeBus.Topic.APPOINTMENT, appointmentID, modified.getStartEpochSecond());
+
             //returns the result of the update attempt
-            return ps.execute();
+            return result;
         }
     }
 
+    /**
+     * adds every appointment of the list within a single transaction, sending the inserts to the database in batches.
+     * If any insert fails the whole transaction is rolled back and every row is marked as failed
+     * @param appointments the appointments to add, their ids are ignored
+     * @return the outcome and generated id of each appointment in the order passed in
+     * @throws SQLException if a connection could not be borrowed
+     */
+    public BatchResult addAppointments(List<Appointment> appointments) throws SQLException {
+        BatchResult result = inTransaction(appointments.size(), conn ->
+                executeBatch(conn, SqlStatement.INSERT_APPOINTMENT, appointments, (ps, appointment) -> {
+                    ps.setString(1, appointment.getTitle());
+                    ps.setString(2, appointment.getDescription());
+                    ps.setString(3, appointment.getLocation());
+                    ps.setString(4, appointment.getType());
+                    ps.setTimestamp(5, Timestamp.valueOf(appointment.getStartUtc().toLocalDateTime()));
+                    ps.setTimestamp(6, Timestamp.valueOf(appointment.getEndUtc().toLocalDateTime()));
+                    ps.setInt(7, appointment.getCustomer_ID());
+                    ps.setInt(8, appointment.getUser_ID());
+                    ps.setInt(9, appointment.getContact_ID());
+                }));
+
+        //drops the months of the new appointments from the off-heap store
+        for (int row = 0; row < appointments.size(); row++) {
+            if (result.outcome(row) == BatchResult.Outcome.WRITTEN) {
+                offHeap.invalidateAt(appointments.get(row).getStartEpochSecond());
+                bus.publish(ChangeBus.Topic.APPOINTMENT, result.key(row), appointments.get(row).getStartEpochSecond());
+            }
+        }
+
+        //adds the new appointments to the appointment index and the report counts under the ids generated by the
+        //database
+        AppointmentIndex index = AppointmentIndex.getInstance();
+        for (int row = 0; row < appointments.size(); row++) {
+            if (result.outcome(row) != BatchResult.Outcome.WRITTEN) { continue; }
+            Appointment appointment = appointments.get(row);
+            if (result.key(row) == -1) {
+                index.invalidate();
+                ReminderService.getInstance().refresh();
+                MaterializedAggregates.getInstance().changedElsewhere();
+                break;
+            }
+            Appointment added = new Appointment(result.key(row), appointment.getTitle(), appointment.getDescription(),
+                    appointment.getLocation(), appointment.getContact_ID(), appointment.getType(),
+                    appointment.getStartEpochSecond(), appointment.getEndEpochSecond(), appointment.getCustomer_ID(),
+                    appointment.getUser_ID());
+            index.put(added);
+            ReminderService.getInstance().put(added);
+            MaterializedAggregates.getInstance().put(added);
+        }
+        return result;
+    }
+
+    /**
+     * adds the customers without an id (an id of zero or less) and updates the rest, all within a single transaction
+     * @param customers the customers to add or update
+     * @return the outcome of each customer in the order passed in, with the generated id of each added customer
+     * @throws SQLException if a connection could not be borrowed
+     */
+    public BatchResult upsertCustomers(List<Customer> customers) throws SQLException {
+        //splits the customers into the ones to add and the ones to update, remembering where each came from
+        List<Customer> inserts = new ArrayList<>();
+        List<Customer> updates = new ArrayList<>();
+        int[] insertRows = new int[customers.size()];
+        int[] updateRows = new int[customers.size()];
+        for (int row = 0; row < customers.size(); row++) {
+            Customer customer = customers.get(row);
+            if (customer.getCustomer_ID() <= 0) {
+                insertRows[inserts.size()] = row;
+                inserts.add(customer);
+            } else {
+                updateRows[updates.size()] = row;
+                updates.add(customer);
+            }
+        }
+
+        BatchResult result = inTransaction(customers.size(), conn -> {
+            BatchResult inserted = executeBatch(conn, SqlStatement.INSERT_CUSTOMER, inserts, (ps, customer) -> {
+                ps.setString(1, customer.getCustomer_Name());
+                ps.setString(2, customer.getAddress());
+                ps.setString(3, customer.getPostal_Code());
+                ps.setString(4, customer.getPhone());
+                ps.setInt(5, customer.getDivision_ID());
+            });
+            BatchResult updated = executeBatch(conn, SqlStatement.UPDATE_CUSTOMER, updates, (ps, customer) -> {
+                ps.setString(1, customer.getCustomer_Name());
+                ps.setString(2, customer.getAddress());
+                ps.setString(3, customer.getPostal_Code());
+                ps.setString(4, customer.getPhone());
+                ps.setInt(5, customer.getDivision_ID());
+                ps.setInt(6, customer.getCustomer_ID());
+            });
+
+            //puts the outcomes of both statements back in the order the customers were passed in
+            BatchResult combined = new BatchResult(customers.size());
+            for (int i = 0; i < inserts.size(); i++) {
+                combined.setOutcome(insertRows[i], inserted.outcome(i), inserted.reason(i));
+                combined.setKey(insertRows[i], inserted.key(i));
+            }
+            for (int i = 0; i < updates.size(); i++) {
+                combined.setOutcome(updateRows[i], updated.outcome(i), updated.reason(i));
+                combined.setKey(updateRows[i], updates.get(i).getCustomer_ID());
+            }
+            return combined;
+        });
+
+        //tells the other copies of the program about the customers written and moves their report counts
+        for (int row = 0; row < customers.size(); row++) {
+            if (result.outcome(row) == BatchResult.Outcome.WRITTEN) {
+                bus.publish(ChangeBus.Topic.CUSTOMER, result.key(row), -1);
+                if (result.key(row) == -1) {
+                    MaterializedAggregates.getInstance().customersChanged();
+                } else {
+                    MaterializedAggregates.getInstance().customerMoved(result.key(row),
+                            customers.get(row).getDivision_ID());
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * deletes every appointment of the array within a single transaction
+     * @param appointmentIds the ids of the appointments to delete
+     * @return the outcome of each id in the order passed in, not found for ids that did not exist
+     * @throws SQLException if a connection could not be borrowed
+     */
+    public BatchResult deleteAppointments(int[] appointmentIds) throws SQLException {
+        List<Integer> ids = new ArrayList<>(appointmentIds.length);
+        for (int id : appointmentIds) { ids.add(id); }
+
+        BatchResult result = inTransaction(ids.size(), conn ->
+                executeBatch(conn, SqlStatement.DELETE_APPOINTMENT, ids, (ps, id) -> ps.setInt(1, id)));
+
+        //removes the deleted appointments from the appointment index, the reminders and the report counts
+        for (int row = 0; row < appointmentIds.length; row++) {
+            if (result.outcome(row) == BatchResult.Outcome.WRITTEN) {
+                offHeap.invalidateAppointment(appointmentIds[row]);
+                AppointmentIndex.getInstance().remove(appointmentIds[row]);
+                ReminderService.getInstance().remove(appointmentIds[row]);
+                MaterializedAggregates.getInstance().remove(appointmentIds[row]);
+                bus.publish(ChangeBus.Topic.APPOINTMENT, appointmentIds[row], -1);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * drops what the off-heap store, the appointment index and the reminders hold of the appointments another copy of
+     * the program changed and has the report counts catch up on them, called on the change bus thread
+     */
+    private static void appointmentsChangedElsewhere(List<ChangeBus.Change> changes) {
+        OffHeapAppointmentStore store = OffHeapAppointmentStore.getInstance();
+        for (ChangeBus.Change change : changes) {
+            if (change.isAll()) {
+                store.invalidate();
+            } else {
+                //drops the month the appointment was held in and the month it starts in now
+                store.invalidateAppointment(change.getId());
+                if (change.getEpochSecond() >= 0) { store.invalidateAt(change.getEpochSecond()); }
+            }
+        }
+        //the index needs the whole row of a changed appointment, so it is filled again on next use
+        AppointmentIndex.getInstance().invalidate();
+        ReminderService.getInstance().refresh();
+        MaterializedAggregates.getInstance().changedElsewhere();
+    }
+
+    /**
+     * binds the values of a single row to a statement of a batch write
+     */
+    private interface RowBinder<T> {
+        void bind(PreparedStatement ps, T row) throws SQLException;
+    }
+
+    /**
+     * the statements of a batch write, run on a connection that is not auto committing
+     */
+    private interface TransactionWork {
+        BatchResult run(Connection conn) throws SQLException;
+    }
+
+    /**
+     * runs the work within a single transaction on a borrowed connection, committing if it succeeds and rolling back
+     * and marking every row as failed if it does not. A runtime exception or error from the work is rolled back too
+     * and then passed on
+     */
+    private BatchResult inTransaction(int size, TransactionWork work) throws SQLException {
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            conn.setAutoCommit(false);
+            boolean finished = false;
+            try {
+                BatchResult result = work.run(conn);
+                conn.commit();
+                finished = true;
+                return result;
+            } catch (SQLException e) {
+                conn.rollback();
+                finished = true;
+                BatchResult failed = new BatchResult(size);
+                failed.failAll(e.getMessage());
+                return failed;
+            } finally {
+                //turning auto commit back on commits whatever is pending, so anything that ended the work without a
+                //commit or a rollback, such as a runtime exception from a binder, is rolled back first
+                try {
+                    if (!finished) { conn.rollback(); }
+                } finally {
+                    conn.setAutoCommit(true);
+                }
+            }
+        }
+    }
+
+    /**
+     * adds each row to the statement's batch and sends the batch to the database every BATCH_SIZE rows, reading the
+     * update count, and the generated id for inserts, of every row
+     */
+    private <T> BatchResult executeBatch(Connection conn, SqlStatement statement, List<T> rows,
+                                         RowBinder<? super T> binder) throws SQLException {
+        BatchResult result = new BatchResult(rows.size());
+        try (PreparedStatement ps = StatementRegistry.prepare(conn, statement)) {
+            int sent = 0;
+            for (int row = 0; row < rows.size(); row++) {
+                binder.bind(ps, rows.get(row));
+                ps.addBatch();
+                if (row + 1 - sent == BATCH_SIZE || row == rows.size() - 1) {
+                    int[] counts = ps.executeBatch();
+                    //rows that changed nothing were not found, the rest were written
+                    for (int i = 0; i < counts.length; i++) {
+                        if (counts[i] == 0) {
+                            result.setOutcome(sent + i, BatchResult.Outcome.NOT_FOUND, "no matching row");
+                        }
+                    }
+                    //the generated ids are returned in the order the rows were inserted
+                    if (statement.generatesKeys()) {
+                        try (ResultSet keys = ps.getGeneratedKeys()) {
+                            for (int i = 0; i < counts.length && keys.next(); i++) {
+                                result.setKey(sent + i, keys.getInt(1));
+                            }
+                        }
+                    }
+                    sent = row + 1;
+                }
+            }
+        }
+        return result;
+    }
+
     /**
      * gets the contact id based on the parameter of the same contact's name
      * @param contactName the string value of the full name of the contact
@@ -461,20 +972,8 @@ public class DBAccess {
      * @throws SQLException handles invalid contact name
      */
     public int getContactID(String contactName) throws SQLException {
-        //attempts to connect to the database, and retrieves the customers that have a matching name value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM contacts WHERE Contact_Name =" +
-                     " \"" + contactName + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting set
-            while (rs.next()) {
-                //assumes the correct contact is the first returned value
-                return Integer.parseInt(rs.getString("Contact_ID"));
-            }
-        }
-
-        //if no match is found returns a value of -1
-        return -1;
+        //returns the id of the first contact with a matching name, -1 if no match is found
+        return referenceData.getContactID(contactName);
     }
 
     /**
@@ -485,15 +984,16 @@ public class DBAccess {
      */
     public int getCustomerID(String customerName) throws SQLException {
         //attempts to connect to the database and retrieve the table of customers with a matching customer name
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM customers WHERE Customer_Name =" +
-                     " \"" + customerName + "\";");
-             ResultSet rs = ps.executeQuery()) {
-
-            //loops through the resulting table
-            while (rs.next()) {
-                //returns the value of the customer id of the matching customer name
-                return Integer.parseInt(rs.getString("Customer_ID"));
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CUSTOMER_ID_BY_NAME)) {
+            ps.setString(1, customerName);
+            try (ResultSet rs = ps.executeQuery()) {
+
+                //loops through the resulting table
+                while (rs.next()) {
+                    //returns the value of the customer id of the matching customer name
+                    return rs.getInt("Customer_ID");
+                }
             }
         }
 
@@ -508,19 +1008,10 @@ public class DBAccess {
      * @throws SQLException contact id invalid value exception
      */
     public String getContactName(int contact_id) throws SQLException {
-        //attempts to connect to the database, and retrieves the contacts, whose id matches the table value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM contacts WHERE Contact_ID =" +
-                     " \"" + contact_id + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting set
-            while (rs.next()) {
-                //returns the first found value of the contact's name
-                return rs.getString("Contact_Name");
-            }
-        }
+        //retrieves the contact whose id matches from the reference data cache
+        Contact contact = referenceData.getContact(contact_id);
         //returns empty string if there was no match found
-        return "";
+        return contact == null ? "" : contact.getContactName();
     }
 
     /**
@@ -531,14 +1022,15 @@ public class DBAccess {
      */
     public String getCustomerName(int customer_id) throws SQLException {
         //attempts to connect to the database and retrieve the table based on a matching customer id value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM customers WHERE Customer_ID =" +
-                     " \"" + customer_id + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the result and finds the matching customer name
-            while (rs.next()) {
-                //returns the first customer name value found
-                return rs.getString("Customer_Name");
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CUSTOMER_NAME_BY_ID)) {
+            ps.setInt(1, customer_id);
+            try (ResultSet rs = ps.executeQuery()) {
+                //loops through the result and finds the matching customer name
+                while (rs.next()) {
+                    //returns the first customer name value found
+                    return rs.getString("Customer_Name");
+                }
             }
         }
         //returns empty string if there was no match for the customer id
@@ -555,11 +1047,13 @@ public class DBAccess {
         //checks to see if the customer has any appointments before trying to delete the customer
         if(!customerAppointmentCheck(customer_id)) {
             //attempts to call a delete from query with the assigned value to delete being the customer id
-            try (Connection conn = DriverManager.getConnection(url, userName, password);
-                 PreparedStatement ps = conn.prepareStatement("DELETE FROM customers " +
-                         "WHERE Customer_ID = " + customer_id + ";");) {
+            try (Connection conn = ConnectionPool.getInstance().getConnection();
+                 PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.DELETE_CUSTOMER)) {
+                ps.setInt(1, customer_id);
                 //returns the status of the deletion
-                return ps.execute();
+                boolean result = ps.execute();
+                bus.publish(ChangeBus.Topic.CUSTOMER, customer_id, -1);
+                return result;
             }
         }
         //if the customer has appointment return false to restrict delete
@@ -574,13 +1068,14 @@ public class DBAccess {
      */
     private boolean customerAppointmentCheck(int customer_id) throws SQLException {
         //checks to see how many rows are returned from the search for the customer's id in the appointment table
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM appointments " +
-                     "WHERE Customer_ID = \"" + customer_id + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //if the resulting set is null, returns a false value
-            if (!rs.next()) {return false;}
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CUSTOMER_HAS_APPOINTMENT)) {
+            ps.setInt(1, customer_id);
+            try (ResultSet rs = ps.executeQuery()) {
+                //if the resulting set is null, returns a false value
+                if (!rs.next()) {return false;}
             }
+        }
         //if there was no matches to the appointment customer's return true
         return true;
     }
@@ -592,12 +1087,18 @@ public class DBAccess {
      */
     public void deleteAppointment(int appointment_id) throws SQLException {
         //attempts to connect to the database and calls for a delete from query to delete the referenced appointment
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("DELETE FROM appointments " +
-                     "WHERE Appointment_ID = " + appointment_id);) {
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.DELETE_APPOINTMENT)) {
+            ps.setInt(1, appointment_id);
             //executes the query to delete the appointment
             ps.execute();
         }
+        //removes the appointment from the off-heap store, the appointment index, the reminders and the report counts
+        offHeap.invalidateAppointment(appointment_id);
+        AppointmentIndex.getInstance().remove(appointment_id);
+        ReminderService.getInstance().remove(appointment_id);
+        MaterializedAggregates.getInstance().remove(appointment_id);
+        bus.publish(ChangeBus.Topic.APPOINTMENT, appointment_id, -1);
     }
 
     /**
@@ -611,22 +1112,16 @@ public class DBAccess {
         ObservableList<LocalDateTime[]> list = FXCollections.observableArrayList();
 
         //attempts to connect to the database, and returns all associated appointments for the selected customer
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM appointments " +
-                     "WHERE Customer_ID = \"" + customer + "\";");
-             ResultSet rs = ps.executeQuery()) {
-
-            //loops through the results of the query
-            while (rs.next()) {
-                //format of the date and time
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-                //creates variable values from parsing the values found in the table
-                LocalDateTime tempStart = LocalDateTime.parse(rs.getString("Start"), formatter);
-                LocalDateTime tempEnd = LocalDateTime.parse(rs.getString("End"), formatter);
-
-                //adds the found values to the list
-                list.add(new LocalDateTime[]{tempStart, tempEnd});
-
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENT_TIMES_BY_CUSTOMER)) {
+            ps.setInt(1, customer);
+            try (ResultSet rs = ps.executeQuery()) {
+
+                //loops through the results of the query, adding the stored start and end of each
+                while (rs.next()) {
+                    list.add(new LocalDateTime[]{AppointmentRowMapper.readUtc(rs, 1),
+                            AppointmentRowMapper.readUtc(rs, 2)});
+                }
             }
         }
 
@@ -646,31 +1141,14 @@ public class DBAccess {
 
         //attempts to connect to the database and retrieves the appointments that have a matching value in the
         //contact id field
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM appointments WHERE Contact_ID = "
-                     + contactId + ";");
-             ResultSet rs = ps.executeQuery()) {
-
-            //loops through the results associated with the contact
-            while(rs.next()){
-                //creates a format for the date values to be saved
-                DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-                LocalDateTime startTime = LocalDateTime.parse(rs.getString("Start"), formatter);
-                LocalDateTime endTime = LocalDateTime.parse(rs.getString("End"), formatter);
-
-                //creates temp appointment object to be saved into the list
-                Appointment newAppointment = new Appointment(rs.getInt("Appointment_ID"),
-                        rs.getString("Title"), rs.getString("Description"),
-                        rs.getString("Location"), rs.getInt("Contact_ID"),
-                        rs.getString("Type"),
-                        startTime.atZone(ZoneId.systemDefault()),
-                        endTime.atZone(ZoneId.systemDefault()),
-                        Integer.parseInt(rs.getString("Customer_ID")),
-                        Integer.parseInt(rs.getString("User_ID")));
-
-                //adds the new temp appointment to the list
-                list.add(newAppointment);
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.APPOINTMENTS_BY_CONTACT)) {
+            ps.setInt(1, contactId);
+            try (ResultSet rs = ps.executeQuery()) {
+
+                //loops through the results associated with the contact, reading the stored UTC times like every
+                //other appointment read
+                while(rs.next()){ list.add(AppointmentRowMapper.map(rs)); }
             }
         }
 
@@ -707,20 +1185,8 @@ public class DBAccess {
      * @throws SQLException handles invalid userName
      */
     public int getUserID(String usersUserName) throws SQLException {
-        //attempts to connect to the database, and retrieves the users that have a matching name value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users WHERE User_Name =" +
-                     " \"" + usersUserName + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the resulting set
-            while (rs.next()) {
-                //assumes the correct user is the first returned value
-                return Integer.parseInt(rs.getString("User_ID"));
-            }
-        }
-
-        //if no match is found returns a value of -1
-        return -1;
+        //returns the id of the first user with a matching name, -1 if no match is found
+        return referenceData.getUserID(usersUserName);
     }
 
     /**
@@ -730,18 +1196,9 @@ public class DBAccess {
      * @throws SQLException protects from invalid user id values
      */
     public String getUserName(int user_id) throws SQLException {
-        //attempts to connect to the database and retrieve the table based on a matching user id value
-        try (Connection conn = DriverManager.getConnection(url,userName,password);
-             PreparedStatement ps = conn.prepareStatement("SELECT * FROM users WHERE User_ID =" +
-                     " \"" + user_id + "\";");
-             ResultSet rs = ps.executeQuery()) {
-            //loops through the result and finds the matching user name
-            while (rs.next()) {
-                //returns the first user name value found
-                return rs.getString("User_Name");
-            }
-        }
+        //retrieves the user whose id matches from the reference data cache
+        User user = referenceData.getUser(user_id);
         //returns empty string if there was no match for the user id
-        return "";
+        return user == null ? "" : user.getUserName();
     }
 }
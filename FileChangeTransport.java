@@ -0,0 +1,177 @@
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Carries the changes of the change bus through a single file shared by every running copy of the program, for copies
+ * on one computer or sharing a network drive, and as a stand-in for a real message broker when testing. Each copy
+ * appends its changes under an exclusive file lock, one per line as origin, topic, id and start separated by tabs,
+ * and reads the lines the others appended since its last read under a shared lock, so a read never sees the file
+ * while another copy is emptying it.
+ *
+ * The first line of the file names its generation. Once the file passes the size limit the next writer empties it
+ * and starts a new generation, and a reader seeing the generation change treats every row as changed, since it may
+ * have missed lines that were dropped.
+ */
+public final class FileChangeTransport implements ChangeBus.Transport {
+
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    private final Path file;
+    private final long maxBytes;
+
+    private FileChannel channel;
+    //the generation line read last, null before the first read
+    private String generation;
+    //how far the file has been read
+    private long offset;
+
+    /**
+     * @param file the file shared by the copies of the program
+     * @param maxBytes the size past which the file is emptied by the next writer
+     */
+    public FileChangeTransport(Path file, long maxBytes) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+    }
+
+    @Override
+    public synchronized void publish(String origin, List<ChangeBus.Change> changes) throws IOException {
+        StringBuilder lines = new StringBuilder(changes.size() * 64);
+        for (ChangeBus.Change change : changes) {
+            lines.append(origin).append('\t').append(change.getTopic()).append('\t').append(change.getId())
+                    .append('\t').append(change.getEpochSecond()).append('\n');
+        }
+        FileChannel channel = open();
+        FileLock lock = channel.lock();
+        try {
+            long size = channel.size();
+            if (size == 0 || size > maxBytes) {
+                //starts a new generation, the readers of the old one treat every row as changed
+                channel.truncate(0);
+                String header = "#" + Long.toHexString(RANDOM.nextLong()) + "\n";
+                channel.write(ByteBuffer.wrap(header.getBytes(StandardCharsets.UTF_8)), 0);
+                size = channel.size();
+            }
+            ByteBuffer buffer = ByteBuffer.wrap(lines.toString().getBytes(StandardCharsets.UTF_8));
+            while (buffer.hasRemaining()) { size += channel.write(buffer, size); }
+        } finally {
+            lock.release();
+        }
+    }
+
+    @Override
+    public synchronized List<ChangeBus.Change> receive(String origin) throws IOException {
+        FileChannel channel = open();
+        //shares the lock with the other readers, a writer emptying the file waits until the read is done
+        FileLock lock = channel.lock(0, Long.MAX_VALUE, true);
+        try {
+            return read(channel, origin);
+        } finally {
+            lock.release();
+        }
+    }
+
+    /**
+     * reads the lines appended since the last read, called while holding the shared lock
+     */
+    private List<ChangeBus.Change> read(FileChannel channel, String origin) throws IOException {
+        List<ChangeBus.Change> changes = new ArrayList<>();
+        long size = channel.size();
+        String current = size == 0 ? "" : readGeneration(channel);
+
+        //starts from the end of the file on the first read, the changes made before this copy started do not matter
+        if (generation == null) {
+            generation = current;
+            offset = size;
+            return changes;
+        }
+        if (!current.equals(generation)) {
+            boolean created = generation.isEmpty();
+            generation = current;
+            offset = current.isEmpty() ? 0 : current.length() + 1;
+            if (!created) {
+                //the file was emptied, the lines dropped with it may never have been read
+                for (ChangeBus.Topic topic : ChangeBus.Topic.values()) {
+                    changes.add(new ChangeBus.Change(topic, ChangeBus.Change.ALL, -1));
+                }
+                offset = size;
+                return changes;
+            }
+        }
+        if (size <= offset) { return changes; }
+
+        //reads up to the last whole line, a line still being written is read with the next poll
+        ByteBuffer buffer = ByteBuffer.allocate((int) Math.min(size - offset, Integer.MAX_VALUE - 8));
+        while (buffer.hasRemaining() && channel.read(buffer, offset + buffer.position()) > 0) { }
+        byte[] bytes = buffer.array();
+        int end = buffer.position();
+        while (end > 0 && bytes[end - 1] != '\n') { end--; }
+        offset += end;
+
+        int start = 0;
+        for (int i = 0; i < end; i++) {
+            if (bytes[i] != '\n') { continue; }
+            ChangeBus.Change change = parse(new String(bytes, start, i - start, StandardCharsets.UTF_8), origin);
+            if (change != null) { changes.add(change); }
+            start = i + 1;
+        }
+        return changes;
+    }
+
+    @Override
+    public synchronized void close() {
+        try {
+            if (channel != null) { channel.close(); }
+        } catch (IOException e) {
+            System.err.println("change bus: " + e.getMessage());
+        }
+        channel = null;
+    }
+
+    private FileChannel open() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Path parent = file.toAbsolutePath().getParent();
+            if (parent != null) { Files.createDirectories(parent); }
+            channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+        }
+        return channel;
+    }
+
+    /**
+     * reads the generation line at the start of the file
+     */
+    private static String readGeneration(FileChannel channel) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(64);
+        channel.read(buffer, 0);
+        byte[] bytes = buffer.array();
+        for (int i = 0; i < buffer.position(); i++) {
+            if (bytes[i] == '\n') { return new String(bytes, 0, i, StandardCharsets.UTF_8); }
+        }
+        //the first line is still being written
+        return "";
+    }
+
+    /**
+     * reads a change line, null for the lines written by this copy and lines that cannot be read
+     */
+    private static ChangeBus.Change parse(String line, String origin) {
+        String[] parts = line.split("\t");
+        if (parts.length != 4 || parts[0].equals(origin)) { return null; }
+        try {
+            return new ChangeBus.Change(ChangeBus.Topic.valueOf(parts[1]), Integer.parseInt(parts[2]),
+                    Long.parseLong(parts[3]));
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+}
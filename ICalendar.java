@@ -0,0 +1,362 @@
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.time.DateTimeException;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+
+/**
+ * Writes and reads appointments as iCalendar (RFC 5545) events, so the schedule of a contact or customer can be
+ * opened in a calendar client and calendar files can be imported. Both sides work an event at a time: the writer
+ * writes each appointment as it is handed over and the reader reads the file line by line, returning each event once
+ * its END:VEVENT line is reached, so a file of any size is never held in memory.
+ *
+ * The times are written in UTC. The ids of the customer, contact and user are written as X-SCHEDULER- properties and
+ * read back from them, the type is written as the event's category.
+ */
+public final class ICalendar {
+
+    //the longest a line is allowed to be before it is folded onto the next, in bytes
+    private static final int FOLD_BYTES = 75;
+    private static final DateTimeFormatter UTC_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss'Z'")
+            .withZone(ZoneOffset.UTC);
+    private static final DateTimeFormatter LOCAL_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd'T'HHmmss");
+    private static final DateTimeFormatter DATE_FORMAT = DateTimeFormatter.ofPattern("yyyyMMdd");
+
+    private ICalendar() {}
+
+    /**
+     * writes appointments as the events of a calendar, opened by the constructor and closed by {@link #finish()}
+     */
+    public static final class Writer {
+        private final java.io.Writer out;
+        private final String stamp = UTC_FORMAT.format(Instant.now());
+        private final StringBuilder line = new StringBuilder(128);
+
+        /**
+         * writes the start of the calendar
+         * @param out the writer the calendar is written to, left open
+         * @param name the name calendar clients show for the calendar
+         * @throws IOException if the calendar could not be written
+         */
+        public Writer(java.io.Writer out, String name) throws IOException {
+            this.out = out;
+            property("BEGIN", "VCALENDAR");
+            property("VERSION", "2.0");
+            property("PRODID", "-//Scheduler//Appointments//EN");
+            property("CALSCALE", "GREGORIAN");
+            property("METHOD", "PUBLISH");
+            property("X-WR-CALNAME", escape(name));
+        }
+
+        /**
+         * writes an appointment as an event
+         * @param appointment the appointment to write
+         * @throws IOException if the event could not be written
+         */
+        public void write(Appointment appointment) throws IOException {
+            property("BEGIN", "VEVENT");
+            property("UID", "appointment-" + appointment.getAppointment_ID() + "@scheduler");
+            property("DTSTAMP", stamp);
+            property("DTSTART", UTC_FORMAT.format(appointment.getStartInstant()));
+            property("DTEND", UTC_FORMAT.format(appointment.getEndInstant()));
+            property("SUMMARY", escape(appointment.getTitle()));
+            if (appointment.getDescription() != null) { property("DESCRIPTION", escape(appointment.getDescription())); }
+            if (appointment.getLocation() != null) { property("LOCATION", escape(appointment.getLocation())); }
+            if (appointment.getType() != null) { property("CATEGORIES", escape(appointment.getType())); }
+            property("X-SCHEDULER-CUSTOMER-ID", String.valueOf(appointment.getCustomer_ID()));
+            property("X-SCHEDULER-CONTACT-ID", String.valueOf(appointment.getContact_ID()));
+            property("X-SCHEDULER-USER-ID", String.valueOf(appointment.getUser_ID()));
+            property("END", "VEVENT");
+        }
+
+        /**
+         * writes the end of the calendar
+         * @throws IOException if the calendar could not be written
+         */
+        public void finish() throws IOException {
+            property("END", "VCALENDAR");
+        }
+
+        /**
+         * writes a property line, folded so no line passes 75 bytes and ended by a CRLF as the format asks
+         */
+        private void property(String name, String value) throws IOException {
+            line.setLength(0);
+            line.append(name).append(':');
+            int bytes = line.length();
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                //a surrogate pair is four bytes, all counted on its first half so the pair is never split
+                int size = c < 0x80 ? 1 : c < 0x800 ? 2 : Character.isHighSurrogate(c) ? 4
+                        : Character.isLowSurrogate(c) ? 0 : 3;
+                if (size > 0 && bytes + size > FOLD_BYTES) {
+                    line.append("\r\n ");
+                    bytes = 1;
+                }
+                line.append(c);
+                bytes += size;
+            }
+            line.append("\r\n");
+            out.append(line);
+        }
+    }
+
+    /**
+     * reads the events of a calendar one at a time
+     */
+    public static final class Reader {
+        private final BufferedReader in;
+        private final ZoneId defaultZone;
+        //the line read ahead to find the end of a folded line, null once the calendar has been read
+        private String pending;
+        private int lineNumber;
+        private int eventLine;
+
+        /**
+         * @param in the calendar to read
+         * @param defaultZone the zone of the times written without one
+         * @throws IOException if the calendar could not be read
+         */
+        public Reader(BufferedReader in, ZoneId defaultZone) throws IOException {
+            this.in = in;
+            this.defaultZone = defaultZone;
+            pending = in.readLine();
+            //drops the byte order mark some calendar clients start the file with
+            if (pending != null && pending.startsWith("\uFEFF")) { pending = pending.substring(1); }
+        }
+
+        /**
+         * reads the next event. An event that could not be read is skipped by the next call, so a damaged event does
+         * not stop the rest of the calendar from being read
+         * @param customerId the customer of an event without an X-SCHEDULER-CUSTOMER-ID, 0 if there is none
+         * @param contactId the contact of an event without an X-SCHEDULER-CONTACT-ID, 0 if there is none
+         * @param userId the user of an event without an X-SCHEDULER-USER-ID, 0 if there is none
+         * @return the event as an appointment with an id of zero, or null once every event has been read
+         * @throws IOException if the calendar could not be read
+         * @throws IllegalArgumentException if the event could not be read, or lacks a time or an id
+         */
+        public Appointment next(int customerId, int contactId, int userId) throws IOException {
+            //skips to the start of the next event
+            String line;
+            do {
+                line = readLine();
+                if (line == null) { return null; }
+            } while (!line.equalsIgnoreCase("BEGIN:VEVENT"));
+            eventLine = lineNumber;
+
+            String title = "";
+            String description = null;
+            String location = null;
+            String type = null;
+            ZonedDateTime start = null;
+            ZonedDateTime end = null;
+            Duration duration = null;
+            int customer = customerId;
+            int contact = contactId;
+            int user = userId;
+            //counts the components nested within the event, such as its alarms, whose properties are skipped
+            int nested = 0;
+            String failure = null;
+            boolean ended = false;
+
+            while ((line = readLine()) != null) {
+                int colon = valueStart(line);
+                if (colon < 0) { continue; }
+                String[] parameters = line.substring(0, colon).split(";");
+                String name = parameters[0].toUpperCase();
+                String value = line.substring(colon + 1);
+
+                if (name.equals("BEGIN")) {
+                    nested++;
+                    continue;
+                }
+                if (name.equals("END")) {
+                    if (nested-- > 0) { continue; }
+                    ended = true;
+                    break;
+                }
+                if (nested > 0 || failure != null) { continue; }
+                try {
+                    switch (name) {
+                        case "SUMMARY": title = unescape(value); break;
+                        case "DESCRIPTION": description = unescape(value); break;
+                        case "LOCATION": location = unescape(value); break;
+                        case "CATEGORIES": type = unescape(firstCategory(value)); break;
+                        case "DTSTART": start = parseTime(value, parameters); break;
+                        case "DTEND": end = parseTime(value, parameters); break;
+                        case "DURATION": duration = parseDuration(value); break;
+                        case "X-SCHEDULER-CUSTOMER-ID": customer = Integer.parseInt(value.trim()); break;
+                        case "X-SCHEDULER-CONTACT-ID": contact = Integer.parseInt(value.trim()); break;
+                        case "X-SCHEDULER-USER-ID": user = Integer.parseInt(value.trim()); break;
+                        default: break;
+                    }
+                } catch (DateTimeException | IllegalArgumentException e) {
+                    //reads on to the end of the event so the next call starts after it
+                    failure = name + " " + e.getMessage();
+                }
+            }
+
+            if (!ended) { throw new IllegalArgumentException("the calendar ends within the event"); }
+            if (failure != null) { throw new IllegalArgumentException(failure); }
+            if (start == null) { throw new IllegalArgumentException("no DTSTART"); }
+            if (end == null) { end = duration == null ? start : start.plus(duration); }
+            if (customer <= 0) { throw new IllegalArgumentException("no customer"); }
+            if (contact <= 0) { throw new IllegalArgumentException("no contact"); }
+            if (user <= 0) { throw new IllegalArgumentException("no user"); }
+            return new Appointment(0, title, description, location, contact, type, start, end, customer, user);
+        }
+
+        /**
+         * @return the line the event last read by {@link #next} started on
+         */
+        public int eventLine() {
+            return eventLine;
+        }
+
+        /**
+         * reads a line with the lines folded onto it joined back on
+         */
+        private String readLine() throws IOException {
+            if (pending == null) { return null; }
+            StringBuilder line = new StringBuilder(pending);
+            lineNumber++;
+            while ((pending = in.readLine()) != null && !pending.isEmpty()
+                    && (pending.charAt(0) == ' ' || pending.charAt(0) == '\t')) {
+                line.append(pending, 1, pending.length());
+                lineNumber++;
+            }
+            return line.toString();
+        }
+
+        /**
+         * reads a DATE-TIME in UTC, in the zone named by its TZID or in the default zone, or a DATE as its start
+         */
+        private ZonedDateTime parseTime(String value, String[] parameters) {
+            ZoneId zone = defaultZone;
+            boolean date = false;
+            for (int i = 1; i < parameters.length; i++) {
+                String parameter = parameters[i];
+                if (parameter.regionMatches(true, 0, "TZID=", 0, 5)) {
+                    zone = zoneOf(parameter.substring(5));
+                } else if (parameter.equalsIgnoreCase("VALUE=DATE")) {
+                    date = true;
+                }
+            }
+            String text = value.trim();
+            if (date || text.length() == 8) { return LocalDate.parse(text, DATE_FORMAT).atStartOfDay(zone); }
+            if (text.endsWith("Z") || text.endsWith("z")) {
+                return LocalDateTime.parse(text.substring(0, text.length() - 1), LOCAL_FORMAT).atZone(ZoneOffset.UTC);
+            }
+            return LocalDateTime.parse(text, LOCAL_FORMAT).atZone(zone);
+        }
+
+        /**
+         * the zone of a TZID, the default zone for the ids of a VTIMEZONE that Java does not know
+         */
+        private ZoneId zoneOf(String id) {
+            String name = id.startsWith("\"") && id.endsWith("\"") && id.length() > 1
+                    ? id.substring(1, id.length() - 1) : id;
+            try {
+                return ZoneId.of(name);
+            } catch (DateTimeException e) {
+                return defaultZone;
+            }
+        }
+    }
+
+    /**
+     * reads a DURATION, which unlike Java's own durations may be given in weeks
+     */
+    static Duration parseDuration(String value) {
+        String text = value.trim().toUpperCase();
+        boolean negative = text.startsWith("-");
+        if (negative || text.startsWith("+")) { text = text.substring(1); }
+        Duration duration;
+        if (text.endsWith("W") && text.startsWith("P")) {
+            duration = Duration.ofDays(7L * Long.parseLong(text.substring(1, text.length() - 1)));
+        } else {
+            try {
+                duration = Duration.parse(text);
+            } catch (DateTimeParseException e) {
+                throw new IllegalArgumentException("unreadable duration " + value);
+            }
+        }
+        return negative ? duration.negated() : duration;
+    }
+
+    /**
+     * escapes the backslashes, commas, semicolons and line breaks of a text value
+     */
+    static String escape(String text) {
+        if (text == null) { return ""; }
+        StringBuilder escaped = new StringBuilder(text.length() + 8);
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            switch (c) {
+                case '\\': escaped.append("\\\\"); break;
+                case ',': escaped.append("\\,"); break;
+                case ';': escaped.append("\\;"); break;
+                case '\n': escaped.append("\\n"); break;
+                case '\r': break;
+                default: escaped.append(c);
+            }
+        }
+        return escaped.toString();
+    }
+
+    /**
+     * undoes {@link #escape}
+     */
+    static String unescape(String text) {
+        if (text.indexOf('\\') < 0) { return text; }
+        StringBuilder plain = new StringBuilder(text.length());
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (c != '\\' || i + 1 == text.length()) {
+                plain.append(c);
+                continue;
+            }
+            char next = text.charAt(++i);
+            plain.append(next == 'n' || next == 'N' ? '\n' : next);
+        }
+        return plain.toString();
+    }
+
+    /**
+     * finds the colon that starts the value of a property line, skipping the colons within quoted parameters
+     */
+    private static int valueStart(String line) {
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (c == '"') {
+                quoted = !quoted;
+            } else if (c == ':' && !quoted) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * the first of a list of categories, the commas escaped within a category are kept
+     */
+    private static String firstCategory(String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == ',') {
+                return value.substring(0, i);
+            }
+        }
+        return value;
+    }
+}
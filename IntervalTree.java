@@ -0,0 +1,221 @@
+import java.util.function.IntConsumer;
+
+/**
+ * A balanced (AVL) tree of appointment intervals ordered by start time, where every node also holds the latest end
+ * time found below it. This allows both "which appointments start within [from, to)" and "does [start, end) overlap
+ * anything" to be answered in O(log n + k) instead of scanning every appointment. Times are epoch seconds and the
+ * intervals are half open, so an appointment ending at 10:00 does not overlap one starting at 10:00.
+ *
+ * The tree is not thread safe, the appointment index guards it with its own lock.
+ */
+final class IntervalTree {
+
+    private Node root; //holds the root of the tree
+    private int size; //holds the number of intervals in the tree
+
+    /**
+     * a single appointment interval along with the balancing and search information of its sub tree
+     */
+    private static final class Node {
+        private final long start; //start of the appointment in epoch seconds
+        private final long end; //end of the appointment in epoch seconds
+        private final int id; //id of the appointment
+        private long maxEnd; //latest end time within this node's sub tree
+        private int height = 1; //height of this node's sub tree
+        private Node left;
+        private Node right;
+
+        Node(int id, long start, long end) {
+            this.id = id;
+            this.start = start;
+            this.end = end;
+            this.maxEnd = end;
+        }
+    }
+
+    /**
+     * @return the number of intervals held by the tree
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * adds an appointment interval to the tree
+     * @param id the appointment id
+     * @param start the start time in epoch seconds
+     * @param end the end time in epoch seconds
+     */
+    void insert(int id, long start, long end) {
+        root = insert(root, id, start, end);
+        size++;
+    }
+
+    /**
+     * removes an appointment interval from the tree, the start time must be the one it was inserted with
+     * @param id the appointment id
+     * @param start the start time the interval was inserted with
+     * @return true if the interval was found and removed
+     */
+    boolean remove(int id, long start) {
+        int before = size;
+        root = remove(root, id, start);
+        return size < before;
+    }
+
+    /**
+     * removes every interval from the tree
+     */
+    void clear() {
+        root = null;
+        size = 0;
+    }
+
+    /**
+     * passes the id of every appointment starting within [from, to) to the consumer in order of start time
+     * @param from the inclusive lower bound in epoch seconds
+     * @param to the exclusive upper bound in epoch seconds
+     * @param out receives the appointment ids
+     */
+    void startingBetween(long from, long to, IntConsumer out) {
+        startingBetween(root, from, to, out);
+    }
+
+    /**
+     * passes the id of every appointment overlapping [from, to) to the consumer in order of start time
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param out receives the appointment ids
+     */
+    void overlapping(long from, long to, IntConsumer out) {
+        overlapping(root, from, to, out);
+    }
+
+    /**
+     * checks to see if any appointment other than the excluded one overlaps [from, to)
+     * @param from the start of the range in epoch seconds
+     * @param to the end of the range in epoch seconds
+     * @param excludeId the id of an appointment to ignore (the one being modified), -1 to ignore none
+     * @return true if there is an overlap
+     */
+    boolean anyOverlap(long from, long to, int excludeId) {
+        return anyOverlap(root, from, to, excludeId);
+    }
+
+    private static void startingBetween(Node node, long from, long to, IntConsumer out) {
+        if (node == null) { return; }
+        //only the left side is able to hold earlier starts
+        if (from <= node.start) { startingBetween(node.left, from, to, out); }
+        if (node.start >= from && node.start < to) { out.accept(node.id); }
+        if (node.start < to) { startingBetween(node.right, from, to, out); }
+    }
+
+    private static void overlapping(Node node, long from, long to, IntConsumer out) {
+        //nothing within this sub tree ends after the range begins
+        if (node == null || node.maxEnd <= from) { return; }
+        overlapping(node.left, from, to, out);
+        //everything to the right starts at or after this node, so stop once the range has been passed
+        if (node.start >= to) { return; }
+        if (node.end > from) { out.accept(node.id); }
+        overlapping(node.right, from, to, out);
+    }
+
+    private static boolean anyOverlap(Node node, long from, long to, int excludeId) {
+        while (node != null) {
+            if (node.maxEnd <= from) { return false; }
+            if (node.start < to && node.end > from && node.id != excludeId) { return true; }
+            //the left side is able to hold an overlap only if something there ends after the range begins
+            if (node.left != null && node.left.maxEnd > from) {
+                if (anyOverlap(node.left, from, to, excludeId)) { return true; }
+            }
+            if (node.start >= to) { return false; }
+            node = node.right;
+        }
+        return false;
+    }
+
+    /**
+     * orders the nodes by start time and then by id so appointments with the same start are kept apart
+     */
+    private static int compare(long start, int id, Node node) {
+        int result = Long.compare(start, node.start);
+        return result != 0 ? result : Integer.compare(id, node.id);
+    }
+
+    private Node insert(Node node, int id, long start, long end) {
+        if (node == null) { return new Node(id, start, end); }
+        if (compare(start, id, node) < 0) {
+            node.left = insert(node.left, id, start, end);
+        } else {
+            node.right = insert(node.right, id, start, end);
+        }
+        return balance(node);
+    }
+
+    private Node remove(Node node, int id, long start) {
+        if (node == null) { return null; }
+        int result = compare(start, id, node);
+        if (result < 0) {
+            node.left = remove(node.left, id, start);
+        } else if (result > 0) {
+            node.right = remove(node.right, id, start);
+        } else {
+            size--;
+            if (node.left == null) { return node.right; }
+            if (node.right == null) { return node.left; }
+            //replaces the node with the first node of its right side
+            Node successor = node.right;
+            while (successor.left != null) { successor = successor.left; }
+            Node replacement = new Node(successor.id, successor.start, successor.end);
+            size++;
+            replacement.right = remove(node.right, successor.id, successor.start);
+            replacement.left = node.left;
+            return balance(replacement);
+        }
+        return balance(node);
+    }
+
+    private static int height(Node node) {
+        return node == null ? 0 : node.height;
+    }
+
+    private static void update(Node node) {
+        node.height = 1 + Math.max(height(node.left), height(node.right));
+        long maxEnd = node.end;
+        if (node.left != null && node.left.maxEnd > maxEnd) { maxEnd = node.left.maxEnd; }
+        if (node.right != null && node.right.maxEnd > maxEnd) { maxEnd = node.right.maxEnd; }
+        node.maxEnd = maxEnd;
+    }
+
+    private static Node rotateRight(Node node) {
+        Node left = node.left;
+        node.left = left.right;
+        left.right = node;
+        update(node);
+        update(left);
+        return left;
+    }
+
+    private static Node rotateLeft(Node node) {
+        Node right = node.right;
+        node.right = right.left;
+        right.left = node;
+        update(node);
+        update(right);
+        return right;
+    }
+
+    private static Node balance(Node node) {
+        update(node);
+        int factor = height(node.left) - height(node.right);
+        if (factor > 1) {
+            if (height(node.left.left) < height(node.left.right)) { node.left = rotateLeft(node.left); }
+            return rotateRight(node);
+        }
+        if (factor < -1) {
+            if (height(node.right.right) < height(node.right.left)) { node.right = rotateRight(node.right); }
+            return rotateLeft(node);
+        }
+        return node;
+    }
+}
@@ -0,0 +1,514 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SortedMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Answers questions about the login activity file without reading all of it. Alongside the file an index file keeps
+ * how far the file has been read, the attempts counted per hour, the byte offset at which each hour starts within the
+ * current file and the first and last successful login and failure count of each user. Opening the index only reads
+ * the lines written since it was last saved, hourly counts and first and last logins come straight from the index,
+ * and the failures of a user within the last minutes are counted by seeking to the hour they start in.
+ *
+ * Both the JSON lines written by the login audit log and the older tab separated lines are read. Only checked passwords
+ * count: attempts refused by the lock-out or the rate limits, and those the database could not answer, are left out of
+ * the failures so that trying again while locked out does not extend the lock-out. A rotated file is told apart by its
+ * identity on disk (its file key, or its creation time where there is none) and by its first line. When the file has
+ * been rotated since the index was saved the counts are kept, since the attempts are still within the compressed
+ * files, and only the offsets are started over. A missing index is built from the compressed files as well as the
+ * current one.
+ *
+ * For throttling the login screen the index also keeps a window of the last audit.failureWindowMinutes minutes of
+ * failures per user in memory, one counter per minute, so checking a user before a login costs the same however long
+ * the file has grown.
+ */
+public final class LoginActivityIndex {
+
+    private static final long SECONDS_PER_HOUR = 3_600;
+    private static final int INDEX_VERSION = 2;
+    //the most users the failure windows are kept for before idle ones are dropped
+    private static final int MAX_WINDOWS = 10_000;
+
+    private static volatile LoginActivityIndex instance;
+
+    private final Path file;
+    private final Path indexFile;
+    private final int windowMinutes;
+    private final int maxFailures;
+
+    //how far the current file has been read, its identity on disk and its first line, which tell a rotated file apart.
+    //The first line is empty until it is whole, as for the older file whose only line had no line break
+    private long indexedBytes;
+    private String identity = "";
+    private String firstLine = "";
+    //the attempts per hour, {successes, failures, byte offset of the hour within the current file or -1}
+    private final TreeMap<Long, long[]> hours = new TreeMap<>();
+    //the first and last successful login and the failure count per user, {first, last, failures}
+    private final Map<String, long[]> users = new HashMap<>();
+    //the recent failures per user, used to throttle the login screen
+    private final Map<String, FailureWindow> windows = new ConcurrentHashMap<>();
+
+    LoginActivityIndex(Path file, Path indexFile, int windowMinutes, int maxFailures) throws IOException {
+        this.file = file;
+        this.indexFile = indexFile;
+        this.windowMinutes = windowMinutes;
+        this.maxFailures = maxFailures;
+        if (!load()) { indexArchives(); }
+        refresh();
+        seedWindows();
+    }
+
+    /**
+     * returns the shared index of the login activity file named by audit.file in the database settings file, reading
+     * the lines added since it was last opened
+     * @return the login activity index
+     * @throws IOException if the file or its index could not be read
+     */
+    public static LoginActivityIndex getInstance() throws IOException {
+        if (instance == null) {
+            synchronized (LoginActivityIndex.class) {
+                if (instance == null) {
+                    Properties properties = ConnectionPool.loadProperties();
+                    Path file = Paths.get(properties.getProperty("audit.file", "src/login_activity.txt"));
+                    instance = new LoginActivityIndex(file, file.resolveSibling(file.getFileName() + ".idx"),
+                            Integer.parseInt(properties.getProperty("audit.failureWindowMinutes", "15")),
+                            Integer.parseInt(properties.getProperty("audit.maxFailures", "5")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * reads the lines added to the file since the index was last brought up to date and saves the index
+     * @throws IOException if the file or the index could not be read or written
+     */
+    public synchronized void refresh() throws IOException {
+        if (!Files.exists(file)) { return; }
+        String currentIdentity = identityOf(file);
+        String currentFirst = readFirstLine(file);
+        long readBefore = indexedBytes;
+        boolean rotated = Files.size(file) < indexedBytes || !currentFirst.startsWith(firstLine)
+                || (!identity.isEmpty() && !identity.equals(currentIdentity));
+        if (rotated) {
+            //the file was rotated, the counts stay while the offsets point into a file that is gone
+            for (long[] hour : hours.values()) { hour[2] = -1; }
+            indexedBytes = 0;
+        }
+        boolean identified = !currentIdentity.equals(identity) || !currentFirst.equals(firstLine);
+        identity = currentIdentity;
+        firstLine = currentFirst;
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(indexedBytes);
+            LineReader lines = new LineReader(Channels.newInputStream(channel), indexedBytes);
+            String line;
+            while ((line = lines.next()) != null) {
+                LoginAuditLog.Record record = parse(line);
+                if (record != null) { count(record, lines.lineStart); }
+            }
+            indexedBytes = lines.position;
+        }
+        if (rotated || identified || indexedBytes != readBefore) { save(); }
+    }
+
+    /**
+     * counts the failed logins of a user since an instant, reading the file only from the hour the instant falls in
+     * @param user the user name
+     * @param since the earliest attempt counted
+     * @return the number of failed attempts
+     * @throws IOException if the file could not be read
+     */
+    public synchronized int failedAttempts(String user, Instant since) throws IOException {
+        refresh();
+        String key = key(user);
+        int failures = 0;
+        for (LoginAuditLog.Record record : readFrom(since)) {
+            if (record.result == LoginAuditLog.Result.FAILURE && key(record.user).equals(key)) { failures++; }
+        }
+        return failures;
+    }
+
+    /**
+     * @param from the earliest hour included
+     * @param to the hour after the last one included
+     * @return the successful and failed logins of each hour within the range, keyed by the start of the hour
+     * @throws IOException if the file could not be read
+     */
+    public synchronized SortedMap<Instant, int[]> loginsPerHour(Instant from, Instant to) throws IOException {
+        refresh();
+        SortedMap<Instant, int[]> result = new TreeMap<>();
+        for (Map.Entry<Long, long[]> hour : hours.subMap(hourOf(from.getEpochSecond()), to.getEpochSecond())
+                .entrySet()) {
+            result.put(Instant.ofEpochSecond(hour.getKey()),
+                    new int[]{(int) hour.getValue()[0], (int) hour.getValue()[1]});
+        }
+        return result;
+    }
+
+    /**
+     * @return the first successful login of the user, or null if the user has never logged in
+     */
+    public synchronized Instant firstLogin(String user) throws IOException {
+        refresh();
+        long[] stats = users.get(key(user));
+        return stats == null || stats[0] == Long.MAX_VALUE ? null : Instant.ofEpochSecond(stats[0]);
+    }
+
+    /**
+     * @return the last successful login of the user, or null if the user has never logged in
+     */
+    public synchronized Instant lastLogin(String user) throws IOException {
+        refresh();
+        long[] stats = users.get(key(user));
+        return stats == null || stats[1] == Long.MIN_VALUE ? null : Instant.ofEpochSecond(stats[1]);
+    }
+
+    /**
+     * @return the failed logins of the user within the failure window, without touching the disk
+     */
+    public int recentFailures(String user) {
+        FailureWindow window = windows.get(key(user));
+        return window == null ? 0 : window.count(Instant.now().getEpochSecond() / 60);
+    }
+
+    /**
+     * @return true if the user has failed audit.maxFailures times within the failure window, checked without touching
+     * the disk
+     */
+    public boolean isThrottled(String user) {
+        return recentFailures(user) >= maxFailures;
+    }
+
+    /**
+     * adds a login attempt to the failure windows as it happens, the file is only read by the next refresh
+     * @param user the user name that was entered
+     * @param success true if the login succeeded, which clears the user's recent failures
+     */
+    public void recordAttempt(String user, boolean success) {
+        String key = key(user);
+        if (success) {
+            windows.remove(key);
+            return;
+        }
+        if (windows.size() >= MAX_WINDOWS) { dropIdleWindows(); }
+        windows.computeIfAbsent(key, k -> new FailureWindow(windowMinutes))
+                .add(Instant.now().getEpochSecond() / 60);
+    }
+
+    /**
+     * fills the failure windows from the end of the file when the index is opened
+     */
+    private void seedWindows() throws IOException {
+        Instant since = Instant.now().minusSeconds(windowMinutes * 60L);
+        for (LoginAuditLog.Record record : readFrom(since)) {
+            String key = key(record.user);
+            if (record.result == LoginAuditLog.Result.SUCCESS) {
+                windows.remove(key);
+            } else if (record.result == LoginAuditLog.Result.FAILURE) {
+                windows.computeIfAbsent(key, k -> new FailureWindow(windowMinutes))
+                        .add(record.time.getEpochSecond() / 60);
+            }
+        }
+    }
+
+    private void dropIdleWindows() {
+        long minute = Instant.now().getEpochSecond() / 60;
+        windows.values().removeIf(window -> window.count(minute) == 0);
+    }
+
+    /**
+     * reads the records of the current file from the hour an instant falls in to the end
+     */
+    private List<LoginAuditLog.Record> readFrom(Instant since) throws IOException {
+        List<LoginAuditLog.Record> records = new ArrayList<>();
+        if (!Files.exists(file)) { return records; }
+        //starts at the first hour at or before the instant that has an offset within the current file
+        long offset = 0;
+        for (Map.Entry<Long, long[]> hour : hours.headMap(hourOf(since.getEpochSecond()), true)
+                .descendingMap().entrySet()) {
+            if (hour.getValue()[2] >= 0) {
+                offset = hour.getValue()[2];
+                break;
+            }
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            channel.position(offset);
+            LineReader lines = new LineReader(Channels.newInputStream(channel), offset);
+            String line;
+            while ((line = lines.next()) != null) {
+                LoginAuditLog.Record record = parse(line);
+                if (record != null && !record.time.isBefore(since)) { records.add(record); }
+            }
+        }
+        return records;
+    }
+
+    /**
+     * adds a record to the counts
+     * @param offset the byte offset of the record within the current file, or -1 if it is within a compressed file
+     */
+    private void count(LoginAuditLog.Record record, long offset) {
+        long second = record.time.getEpochSecond();
+        long[] hour = hours.computeIfAbsent(hourOf(second), k -> new long[]{0, 0, -1});
+        if (offset >= 0 && (hour[2] < 0 || offset < hour[2])) { hour[2] = offset; }
+        long[] user = users.computeIfAbsent(key(record.user), k -> new long[]{Long.MAX_VALUE, Long.MIN_VALUE, 0});
+        if (record.result == LoginAuditLog.Result.SUCCESS) {
+            hour[0]++;
+            user[0] = Math.min(user[0], second);
+            user[1] = Math.max(user[1], second);
+        } else if (record.result == LoginAuditLog.Result.FAILURE) {
+            hour[1]++;
+            user[2]++;
+        }
+    }
+
+    /**
+     * counts the compressed files of earlier rotations, used when there is no index yet
+     */
+    private void indexArchives() throws IOException {
+        Path directory = file.toAbsolutePath().getParent();
+        if (directory == null || !Files.isDirectory(directory)) { return; }
+        String name = file.getFileName().toString();
+        String base = name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name;
+        List<Path> archives = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory, base + ".*.txt.gz")) {
+            for (Path path : files) { archives.add(path); }
+        }
+        archives.sort(null);
+        for (Path archive : archives) {
+            try (InputStream in = new GZIPInputStream(Files.newInputStream(archive))) {
+                LineReader lines = new LineReader(in, 0);
+                String line;
+                while ((line = lines.next()) != null) {
+                    LoginAuditLog.Record record = parse(line);
+                    if (record != null) { count(record, -1); }
+                }
+            }
+        }
+    }
+
+    /**
+     * reads the index file, returning false if there is none or it was written by another version
+     */
+    private boolean load() throws IOException {
+        if (!Files.exists(indexFile)) { return false; }
+        List<String> lines = Files.readAllLines(indexFile, StandardCharsets.UTF_8);
+        if (lines.isEmpty() || !lines.get(0).equals("version " + INDEX_VERSION)) { return false; }
+        for (String line : lines.subList(1, lines.size())) {
+            String[] fields = line.split(" ");
+            switch (fields[0]) {
+                case "file":
+                    indexedBytes = Long.parseLong(fields[1]);
+                    identity = decode(fields[2]);
+                    firstLine = decode(fields[3]);
+                    break;
+                case "hour":
+                    hours.put(Long.parseLong(fields[1]), new long[]{Long.parseLong(fields[2]),
+                            Long.parseLong(fields[3]), Long.parseLong(fields[4])});
+                    break;
+                case "user":
+                    users.put(decode(fields[1]), new long[]{Long.parseLong(fields[2]), Long.parseLong(fields[3]),
+                            Long.parseLong(fields[4])});
+                    break;
+                default:
+                    break;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * writes the index to a temporary file and moves it into place, so a crash never leaves half an index
+     */
+    private void save() throws IOException {
+        Path temporary = indexFile.resolveSibling(indexFile.getFileName() + ".tmp");
+        try (BufferedWriter out = Files.newBufferedWriter(temporary, StandardCharsets.UTF_8)) {
+            out.write("version " + INDEX_VERSION + "\n");
+            out.write("file " + indexedBytes + " " + encode(identity) + " " + encode(firstLine) + "\n");
+            for (Map.Entry<Long, long[]> hour : hours.entrySet()) {
+                long[] value = hour.getValue();
+                out.write("hour " + hour.getKey() + " " + value[0] + " " + value[1] + " " + value[2] + "\n");
+            }
+            for (Map.Entry<String, long[]> user : users.entrySet()) {
+                long[] value = user.getValue();
+                out.write("user " + encode(user.getKey()) + " " + value[0] + " " + value[1] + " " + value[2] + "\n");
+            }
+        }
+        Files.move(temporary, indexFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * reads a line of the login activity file in either format
+     * @param line the line without its line break
+     * @return the attempt held by the line, or null if the line is blank or could not be read
+     */
+    static LoginAuditLog.Record parse(String line) {
+        try {
+            if (line.startsWith("{")) { return parseJson(line); }
+            if (line.startsWith("Username: ")) { return parseTabbed(line); }
+        } catch (DateTimeParseException | IllegalArgumentException | IndexOutOfBoundsException e) {
+            //a damaged line is skipped rather than stopping the read
+        }
+        return null;
+    }
+
+    /**
+     * reads a line written by the login audit log, {"time":"...","user":"...","result":"..."}
+     */
+    private static LoginAuditLog.Record parseJson(String line) {
+        int timeStart = line.indexOf("\"time\":\"") + 8;
+        Instant time = Instant.parse(line.substring(timeStart, line.indexOf('"', timeStart)));
+        int userStart = line.indexOf("\"user\":\"") + 8;
+        StringBuilder user = new StringBuilder();
+        int i = userStart;
+        for (char c = line.charAt(i); c != '"'; c = line.charAt(++i)) {
+            if (c == '\\') {
+                char escaped = line.charAt(++i);
+                if (escaped == 'u') {
+                    user.append((char) Integer.parseInt(line.substring(i + 1, i + 5), 16));
+                    i += 4;
+                } else {
+                    user.append(escaped);
+                }
+            } else {
+                user.append(c);
+            }
+        }
+        int resultStart = line.indexOf("\"result\":\"", i) + 10;
+        return new LoginAuditLog.Record(time, user.toString(),
+                LoginAuditLog.Result.of(line.substring(resultStart, line.indexOf('"', resultStart))));
+    }
+
+    /**
+     * reads a line written before the audit log, Username: name\t Date/Time:2020-11-20 14:05:09.0\t Login Successful,
+     * whose time is in the zone of the computer that wrote it
+     */
+    private static LoginAuditLog.Record parseTabbed(String line) {
+        String[] fields = line.split("\t");
+        String user = fields[0].substring("Username: ".length());
+        Instant time = Timestamp.valueOf(fields[1].trim().substring("Date/Time:".length())).toInstant();
+        boolean success = fields[2].trim().equals("Login Successful");
+        return new LoginAuditLog.Record(time, user,
+                success ? LoginAuditLog.Result.SUCCESS : LoginAuditLog.Result.FAILURE);
+    }
+
+    /**
+     * the identity of a file on disk, which changes when the file is replaced by a new one of the same name: its file
+     * key (device and inode) where the file system has one, otherwise its creation time
+     */
+    private static String identityOf(Path path) throws IOException {
+        BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+        Object key = attributes.fileKey();
+        return key != null ? key.toString() : "created " + attributes.creationTime().toMillis();
+    }
+
+    private static String readFirstLine(Path path) throws IOException {
+        try (InputStream in = Files.newInputStream(path)) {
+            String line = new LineReader(in, 0).next();
+            return line == null ? "" : line;
+        }
+    }
+
+    private static long hourOf(long epochSecond) {
+        return Math.floorDiv(epochSecond, SECONDS_PER_HOUR) * SECONDS_PER_HOUR;
+    }
+
+    private static String key(String user) {
+        return user == null ? "" : user.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static String encode(String value) {
+        return value.isEmpty() ? "-" : URLEncoder.encode(value, StandardCharsets.UTF_8);
+    }
+
+    private static String decode(String value) {
+        return value.equals("-") ? "" : URLDecoder.decode(value, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * reads UTF-8 lines from a stream while keeping the byte offset of each, a partly written last line is left for
+     * the next read
+     */
+    private static final class LineReader {
+        private final InputStream in;
+        private final ByteArrayOutputStream buffer = new ByteArrayOutputStream(128);
+        private long position; //the offset just after the last complete line
+        private long lineStart; //the offset of the line last returned
+
+        LineReader(InputStream in, long position) {
+            this.in = new BufferedInputStream(in, 64 * 1024);
+            this.position = position;
+        }
+
+        String next() throws IOException {
+            buffer.reset();
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    lineStart = position;
+                    position += buffer.size() + 1;
+                    String line = buffer.toString(StandardCharsets.UTF_8);
+                    return line.endsWith("\r") ? line.substring(0, line.length() - 1) : line;
+                }
+                buffer.write(b);
+            }
+            return null;
+        }
+    }
+
+    /**
+     * the failures of a user within the last minutes, one counter per minute reused as the window moves
+     */
+    private static final class FailureWindow {
+        private final long[] minutes;
+        private final int[] counts;
+
+        FailureWindow(int size) {
+            minutes = new long[size];
+            counts = new int[size];
+        }
+
+        synchronized void add(long minute) {
+            int slot = (int) Math.floorMod(minute, (long) minutes.length);
+            if (minutes[slot] != minute) {
+                minutes[slot] = minute;
+                counts[slot] = 0;
+            }
+            counts[slot]++;
+        }
+
+        synchronized int count(long now) {
+            int total = 0;
+            for (int slot = 0; slot < minutes.length; slot++) {
+                if (now - minutes[slot] < minutes.length) { total += counts[slot]; }
+            }
+            return total;
+        }
+    }
+}
@@ -0,0 +1,360 @@
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Properties;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Records every login attempt to the login activity file without making the login wait on the disk. Attempts are put
+ * on a bounded queue and written by a single background thread, which takes everything waiting at once, writes it as
+ * one batch and flushes the batch to the disk together (a group commit), so a burst of logins costs one flush rather
+ * than one per attempt. If the queue is ever full the attempt is counted as dropped instead of blocking the login.
+ *
+ * Each attempt is written as one JSON object per line, for example
+ * {"time":"2020-11-20T14:05:09Z","user":"test","result":"success"}, the result being success, failure, refused (the
+ * attempt was locked out or throttled before the password was checked) or error (the database could not be asked). The
+ * file is rotated once it passes audit.maxBytes or its first attempt is audit.rotateMillis old, however often the
+ * program was started since: it is renamed with the time of the rotation, compressed with gzip and only the newest
+ * audit.keepFiles compressed files are kept.
+ */
+public final class LoginAuditLog {
+
+    /**
+     * the result of a login attempt, as written to the file
+     */
+    public enum Result {
+        SUCCESS("success"), FAILURE("failure"), REFUSED("refused"), ERROR("error");
+
+        final String text;
+
+        Result(String text) {
+            this.text = text;
+        }
+
+        /**
+         * @return the result written as the text, FAILURE for text that is not one
+         */
+        static Result of(String text) {
+            for (Result result : values()) {
+                if (result.text.equals(text)) { return result; }
+            }
+            return FAILURE;
+        }
+    }
+
+    /**
+     * a single login attempt as it is queued for writing
+     */
+    static final class Record {
+        final Instant time;
+        final String user;
+        final Result result;
+
+        Record(Instant time, String user, Result result) {
+            this.time = time;
+            this.user = user;
+            this.result = result;
+        }
+    }
+
+    //names the rotated files by the time of the rotation
+    private static final DateTimeFormatter ROTATED_NAME = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss-SSS")
+            .withZone(ZoneOffset.UTC);
+
+    //queued by close() to wake the writer, never written
+    private static final Record WAKE = new Record(Instant.EPOCH, "", Result.FAILURE);
+
+    private static volatile LoginAuditLog instance;
+
+    private final Path file;
+    private final long maxBytes;
+    private final long rotateMillis;
+    private final int keepFiles;
+    private final BlockingQueue<Record> queue;
+    private final Thread writer;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean closed;
+
+    //only touched by the writer thread
+    private FileChannel channel;
+    private BufferedWriter out;
+    private long fileBytes;
+    private long startedAt; //the time of the file's first attempt, its age for rotating
+
+    LoginAuditLog(Path file, long maxBytes, long rotateMillis, int keepFiles, int capacity) {
+        this.file = file;
+        this.maxBytes = maxBytes;
+        this.rotateMillis = rotateMillis;
+        this.keepFiles = keepFiles;
+        this.queue = new ArrayBlockingQueue<>(capacity);
+        this.writer = new Thread(this::run, "login-audit");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        //writes whatever is still queued when the program closes
+        Runtime.getRuntime().addShutdownHook(new Thread(this::close, "login-audit-shutdown"));
+    }
+
+    /**
+     * returns the shared log, using the audit settings of the database settings file
+     * @return the login audit log
+     */
+    public static LoginAuditLog getInstance() {
+        if (instance == null) {
+            synchronized (LoginAuditLog.class) {
+                if (instance == null) {
+                    Properties properties = ConnectionPool.loadProperties();
+                    instance = new LoginAuditLog(Paths.get(properties.getProperty("audit.file",
+                            "src/login_activity.txt")),
+                            Long.parseLong(properties.getProperty("audit.maxBytes", "10485760")),
+                            Long.parseLong(properties.getProperty("audit.rotateMillis", "86400000")),
+                            Integer.parseInt(properties.getProperty("audit.keepFiles", "30")),
+                            Integer.parseInt(properties.getProperty("audit.queueCapacity", "10000")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * queues a login attempt to be written, returning at once
+     * @param user the user name that was entered
+     * @param result how the attempt ended
+     */
+    public void record(String user, Result result) {
+        Record record = new Record(Instant.now(), user == null ? "" : user, result);
+        if (closed || !queue.offer(record)) { dropped.increment(); }
+    }
+
+    /**
+     * @return the number of attempts written to the file
+     */
+    public long writtenCount() {
+        return written.sum();
+    }
+
+    /**
+     * @return the number of attempts not written because the queue was full or the log was closed
+     */
+    public long droppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * stops taking attempts and waits for the queued ones to be written. The writer is woken through the queue rather
+     * than interrupted, since interrupting a thread within a file channel call closes the channel
+     */
+    public void close() {
+        closed = true;
+        queue.offer(WAKE);
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * the writer thread, taking every queued attempt at once and writing them as one batch. A batch that could not be
+     * written is counted as dropped and the file is opened again for the next one, so a single failed write or
+     * rotation never stops the attempts after it from being written
+     */
+    private void run() {
+        List<Record> batch = new ArrayList<>();
+        while (!closed || !queue.isEmpty()) {
+            try {
+                if (out == null) { open(); }
+                //wakes up now and then so an idle file is still rotated on time
+                Record first = queue.poll(1, TimeUnit.SECONDS);
+                if (first != null) {
+                    batch.add(first);
+                    queue.drainTo(batch);
+                    write(batch);
+                    batch.clear();
+                }
+                if (dueForRotation()) { rotate(); }
+            } catch (InterruptedException e) {
+                //only happens when the program is being torn down, the loop ends once the queue is empty
+                closed = true;
+            } catch (IOException e) {
+                System.err.println("login audit: " + e.getMessage());
+                //once closing there is no waiting for the disk to come back, what is still queued is dropped
+                if (closed) { queue.drainTo(batch); }
+                for (Record record : batch) {
+                    if (record != WAKE) { dropped.increment(); }
+                }
+                batch.clear();
+                closeFile();
+                //waits before opening the file again, so a disk that stays unavailable is not retried in a busy loop
+                if (!closed) { pause(); }
+            }
+        }
+        closeFile();
+    }
+
+    private void pause() {
+        try {
+            Thread.sleep(1_000);
+        } catch (InterruptedException e) {
+            closed = true;
+        }
+    }
+
+    /**
+     * writes a batch and forces it to the disk with a single flush
+     */
+    private void write(List<Record> batch) throws IOException {
+        StringBuilder line = new StringBuilder(96);
+        int count = 0;
+        for (Record record : batch) {
+            if (record == WAKE) { continue; }
+            count++;
+            line.setLength(0);
+            format(record, line);
+            out.write(line.toString());
+            //counts characters rather than encoded bytes, close enough for deciding when to rotate
+            fileBytes += line.length();
+        }
+        out.flush();
+        channel.force(false);
+        written.add(count);
+    }
+
+    /**
+     * writes a record as a JSON line
+     */
+    static void format(Record record, StringBuilder line) {
+        line.append("{\"time\":\"").append(record.time).append("\",\"user\":\"");
+        for (int i = 0; i < record.user.length(); i++) {
+            char c = record.user.charAt(i);
+            if (c == '"' || c == '\\') {
+                line.append('\\').append(c);
+            } else if (c < 0x20) {
+                line.append(String.format("\\u%04x", (int) c));
+            } else {
+                line.append(c);
+            }
+        }
+        line.append("\",\"result\":\"").append(record.result.text).append("\"}\n");
+    }
+
+    private boolean dueForRotation() {
+        return fileBytes >= maxBytes || (fileBytes > 0 && System.currentTimeMillis() - startedAt >= rotateMillis);
+    }
+
+    private void open() throws IOException {
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) { Files.createDirectories(parent); }
+        channel = FileChannel.open(file, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.APPEND);
+        out = new BufferedWriter(new OutputStreamWriter(Channels.newOutputStream(channel),
+                StandardCharsets.UTF_8));
+        fileBytes = channel.size();
+        startedAt = fileBytes == 0 ? System.currentTimeMillis() : firstAttemptAt();
+        //the older login activity file starts each line with its line break, so its last line has none; ends it
+        //first so the first record is not appended onto that line
+        if (fileBytes > 0 && !endsWithLineBreak()) {
+            out.write('\n');
+            out.flush();
+            fileBytes++;
+        }
+    }
+
+    /**
+     * the time of the first attempt within the file, so the age for rotating carries on across restarts, or the time
+     * the file was created when no attempt near its start can be read
+     */
+    private long firstAttemptAt() throws IOException {
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer head = ByteBuffer.allocate(4096);
+            reader.read(head, 0);
+            //the older file starts with a line break, so the first line holding an attempt is looked for
+            for (String line : new String(head.array(), 0, head.position(), StandardCharsets.UTF_8).split("\n")) {
+                Record record = LoginActivityIndex.parse(line.trim());
+                if (record != null) { return record.time.toEpochMilli(); }
+            }
+        }
+        return Math.min(System.currentTimeMillis(),
+                Files.readAttributes(file, BasicFileAttributes.class).creationTime().toMillis());
+    }
+
+    private boolean endsWithLineBreak() throws IOException {
+        try (FileChannel reader = FileChannel.open(file, StandardOpenOption.READ)) {
+            ByteBuffer last = ByteBuffer.allocate(1);
+            reader.read(last, reader.size() - 1);
+            return last.position() == 1 && last.get(0) == '\n';
+        }
+    }
+
+    private void closeFile() {
+        try {
+            if (out != null) { out.close(); }
+        } catch (IOException e) {
+            System.err.println("login audit: " + e.getMessage());
+        } finally {
+            //closes the channel too should closing the writer have failed before reaching it
+            try {
+                if (channel != null) { channel.close(); }
+            } catch (IOException e) {
+                System.err.println("login audit: " + e.getMessage());
+            }
+            out = null;
+            channel = null;
+        }
+    }
+
+    /**
+     * renames the full file, compresses it and starts a new one, keeping only the newest compressed files
+     */
+    private void rotate() throws IOException {
+        closeFile();
+        String name = file.getFileName().toString();
+        String base = name.endsWith(".txt") ? name.substring(0, name.length() - 4) : name;
+        String stamp = ROTATED_NAME.format(Instant.now());
+        Path rotated = file.resolveSibling(base + "." + stamp + ".txt");
+        Path compressed = rotated.resolveSibling(rotated.getFileName() + ".gz");
+        //adds a number in the rare case two rotations fall within the same millisecond
+        for (int n = 1; Files.exists(rotated) || Files.exists(compressed); n++) {
+            rotated = file.resolveSibling(base + "." + stamp + "-" + n + ".txt");
+            compressed = rotated.resolveSibling(rotated.getFileName() + ".gz");
+        }
+        Files.move(file, rotated);
+        open();
+
+        try (InputStream in = Files.newInputStream(rotated);
+             OutputStream gzip = new GZIPOutputStream(Files.newOutputStream(compressed))) {
+            in.transferTo(gzip);
+        }
+        Files.delete(rotated);
+
+        //removes the oldest compressed files, the names sort by the time of their rotation
+        List<Path> old = new ArrayList<>();
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(compressed.getParent() == null
+                ? Paths.get(".") : compressed.getParent(), base + ".*.txt.gz")) {
+            for (Path path : files) { old.add(path); }
+        }
+        old.sort(null);
+        for (int i = 0; i < old.size() - keepFiles; i++) { Files.deleteIfExists(old.get(i)); }
+    }
+}
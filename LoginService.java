@@ -0,0 +1,266 @@
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.sql.SQLException;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Checks logins before they reach the database. Every attempt has to pass, in order:
+ * <ul>
+ *     <li>the lock-out of the login activity index, for users who failed too often within the last minutes</li>
+ *     <li>a rate limit per user name and one per source (the computer the login comes from)</li>
+ *     <li>the session cache, which accepts the same user name, exactly as entered, and password verified within
+ *     login.sessionTtlMillis without asking the database again, off unless set</li>
+ *     <li>a rate limit on the logins sent to the shared database from this program as a whole</li>
+ * </ul>
+ * so a burst of guessed credentials is refused in memory instead of turning into a burst of queries and password
+ * hashes. The rate limits are token buckets kept as a single atomic long each and updated with compare and set, so
+ * checking them never takes a lock. Every attempt is written to the login audit log, while only the attempts whose
+ * password was checked count towards the lock-out.
+ */
+public final class LoginService {
+
+    /**
+     * how a login attempt ended
+     */
+    public enum Outcome {
+        /** the user name and password matched */
+        SUCCESS,
+        /** the user name or password did not match */
+        INVALID,
+        /** the user failed too often within the last minutes and has to wait */
+        LOCKED_OUT,
+        /** too many attempts were made for the user name, from the source or in total */
+        THROTTLED
+    }
+
+    /**
+     * the outcome of a login attempt and the id of the user when it succeeded
+     */
+    public static final class Result {
+        private final Outcome outcome;
+        private final int userId;
+
+        private Result(Outcome outcome, int userId) {
+            this.outcome = outcome;
+            this.userId = userId;
+        }
+
+        public Outcome getOutcome() { return outcome; }
+
+        /**
+         * @return the id of the user, -1 unless the login succeeded
+         */
+        public int getUserId() { return userId; }
+    }
+
+    //the most buckets kept per kind before the full ones are dropped
+    private static final int MAX_BUCKETS = 10_000;
+
+    private static volatile LoginService instance;
+
+    private final Map<String, TokenBucket> userBuckets = new ConcurrentHashMap<>();
+    private final Map<String, TokenBucket> sourceBuckets = new ConcurrentHashMap<>();
+    private final TokenBucket databaseBucket;
+    private final Map<String, Session> sessions = new ConcurrentHashMap<>();
+    //mixed into the session digests so they mean nothing outside of this run of the program
+    private final byte[] sessionSalt = new byte[16];
+
+    private final double userPerSecond;
+    private final int userBurst;
+    private final double sourcePerSecond;
+    private final int sourceBurst;
+    private final long sessionTtlNanos;
+
+    LoginService(Properties properties) {
+        userPerSecond = Double.parseDouble(properties.getProperty("login.user.perSecond", "0.2"));
+        userBurst = Integer.parseInt(properties.getProperty("login.user.burst", "5"));
+        sourcePerSecond = Double.parseDouble(properties.getProperty("login.source.perSecond", "1"));
+        sourceBurst = Integer.parseInt(properties.getProperty("login.source.burst", "10"));
+        databaseBucket = new TokenBucket(Double.parseDouble(properties.getProperty("login.db.perSecond", "5")),
+                Integer.parseInt(properties.getProperty("login.db.burst", "20")));
+        sessionTtlNanos = Long.parseLong(properties.getProperty("login.sessionTtlMillis", "0")) * 1_000_000L;
+        new SecureRandom().nextBytes(sessionSalt);
+    }
+
+    /**
+     * returns the shared login service, using the login settings of the database settings file
+     * @return the login service
+     */
+    public static LoginService getInstance() {
+        if (instance == null) {
+            synchronized (LoginService.class) {
+                if (instance == null) {
+                    instance = new LoginService(ConnectionPool.loadProperties());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * attempts a login
+     * @param username the user name that was entered
+     * @param password the password that was entered
+     * @param source the computer the login comes from
+     * @return the outcome, with the user's id when it succeeded
+     * @throws SQLException if the database could not be reached
+     */
+    public Result login(String username, String password, String source) throws SQLException {
+        String user = username == null ? "" : username.trim().toLowerCase(Locale.ROOT);
+        LoginActivityIndex activity = activityIndex();
+        Result result = null;
+        try {
+            result = attempt(username, password, source, user, activity);
+            return result;
+        } finally {
+            //records the attempt in the login activity file, including one the database could not answer, and only
+            //the attempts whose password was checked in the failure window, so a lock-out never extends itself
+            LoginAuditLog.getInstance().record(username, auditResult(result));
+            if (activity != null && result != null
+                    && (result.outcome == Outcome.SUCCESS || result.outcome == Outcome.INVALID)) {
+                activity.recordAttempt(user, result.outcome == Outcome.SUCCESS);
+            }
+        }
+    }
+
+    /**
+     * runs the checks of a login in order, stopping at the first that refuses it
+     */
+    private Result attempt(String username, String password, String source, String user,
+                           LoginActivityIndex activity) throws SQLException {
+        Result result;
+        if (activity != null && activity.isThrottled(user)) {
+            result = new Result(Outcome.LOCKED_OUT, -1);
+        } else if (!bucket(sourceBuckets, source, sourcePerSecond, sourceBurst).tryAcquire()
+                || !bucket(userBuckets, user, userPerSecond, userBurst).tryAcquire()) {
+            result = new Result(Outcome.THROTTLED, -1);
+        } else {
+            //the sessions are kept by the name as the database was asked, so only a name it accepted is accepted again
+            String name = username == null ? "" : username;
+            byte[] digest = digest(name, password);
+            Session session = sessions.get(name);
+            if (session != null && session.expiresAt - System.nanoTime() > 0
+                    && MessageDigest.isEqual(session.digest, digest)) {
+                result = new Result(Outcome.SUCCESS, session.userId);
+            } else if (!databaseBucket.tryAcquire()) {
+                result = new Result(Outcome.THROTTLED, -1);
+            } else {
+                int userId = new DBAccess().checkLogin(username, password);
+                if (userId != -1) {
+                    if (sessionTtlNanos > 0) {
+                        sessions.put(name, new Session(userId, digest, System.nanoTime() + sessionTtlNanos));
+                    }
+                    result = new Result(Outcome.SUCCESS, userId);
+                } else {
+                    sessions.remove(name);
+                    result = new Result(Outcome.INVALID, -1);
+                }
+            }
+        }
+        return result;
+    }
+
+    /**
+     * @param result the outcome of the attempt, null if it ended with an exception
+     * @return how the attempt is written to the login activity file
+     */
+    private static LoginAuditLog.Result auditResult(Result result) {
+        if (result == null) { return LoginAuditLog.Result.ERROR; }
+        switch (result.outcome) {
+            case SUCCESS:
+                return LoginAuditLog.Result.SUCCESS;
+            case INVALID:
+                return LoginAuditLog.Result.FAILURE;
+            default:
+                return LoginAuditLog.Result.REFUSED;
+        }
+    }
+
+    private static LoginActivityIndex activityIndex() {
+        try {
+            return LoginActivityIndex.getInstance();
+        } catch (IOException e) {
+            //the lock-out is skipped rather than refusing every login when the activity file cannot be read
+            System.err.println("login activity: " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static TokenBucket bucket(Map<String, TokenBucket> buckets, String key, double perSecond, int burst) {
+        if (buckets.size() >= MAX_BUCKETS) {
+            //drops the buckets that have filled back up, they would behave the same as a new one
+            long now = System.nanoTime();
+            buckets.values().removeIf(bucket -> bucket.isFull(now));
+        }
+        return buckets.computeIfAbsent(key == null ? "" : key, k -> new TokenBucket(perSecond, burst));
+    }
+
+    private byte[] digest(String name, String password) {
+        try {
+            MessageDigest sha = MessageDigest.getInstance("SHA-256");
+            sha.update(sessionSalt);
+            sha.update(name.getBytes(StandardCharsets.UTF_8));
+            sha.update((byte) 0);
+            sha.update((password == null ? "" : password).getBytes(StandardCharsets.UTF_8));
+            return sha.digest();
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+
+    /**
+     * a user and password verified against the database, trusted again until it expires
+     */
+    private static final class Session {
+        final int userId;
+        final byte[] digest;
+        final long expiresAt;
+
+        Session(int userId, byte[] digest, long expiresAt) {
+            this.userId = userId;
+            this.digest = digest;
+            this.expiresAt = expiresAt;
+        }
+    }
+
+    /**
+     * a token bucket kept as the time at which it would next be full (the theoretical arrival time of the generic cell
+     * rate algorithm). Taking a token moves that time on by one token's worth, and is refused when it would move more
+     * than a full bucket's worth past now, so the whole state is one long changed with compare and set.
+     */
+    static final class TokenBucket {
+        private final long nanosPerToken;
+        private final long burstNanos;
+        private final AtomicLong fullAt;
+
+        TokenBucket(double perSecond, int burst) {
+            nanosPerToken = (long) (1_000_000_000L / perSecond);
+            burstNanos = nanosPerToken * burst;
+            fullAt = new AtomicLong(System.nanoTime());
+        }
+
+        /**
+         * @return true if a token was taken, false if the bucket is empty
+         */
+        boolean tryAcquire() {
+            long now = System.nanoTime();
+            while (true) {
+                long current = fullAt.get();
+                long next = (current - now > 0 ? current : now) + nanosPerToken;
+                if (next - now > burstNanos) { return false; }
+                if (fullAt.compareAndSet(current, next)) { return true; }
+            }
+        }
+
+        boolean isFull(long now) {
+            return fullAt.get() - now <= 0;
+        }
+    }
+}
@@ -9,15 +9,11 @@ import javafx.scene.layout.GridPane;
 import javafx.scene.layout.VBox;
 import javafx.stage.Stage;
 
-import java.io.File;
-import java.io.FileWriter;
-import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 
 import java.sql.*;
 
-import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
-
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -74,43 +70,37 @@ public class LoginStage extends Application {
 
         //creates the event handler for the login button
         EventHandler<ActionEvent> loginButtonEvent = e -> {
-            try {
-                //creates a local time variable
-                LocalDateTime ldt = LocalDateTime.now();
-
-                //creates a time and date format to store information
-                DateTimeFormatter dtf = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss");
-
-                //creates timestamp of the current time
-                Timestamp ts = Timestamp.valueOf(ldt.format(dtf));
-
-                //creates variable to hold login information to the log
-                String info;
-
-                //returns the user id (-1 val if the login attempt failed
-                int userId = data.checkLogin(userNameInput.getText(), passwordInput.getText());
-
+            String userName = userNameInput.getText();
+            String password = passwordInput.getText();
+            //checks the login in the background, the login service refuses repeated attempts before they reach the
+            //database and records every attempt in the login activity file
+            loginButton.setDisable(true);
+            AsyncDataService.getInstance().submit(() -> LoginService.getInstance().login(userName, password,
+                    loginSource()), result -> {
+                loginButton.setDisable(false);
                 //checks if the login was a success
-                if(userId != -1) {
-                    //launches the main form for the user due to the successful login
-                    MainForm main = new MainForm();
-
-                    //sets the user to the login attempted success values
-                    User user = new User(userId, userNameInput.getText());
-
-                    //starts the main form after setting the user
-                    main.setUser(user);
-                    main.start(stage);
-
-                    //records the login information into the string to be written into the file
-                    info = "Username: " + userNameInput.getText() + "\t Date/Time:" + ts + "\t Login Successful";
+                if(result.getOutcome() == LoginService.Outcome.SUCCESS) {
+                    try {
+                        //launches the main form for the user due to the successful login
+                        MainForm main = new MainForm();
+
+                        //sets the user to the login attempted success values
+                        User user = new User(result.getUserId(), userName);
+
+                        //loads the countries, divisions, contacts and users once so the forms open without round trips
+                        ReferenceDataCache.getInstance().preload();
+
+                        //starts the main form after setting the user
+                        main.setUser(user);
+                        main.start(stage);
+                    } catch (SQLException throwables) {
+                        throwables.printStackTrace();
+                    }
                 }
                 else {
-                    //records the login attempt information to be written into the file
-                    info = "Username: " + userNameInput.getText() + "\t Date/Time:" + ts + "\t Login Failed";
-
                     //displays info to user about not being able to login
-                    Label failLogin = new Label(messages.getString("failLogin"));
+                    boolean refused = result.getOutcome() != LoginService.Outcome.INVALID;
+                    Label failLogin = new Label(messages.getString(refused ? "tooManyAttempts" : "failLogin"));
                     //button to navigate
                     Button okButton = new Button(messages.getString("okLabel"));
 
@@ -129,23 +119,16 @@ public class LoginStage extends Application {
                     stage2.setScene(layout);
                     stage2.show();
                 }
-
-                //sets the file writer to the log file
-                File file = new File("src/login_activity.txt");
-                FileWriter logAppending = new FileWriter(file, true);
-
-                //sets the string to the login file
-                logAppending.write("\n" + info);
-
-                //closes the file after the write
-                logAppending.close();
-            } catch (SQLException | IOException throwables) {
-                //catches any invalid user input
-                throwables.printStackTrace();
-            }
+            }, error -> {
+                //catches any failure reaching the database
+                loginButton.setDisable(false);
+                error.printStackTrace();
+            });
         };
         //adds the button to the event handler
         loginButton.setOnAction(loginButtonEvent);
+        //reads the login activity index in the background so the first login does not wait on it
+        AsyncDataService.getInstance().submit(LoginActivityIndex::getInstance);
 
         //grid pane for the login information
         GridPane loginInfo = new GridPane();
@@ -179,4 +162,15 @@ public class LoginStage extends Application {
         stage.setScene(scene);
         stage.show();
     }
+
+    /**
+     * @return the address of this computer, the source the login service limits attempts by
+     */
+    private static String loginSource() {
+        try {
+            return InetAddress.getLocalHost().getHostAddress();
+        } catch (UnknownHostException e) {
+            return "localhost";
+        }
+    }
 }
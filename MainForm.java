@@ -1,9 +1,12 @@
+import javafx.application.Platform;
 import javafx.collections.FXCollections;
 import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
 import javafx.geometry.Pos;
+import javafx.scene.Node;
 import javafx.scene.Scene;
 import javafx.scene.control.*;
 import javafx.scene.control.cell.PropertyValueFactory;
@@ -14,11 +17,13 @@ import javafx.stage.Modality;
 import javafx.stage.Stage;
 
 import java.sql.SQLException;
+import java.time.Instant;
 import java.time.LocalDate;
-import java.time.LocalDateTime;
+import java.time.ZoneId;
 import java.time.ZonedDateTime;
 import java.time.temporal.ChronoUnit;
 import java.time.temporal.WeekFields;
+import java.util.List;
 import java.util.Locale;
 import java.util.ResourceBundle;
 
@@ -34,6 +39,19 @@ public class MainForm{
     //user object to track login and appointment actions
     private User user;
 
+    //reads the appointment table a page at a time in the background, a newer load cancels the one still running. The
+    //pager is kept for the whole session so the main form shown again after adding or changing an appointment only
+    //applies the rows that changed
+    private static final AppointmentPager SESSION_PAGER = AppointmentPager.fromSettings();
+    private final AppointmentPager pager = SESSION_PAGER;
+
+    static {
+        //brings the table up to date when other copies of the program change appointments, the change bus coalesces a
+        //burst of changes into one sync
+        ChangeBus.getInstance().subscribe(ChangeBus.Topic.APPOINTMENT,
+                changes -> Platform.runLater(() -> SESSION_PAGER.sync(() -> {}, Throwable::printStackTrace)));
+    }
+
     //sets the settings for language and country for the window
     Locale user_local = new Locale(Locale.getDefault().getLanguage(), Locale.getDefault().getCountry());
     ResourceBundle messages = ResourceBundle.getBundle("MessagesBundle", user_local);
@@ -89,7 +107,7 @@ public class MainForm{
         monthlyOutlook.setToggleGroup(toggle);
 
         //sets the table view for the appointments to be viewed by the user
-        TableView appointmentView = new TableView();
+        TableView<Appointment> appointmentView = new TableView<>();
 
         //sets the string values for the labels of the columns, dynamically assigned based on language settings
         String appointmentLabel = messages.getString("appointmentTableLabel");
@@ -126,11 +144,44 @@ public class MainForm{
         customerIdCol.setCellValueFactory(new PropertyValueFactory<>("Customer_ID"));
         userIdCol.setCellValueFactory(new PropertyValueFactory<>("User_ID"));
 
+        //ties each column to the database column it is sorted by
+        appointmentIdCol.setUserData(AppointmentPager.SortColumn.APPOINTMENT_ID);
+        titleCol.setUserData(AppointmentPager.SortColumn.TITLE);
+        descriptionCol.setUserData(AppointmentPager.SortColumn.DESCRIPTION);
+        locationCol.setUserData(AppointmentPager.SortColumn.LOCATION);
+        contactCol.setUserData(AppointmentPager.SortColumn.CONTACT_ID);
+        typeCol.setUserData(AppointmentPager.SortColumn.TYPE);
+        startCol.setUserData(AppointmentPager.SortColumn.START);
+        endCol.setUserData(AppointmentPager.SortColumn.END);
+        customerIdCol.setUserData(AppointmentPager.SortColumn.CUSTOMER_ID);
+        userIdCol.setUserData(AppointmentPager.SortColumn.USER_ID);
+
         //adds all of the columns to the table
-        appointmentView.getColumns().addAll(appointmentIdCol, titleCol, descriptionCol, locationCol,
-                contactCol, typeCol, startCol, endCol, customerIdCol, userIdCol);
-        //sets the items to a list retrieved by a database method call
-        appointmentView.getItems().addAll(data.getAppointmentArray());
+        appointmentView.getColumns().addAll(List.of(appointmentIdCol, titleCol, descriptionCol, locationCol,
+                contactCol, typeCol, startCol, endCol, customerIdCol, userIdCol));
+        //sets the items to the rows held by the pager, only the first page is read before the table is shown, or only
+        //the changed rows when the pager already holds the appointments from an earlier main form
+        appointmentView.setItems(pager.getRows());
+        appointmentView.setPlaceholder(new Label(messages.getString("loadingLabel")));
+        pager.showAll(() -> appointmentView.setPlaceholder(null), error -> loadFailed(appointmentView, error));
+
+        //sorts on the database rather than within the table, since the table only holds part of the appointments
+        appointmentView.setSortPolicy(table -> {
+            //sorts by the first column of the sort order, or by the start time when no column is selected
+            TableColumn<Appointment, ?> sorted = appointmentView.getSortOrder().isEmpty() ? null
+                    : appointmentView.getSortOrder().get(0);
+            AppointmentPager.SortColumn column = sorted == null ? AppointmentPager.SortColumn.START
+                    : (AppointmentPager.SortColumn) sorted.getUserData();
+            boolean ascending = sorted == null || sorted.getSortType() == TableColumn.SortType.ASCENDING;
+
+            //reads the first page again only when the sort has changed
+            if (!pager.isSortedBy(column, ascending)) {
+                appointmentView.setPlaceholder(new Label(messages.getString("loadingLabel")));
+                pager.sortBy(column, ascending, () -> appointmentView.setPlaceholder(null),
+                        error -> loadFailed(appointmentView, error));
+            }
+            return true;
+        });
         //sets the size of the table for proper formatting
         appointmentView.setMinWidth(800);
         appointmentView.setMaxHeight(400);
@@ -169,42 +220,22 @@ public class MainForm{
             if (weeklyOutlook == toggle.getSelectedToggle()) {
                 //gets the selected date from the user input of the date picker
                 LocalDate dateComparison = selectViewTerm.getValue();
-                //calculates the week number of the day relative to the year
-                int weekNo = dateComparison.get(WeekFields.ISO.weekOfWeekBasedYear());
-                try {
-                    //removes values, then method call to get all appointments with the same week number value
-                    appointmentView.getItems().clear();
-                    appointmentView.getItems().removeAll();
-                    appointmentView.getItems().addAll(appByWeek(weekNo));
-                } catch (SQLException throwables) {
-                    //catches any invalid user inputs
-                    throwables.printStackTrace();
-                }
+                //replaces the values with all appointments within the same week
+                ZonedDateTime from = startOfWeek(dateComparison);
+                showAppointments(appointmentView, from, from.plusWeeks(1));
             }
             //checks if the month radio button has been selected
             else if (monthlyOutlook == toggle.getSelectedToggle()) {
                 //retrieves the date selected by the user
                 LocalDate dateComparison = selectViewTerm.getValue();
-                //gets the month value of the date selected
-                int monthNo = dateComparison.getMonthValue();
-                try {
-                    //retrieves all/any appointments within the same month
-                    appointmentView.getItems().clear();
-                    appointmentView.getItems().removeAll();
-                    appointmentView.getItems().addAll(appByMonth(monthNo));
-                } catch (SQLException throwables) { throwables.printStackTrace(); }
+                //retrieves all/any appointments within the same month
+                ZonedDateTime from = startOfMonth(dateComparison);
+                showAppointments(appointmentView, from, from.plusMonths(1));
             }
             //if there is no selection
             else {
-                //removes any previously set data
-                appointmentView.getItems().clear();
-                appointmentView.getItems().removeAll();
-                try {
-                    //attempts to set the data to not have any filter
-                    appointmentView.getItems().addAll(data.getAppointmentArray());
-                } catch (SQLException throwables) {
-                    throwables.printStackTrace();
-                }
+                //attempts to set the data to not have any filter
+                showAppointments(appointmentView, null, null);
             }
         });
 
@@ -213,39 +244,23 @@ public class MainForm{
             //gets the date from the date picker
             LocalDate temp = selectViewTerm.getValue();
 
-            //removes items to fill with new values
-            appointmentView.getItems().clear();
-            appointmentView.getItems().removeAll();
-
-            //checks if the user want to see the week or month value
+            //checks if the user want to see the week or month value, each load replaces the table's items and
+            //cancels any load still running for an earlier date
             if(weeklyOutlook.isSelected()){
-                try {
-                    //adds all the appointments within the selected week
-                    appointmentView.getItems().add(appByWeek(temp.get(WeekFields.ISO.weekOfWeekBasedYear())));
-                } catch (SQLException throwables) {
-                    //checks for invalid input
-                    throwables.printStackTrace();
-                }
+                //adds all the appointments within the selected week
+                ZonedDateTime from = startOfWeek(temp);
+                showAppointments(appointmentView, from, from.plusWeeks(1));
             }
             //checks if month is selected by the user
             else if(monthlyOutlook.isSelected()) {
-                try {
-                    //adds all of the appointments to the table that are in the selected month
-                    appointmentView.getItems().add(appByMonth(temp.getMonthValue()));
-                } catch (SQLException throwables) {
-                    //checks for invalid inputs
-                    throwables.printStackTrace();
-                }
+                //adds all of the appointments to the table that are in the selected month
+                ZonedDateTime from = startOfMonth(temp);
+                showAppointments(appointmentView, from, from.plusMonths(1));
             }
             //if nothing selected clears the table
             else {
-                try {
-                    //adds all values regardless of date
-                    appointmentView.setItems(data.getAppointmentArray());
-                } catch (SQLException throwables) {
-                    //catches any invalid inputs
-                    throwables.printStackTrace();
-                }
+                //adds all values regardless of date
+                showAppointments(appointmentView, null, null);
             }
         };
         //applies the button to the event handler
@@ -338,7 +353,7 @@ public class MainForm{
                 if(appointmentView.getSelectionModel().getSelectedItem() != null) {
                     //sets the scene to the class instance with the user selected appointment from the table
                     secondStage.setScene(modAppointment.modifyAppointment(
-                            (Appointment) appointmentView.getSelectionModel().getSelectedItem(), user));
+                            appointmentView.getSelectionModel().getSelectedItem(), user));
                     //displays the window
                     secondStage.show();
 
@@ -364,61 +379,60 @@ public class MainForm{
 
         //handles when the user selects the delete appointment button
         EventHandler<ActionEvent> deleteAppointmentEvent = e -> {
-            try {
-                if(appointmentView.getSelectionModel().getSelectedItem() != null) {
-                    //creates a new stage for the delete confirmation
-                    Stage stageConfirmDelete = new Stage();
-
-                    //creates a new label where it displays the appointment id and the title of the delete
-                    Label confirmDelete = new Label(
-                            ((Appointment) appointmentView.getSelectionModel().getSelectedItem()).getAppointment_ID() +
-                                    " : " + ((Appointment) appointmentView.getSelectionModel().getSelectedItem()).getTitle() +
-                                    " -> " + messages.getString("confirmDelete"));
-
-                    //creates a new ok button for the user to navigate through the application
-                    Button okButton = new Button(messages.getString("okLabel"));
-
-                    //adds the event for the ok button to close the new window
-                    /**
-                     *  @Lambda Using a lambda expression to express the inner event handler of the pop up window to
-                     *  be able to control the different events the lambda is used to effectively call the methods
-                     *  needed to provide the required action
-                     */
-                    EventHandler<ActionEvent> okEvent = e1 -> ((Stage) okButton.getScene().getWindow()).close();
-                    //adds the button to the event
-                    okButton.setOnAction(okEvent);
-
-                    //sets the layout for the display window
-                    VBox format = new VBox(confirmDelete, okButton);
-                    //settings for the window
-                    format.setSpacing(20);
-                    format.setPadding(new Insets(10, 10, 10, 10));
-                    //shows the scene
-                    Scene deleteConfirm = new Scene(format);
-                    stageConfirmDelete.setScene(deleteConfirm);
+            if(appointmentView.getSelectionModel().getSelectedItem() != null) {
+                //creates a new stage for the delete confirmation
+                Stage stageConfirmDelete = new Stage();
+
+                //creates a new label where it displays the appointment id and the title of the delete
+                Label confirmDelete = new Label(
+                        appointmentView.getSelectionModel().getSelectedItem().getAppointment_ID() +
+                                " : " + appointmentView.getSelectionModel().getSelectedItem().getTitle() +
+                                " -> " + messages.getString("confirmDelete"));
+
+                //creates a new ok button for the user to navigate through the application
+                Button okButton = new Button(messages.getString("okLabel"));
+
+                //adds the event for the ok button to close the new window
+                /**
+                 *  @Lambda Using a lambda expression to express the inner event handler of the pop up window to
+                 *  be able to control the different events the lambda is used to effectively call the methods
+                 *  needed to provide the required action
+                 */
+                EventHandler<ActionEvent> okEvent = e1 -> ((Stage) okButton.getScene().getWindow()).close();
+                //adds the button to the event
+                okButton.setOnAction(okEvent);
+
+                //sets the layout for the display window
+                VBox format = new VBox(confirmDelete, okButton);
+                //settings for the window
+                format.setSpacing(20);
+                format.setPadding(new Insets(10, 10, 10, 10));
+                //shows the scene
+                Scene deleteConfirm = new Scene(format);
+                stageConfirmDelete.setScene(deleteConfirm);
+
+                //the id of the selected appointment, read before the table is reloaded
+                int appointmentId = appointmentView.getSelectionModel().getSelectedItem().getAppointment_ID();
+
+                //calls the delete appointment method from the database access in the background, then shows the
+                //confirmation and reloads the table once it is done
+                AsyncDataService.getInstance().submit(() -> {
+                    data.deleteAppointment(appointmentId);
+                    return appointmentId;
+                }, deleted -> {
                     //shows the final result window
                     stageConfirmDelete.show();
-
-                    //calls the delete appointment method from the database access based on the selected appointment's id
-                    data.deleteAppointment((
-                            (Appointment) appointmentView.getSelectionModel().getSelectedItem()).getAppointment_ID());
-
-                    //removes all values
-                    appointmentView.getItems().clear();
-                    appointmentView.getItems().removeAll();
-                    //gets the new data array and sets it to the table
-                    appointmentView.getItems().addAll(data.getAppointmentArray());
-                }
-                //goes if there was no selection of the main form's table
-                else {
-                    //settings to display to the user the error pop up window
-                    Stage errorDisplay = new Stage();
-                    errorDisplay.setScene(noSelectionError());
-                    errorDisplay.show();
-                }
-            } catch (SQLException throwables) {
-                //catches any invalid input
-                throwables.printStackTrace();
+                    //removes the deleted row and applies any other changes since the table was read
+                    pager.sync(() -> appointmentView.setPlaceholder(null),
+                            error -> loadFailed(appointmentView, error));
+                }, Throwable::printStackTrace);
+            }
+            //goes if there was no selection of the main form's table
+            else {
+                //settings to display to the user the error pop up window
+                Stage errorDisplay = new Stage();
+                errorDisplay.setScene(noSelectionError());
+                errorDisplay.show();
             }
         };
         //adds the button to the event
@@ -432,13 +446,8 @@ public class MainForm{
             //creates new class instance for the display window of the reports
             ReportClass report = new ReportClass();
 
-            try {
-                //sets the scene
-                reportStage.setScene(report.reportScreen());
-            } catch (SQLException throwables) {
-                //catches any invalid inputs
-                throwables.printStackTrace();
-            }
+            //sets the scene, the report is computed in the background and shown once it arrives
+            reportStage.setScene(report.reportScreen());
             //shows the window
             reportStage.show();
         };
@@ -497,67 +506,85 @@ public class MainForm{
         primaryStage.setScene(scene);
         primaryStage.show();
 
-        //calls the pop up for the user about any upcoming appointment within 15 minutes of signing in
-        Stage secondary = new Stage();
-        secondary.setScene(appointmentUpcomingCheck());
-        secondary.initOwner(primaryStage);
-        secondary.initModality(Modality.APPLICATION_MODAL);
-        secondary.show();
+        //reads the next or previous page when the user scrolls to either end of the rows held by the table, the scroll
+        //bar only exists once the table has been shown
+        for (Node node : appointmentView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                scrollBar.valueProperty().addListener((ov, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) {
+                        pager.loadNext(appointmentView::scrollTo);
+                    }
+                    else if (newValue.doubleValue() <= scrollBar.getMin()) {
+                        pager.loadPrevious(appointmentView::scrollTo);
+                    }
+                });
+            }
+        }
+
+        //calls the pop up for the user about any upcoming appointment within 15 minutes of signing in, the appointments
+        //are looked up in the background and the pop up is shown once they arrive
+        AsyncDataService.getInstance().submit(this::upcomingAppointments, upcoming -> {
+            Stage secondary = new Stage();
+            secondary.setScene(appointmentUpcomingCheck(upcoming));
+            secondary.initOwner(primaryStage);
+            secondary.initModality(Modality.APPLICATION_MODAL);
+            secondary.show();
+        }, Throwable::printStackTrace);
+
+        //keeps reminding the user of each appointment shortly before it starts for the rest of the session, started
+        //once per user so showing the main form again only points the reminders at the new window
+        ReminderService.getInstance().start(getUser().getUserID(), appointment -> Platform.runLater(() -> {
+            Stage reminder = new Stage();
+            reminder.setScene(appointmentUpcomingCheck(List.of(appointment)));
+            reminder.initOwner(primaryStage);
+            reminder.show();
+        }));
     }
 
     /**
-     * Returns any appointments that have the same month value as the value passed into the method
-     * @param monthNo the month number (1-12) of the appointments the user wants to view
-     * @return the observable list of the appointments by the month
-     * @throws SQLException for any value that is invalid, such as too large of the range of months
+     * shows the appointments starting within [from, to) in the table, or every appointment if both are null. Only the
+     * first page is read, a loading message is shown until it arrives and a newer request cancels the one before it
+     * @param appointmentView the table showing the appointments
+     * @param from the start of the range in the user's time zone, null for no range
+     * @param to the end of the range in the user's time zone, null for no range
      */
-    private ObservableList<Appointment> appByMonth(int monthNo) throws SQLException {
-        //sets access to database methods
-        DBAccess data = new DBAccess();
+    private void showAppointments(TableView<Appointment> appointmentView, ZonedDateTime from, ZonedDateTime to) {
+        //shows the loading message while the first page is read
+        appointmentView.setPlaceholder(new Label(messages.getString("loadingLabel")));
+
+        pager.show(from == null ? null : from.toInstant(), to == null ? null : to.toInstant(),
+                //puts back the default placeholder for when the range has no appointments
+                () -> appointmentView.setPlaceholder(null),
+                error -> loadFailed(appointmentView, error));
+    }
 
-        //declares the list of appointment within the month
-        ObservableList<Appointment> byMonthApp = FXCollections.observableArrayList();
-        //gets all available appointments from the database
-        ObservableList<Appointment> appList = data.getAppointmentArray();
-
-        //loops through all of the appointments
-        for (Appointment temp : appList) {
-            //gets a temp value
-            //if the appointment has the same month value as the given value
-            if (temp.getStart().getMonthValue() == monthNo) {
-                //adds the appointment to the list to return to the user
-                byMonthApp.add(temp);
-            }
-        }
-        //returns all matches of the month value
-        if(byMonthApp.isEmpty()) { return null; }
-        else { return byMonthApp; }
+    /**
+     * lets the user know the table could not be filled
+     * @param appointmentView the table showing the appointments
+     * @param error the error thrown while reading the appointments
+     */
+    private void loadFailed(TableView<Appointment> appointmentView, Throwable error) {
+        appointmentView.setPlaceholder(new Label(messages.getString("loadFailed")));
+        error.printStackTrace();
     }
 
     /**
-     * Returns any appointments that have the same week value as the value passed into the method
-     * @param weekNo passes the week number to find the matches to any other appointments
-     * @return returns the list of appointment that have the same month value
-     * @throws SQLException for any value passed in that is invalid and throws an error
+     * Returns the start of the month (and year) holding the date passed into the method
+     * @param date any date within the month the user wants to view
+     * @return the first day of the month at midnight in the user's time zone
      */
-    private ObservableList<Appointment> appByWeek(int weekNo) throws SQLException {
-        //allows access to database method calls
-        DBAccess data = new DBAccess();
+    private ZonedDateTime startOfMonth(LocalDate date) {
+        return date.withDayOfMonth(1).atStartOfDay(ZoneId.systemDefault());
+    }
 
-        //initializes list of appointments with a matching week value
-        ObservableList<Appointment> byWeekApp = FXCollections.observableArrayList();
-        //initializes the list of all appointments in the database
-        ObservableList<Appointment> appList = data.getAppointmentArray();
-        //loops through thr list of the appointments
-        for (Appointment temp : appList) {
-            //if the week matches add to the list
-            if (temp.getStart().get(WeekFields.ISO.weekOfWeekBasedYear()) == weekNo) {
-                byWeekApp.add(temp);
-            }
-        }
-        //returns the appointments within the same week value
-        if(byWeekApp.isEmpty()) { return null; }
-        else { return byWeekApp; }
+    /**
+     * Returns the start of the week (Monday to Sunday) holding the date passed into the method
+     * @param date any date within the week the user wants to view
+     * @return the Monday of the week at midnight in the user's time zone
+     */
+    private ZonedDateTime startOfWeek(LocalDate date) {
+        return date.with(WeekFields.ISO.dayOfWeek(), 1).atStartOfDay(ZoneId.systemDefault());
     }
 
     /**
@@ -784,38 +811,32 @@ public class MainForm{
         return new Scene(combo);
     }
 
+    /**
+     * finds the appointments starting within 15 minutes of the users login time, called away from the JavaFX thread
+     * @return the upcoming appointments in order of start time
+     * @throws SQLException throws exception if the appointments could not be loaded
+     */
+    private List<Appointment> upcomingAppointments() throws SQLException {
+        //takes the current time once for the whole check
+        Instant now = Instant.now();
+
+        //the appointments starting within the next 15 minutes, filtered by the database so the whole table is not read
+        return new DBAccess().getAppointmentsBetween(now, now.plus(15, ChronoUnit.MINUTES));
+    }
+
     /**
      * checks to see if there is an upcoming appointment within 15 minutes of the users login time and sets an alert
      * for the user in a pop up window
+     * @param upcoming the appointments starting within the next 15 minutes
      * @return the scene for the pop up warning window
-     * @throws SQLException throws exception on invalid user input
      */
-    private Scene appointmentUpcomingCheck() throws SQLException {
+    private Scene appointmentUpcomingCheck(List<Appointment> upcoming) {
         //sets the location and language of the pop up base don the default system settings
         Locale user_local = new Locale(Locale.getDefault().getLanguage(), Locale.getDefault().getCountry());
         ResourceBundle messages = ResourceBundle.getBundle("MessagesBundle", user_local);
 
-        //allows access to database method calls
-        DBAccess data = new DBAccess();
-
-        //a list of all database appointments
-        ObservableList<Appointment> appointmentList = data.getAppointmentArray();
-
         //object to be assigned to the closet appointment within the 15 minute window
-        Appointment targetToWarn = null;
-
-        //loops through all the appointments
-        for (Appointment appointment : appointmentList) {
-            //checks to see if the appointment being looped through is within the target 15 minute zone
-            if ((LocalDateTime.now().plus(15, ChronoUnit.MINUTES).isAfter(
-                    appointment.getStart().toLocalDateTime())) && (LocalDateTime.now().isBefore(
-                    appointment.getStart().toLocalDateTime()))) {
-                //if an appointment is found within the allotted time return the appointment
-                targetToWarn = appointment;
-                //escapes the loop
-                break;
-            }
-        }
+        Appointment targetToWarn = upcoming.isEmpty() ? null : upcoming.get(0);
 
         //if there is an appointment happening in the next 15
         if(targetToWarn != null) {
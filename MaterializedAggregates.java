@@ -0,0 +1,591 @@
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.TreeMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the report counts in memory: the appointments by type and month, by contact and day and by the country of
+ * their customer. The counts are built once from the database, then the insert, update and delete methods of the
+ * database access class pass every appointment they write, which moves its counts in constant time, so reopening the
+ * report window costs nothing however many appointments there are.
+ *
+ * Each appointment is remembered with the type, contact, customer and start it was counted under, so an update or
+ * delete takes back exactly what was added. The changes other copies of the program make are caught up from the
+ * appointment change log before the next read, and if the log no longer reaches back far enough the counts are built
+ * again. The months and days are taken in the time zone the program runs in. The change log table of
+ * appointment_changes.sql is needed, so the counts are off unless aggregates.enabled is set, and the report engine
+ * counts within the database whenever they cannot be read.
+ *
+ * The remembered appointments are saved to aggregates.file every aggregates.snapshotMinutes and when the program
+ * closes, along with the change the log had reached. The file holds one row per appointment and the next start counts
+ * them again, so reading it back still costs time in proportion to the appointments, but it reads a local file rather
+ * than every appointment from the database and only catches up on the changes since.
+ */
+public final class MaterializedAggregates {
+
+    /**
+     * the number of appointments of a contact starting on a day
+     */
+    public static final class ContactDayCount {
+        private final int contactId;
+        private final LocalDate day;
+        private final int count;
+
+        ContactDayCount(int contactId, LocalDate day, int count) {
+            this.contactId = contactId;
+            this.day = day;
+            this.count = count;
+        }
+
+        public int getContactId() { return contactId; }
+
+        public LocalDate getDay() { return day; }
+
+        public int getCount() { return count; }
+    }
+
+    //changes whenever the layout of the saved file does
+    private static final int SNAPSHOT_VERSION = 1;
+
+    private static volatile MaterializedAggregates instance;
+
+    private final boolean enabled;
+    //where the counts are saved, null to keep them in memory only
+    private final Path file;
+    private final ZoneId zone = ZoneId.systemDefault();
+    private final DBAccess data = new DBAccess();
+    //lets one build or catch up run at a time, without holding up the writes while it reads the database
+    private final Object refreshLock = new Object();
+
+    //guarded by this, the counts are null until built or read back from the file
+    private Tables tables;
+    //the last change of the appointment change log the counts include
+    private long watermark;
+    //whether changes may have been made that the counts have to catch up on from the change log
+    private boolean behind;
+    //whether the last catch up read recent changes that are read again before the next read of the counts
+    private boolean unsettled;
+    //whether the customers' divisions have to be read again
+    private boolean customersStale;
+    //counts the appointments written by this copy, so a catch up racing a write is done again
+    private long writes;
+    //whether the counts changed since they were last saved
+    private boolean dirty;
+
+    MaterializedAggregates(Properties properties) {
+        enabled = Boolean.parseBoolean(properties.getProperty("aggregates.enabled", "false"));
+        String name = properties.getProperty("aggregates.file", "").trim();
+        file = enabled && !name.isEmpty() ? Paths.get(name) : null;
+        if (file == null) { return; }
+
+        //saves on a daemon thread so it never keeps the application open
+        long snapshotMillis = Math.max(1, Long.parseLong(properties.getProperty("aggregates.snapshotMinutes", "5")))
+                * 60_000L;
+        ScheduledExecutorService saver = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "report-aggregates");
+            thread.setDaemon(true);
+            return thread;
+        });
+        saver.scheduleWithFixedDelay(this::catchUpAndSave, snapshotMillis, snapshotMillis, TimeUnit.MILLISECONDS);
+        //saves what was counted when the program closes, without reaching the database
+        Runtime.getRuntime().addShutdownHook(new Thread(this::saveQuietly, "report-aggregates-shutdown"));
+    }
+
+    /**
+     * returns the shared counts, using the aggregates settings of the database settings file
+     * @return the report counts
+     */
+    public static MaterializedAggregates getInstance() {
+        if (instance == null) {
+            synchronized (MaterializedAggregates.class) {
+                if (instance == null) {
+                    instance = new MaterializedAggregates(ConnectionPool.loadProperties());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if the reports read the counts kept here rather than counting within the database
+     */
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * counts an appointment added or updated by this copy of the program, taking back what it was counted under before
+     * @param appointment the appointment as written, with the id the database gave it
+     */
+    public synchronized void put(Appointment appointment) {
+        writes++;
+        if (tables == null) { return; }
+        Row row = tables.row(appointment, zone);
+        Row old = tables.rows.put(appointment.getAppointment_ID(), row);
+        if (old != null) { tables.count(old, -1); }
+        tables.count(row, 1);
+        if (tables.divisionOf(row.customerId) == null) { customersStale = true; }
+        dirty = true;
+    }
+
+    /**
+     * takes back the counts of an appointment deleted by this copy of the program
+     * @param appointmentId the id of the deleted appointment
+     */
+    public synchronized void remove(int appointmentId) {
+        writes++;
+        if (tables == null) { return; }
+        Row old = tables.rows.remove(appointmentId);
+        if (old != null) {
+            tables.count(old, -1);
+            dirty = true;
+        }
+    }
+
+    /**
+     * moves the appointments of a customer to the country of the division it was saved with
+     * @param customerId the id of the customer
+     * @param divisionId the division the customer is in now
+     */
+    public synchronized void customerMoved(int customerId, int divisionId) {
+        if (tables == null) { return; }
+        tables.moveCustomer(customerId, divisionId);
+        dirty = true;
+    }
+
+    /**
+     * marks the customers' divisions to be read again before the next read, for customers written without a known id
+     * or by other copies of the program
+     */
+    public synchronized void customersChanged() {
+        customersStale = true;
+    }
+
+    /**
+     * marks the counts to catch up on the appointment change log before the next read, for appointments written
+     * without a known id or by other copies of the program
+     */
+    public synchronized void changedElsewhere() {
+        behind = true;
+    }
+
+    /**
+     * counts the appointments by type and by the month they start in
+     * @return the counts in order of month and type
+     * @throws SQLException if the counts had to be built or caught up and the database could not be read
+     */
+    public List<ReportEngine.TypeMonthCount> byTypeAndMonth() throws SQLException {
+        current();
+        List<ReportEngine.TypeMonthCount> counts = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Long, int[]> entry : tables.typeMonth.entrySet()) {
+                long key = entry.getKey();
+                int month = (int) key;
+                counts.add(new ReportEngine.TypeMonthCount(tables.types.get((int) (key >>> 32)),
+                        YearMonth.of(Math.floorDiv(month, 12), Math.floorMod(month, 12) + 1), entry.getValue()[0]));
+            }
+        }
+        counts.sort(Comparator.comparing(ReportEngine.TypeMonthCount::getMonth)
+                .thenComparing(ReportEngine.TypeMonthCount::getType, Comparator.nullsFirst(Comparator.naturalOrder())));
+        return counts;
+    }
+
+    /**
+     * counts the appointments of every contact by the day they start on
+     * @param from the first day counted
+     * @param to the last day counted
+     * @return the counts in order of contact and day
+     * @throws SQLException if the counts had to be built or caught up and the database could not be read
+     */
+    public List<ContactDayCount> byContactAndDay(LocalDate from, LocalDate to) throws SQLException {
+        current();
+        long first = from.toEpochDay();
+        long last = to.toEpochDay();
+        List<ContactDayCount> counts = new ArrayList<>();
+        synchronized (this) {
+            for (Map.Entry<Long, int[]> entry : tables.contactDay.entrySet()) {
+                long day = (int) (long) entry.getKey();
+                if (day < first || day > last) { continue; }
+                counts.add(new ContactDayCount((int) (entry.getKey() >>> 32), LocalDate.ofEpochDay(day),
+                        entry.getValue()[0]));
+            }
+        }
+        counts.sort(Comparator.comparingInt(ContactDayCount::getContactId).thenComparing(ContactDayCount::getDay));
+        return counts;
+    }
+
+    /**
+     * counts the appointments by the country of their customer
+     * @return the counts by country name, in order of name
+     * @throws SQLException if the counts had to be built or caught up and the database could not be read
+     */
+    public Map<String, Integer> byCountry() throws SQLException {
+        current();
+        Map<Integer, Integer> byDivision = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, int[]> entry : tables.divisions.entrySet()) {
+                byDivision.put(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        //names the countries outside of the lock, the reference data may have to be read
+        ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+        Map<String, Integer> counts = new TreeMap<>();
+        for (Map.Entry<Integer, Integer> entry : byDivision.entrySet()) {
+            counts.merge(referenceData.getCountryForDivision(entry.getKey()), entry.getValue(), Integer::sum);
+        }
+        return counts;
+    }
+
+    /**
+     * counts the appointments of every customer, the customers without appointments are left out
+     * @return the counts by customer id
+     * @throws SQLException if the counts had to be built or caught up and the database could not be read
+     */
+    public Map<Integer, Integer> byCustomer() throws SQLException {
+        current();
+        Map<Integer, Integer> counts = new HashMap<>();
+        synchronized (this) {
+            for (Map.Entry<Integer, int[]> entry : tables.customers.entrySet()) {
+                counts.put(entry.getKey(), entry.getValue()[0]);
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * builds the counts, or reads them back from the file, and catches up on what changed since, before a read
+     */
+    private void current() throws SQLException {
+        synchronized (this) {
+            if (tables != null && !behind && !unsettled && !customersStale) { return; }
+        }
+        synchronized (refreshLock) {
+            boolean built;
+            synchronized (this) { built = tables != null; }
+            if (!built && !load()) { build(); }
+            synchronized (this) { behind |= unsettled; }
+
+            //a write made while catching up may have been overwritten by the older row read, so catches up again
+            for (int attempt = 0; attempt < 3; attempt++) {
+                synchronized (this) { if (!behind) { break; } }
+                catchUp();
+            }
+            boolean customers;
+            synchronized (this) {
+                customers = customersStale;
+                customersStale = false;
+            }
+            if (customers) { readCustomers(); }
+        }
+    }
+
+    /**
+     * counts every appointment of the database
+     */
+    private void build() throws SQLException {
+        //takes the watermark first, the changes made while the appointments are read are caught up on afterwards
+        long since = data.getAppointmentWatermark();
+        Map<Integer, Integer> customerDivisions = customerDivisions();
+        AppointmentSnapshot snapshot = data.getAppointmentSnapshot();
+
+        Tables built = new Tables();
+        built.customerDivisions.putAll(customerDivisions);
+        for (int row = 0; row < snapshot.size(); row++) {
+            Row counted = built.row(snapshot.type(row), snapshot.contactId(row), snapshot.customerId(row),
+                    snapshot.start(row), zone);
+            built.rows.put(snapshot.id(row), counted);
+            built.count(counted, 1);
+        }
+        synchronized (this) {
+            tables = built;
+            watermark = since;
+            behind = true;
+            dirty = true;
+        }
+    }
+
+    /**
+     * applies the appointments changed since the watermark, building again if the change log no longer reaches back
+     */
+    private void catchUp() throws SQLException {
+        long since;
+        long seen;
+        synchronized (this) {
+            since = watermark;
+            seen = writes;
+            behind = false;
+        }
+        AppointmentChanges changes = data.getAppointmentChangesSince(since);
+        if (!changes.isComplete()) {
+            build();
+            return;
+        }
+        synchronized (this) {
+            for (Appointment appointment : changes.getChanged()) {
+                Row row = tables.row(appointment, zone);
+                Row old = tables.rows.put(appointment.getAppointment_ID(), row);
+                if (old != null) { tables.count(old, -1); }
+                tables.count(row, 1);
+                if (tables.divisionOf(row.customerId) == null) { customersStale = true; }
+            }
+            for (int id : changes.getRemoved()) {
+                Row old = tables.rows.remove(id);
+                if (old != null) { tables.count(old, -1); }
+            }
+            if (changes.getWatermark() != watermark || !changes.isEmpty()) { dirty = true; }
+            watermark = Math.max(watermark, changes.getWatermark());
+            if (writes != seen) { behind = true; }
+            unsettled = !changes.isSettled();
+        }
+    }
+
+    /**
+     * reads the division of every customer again and counts the divisions over
+     */
+    private void readCustomers() throws SQLException {
+        Map<Integer, Integer> customerDivisions = customerDivisions();
+        synchronized (this) {
+            tables.customerDivisions.clear();
+            tables.customerDivisions.putAll(customerDivisions);
+            tables.countDivisions();
+            dirty = true;
+        }
+    }
+
+    private Map<Integer, Integer> customerDivisions() throws SQLException {
+        Map<Integer, Integer> customerDivisions = new HashMap<>();
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CUSTOMER_DIVISIONS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) { customerDivisions.put(rs.getInt(1), rs.getInt(3)); }
+        }
+        return customerDivisions;
+    }
+
+    /**
+     * catches up on the change log so the saved watermark stays within it, then saves the counts
+     */
+    private void catchUpAndSave() {
+        try {
+            boolean built;
+            synchronized (this) { built = tables != null; }
+            if (built) { current(); }
+        } catch (SQLException e) {
+            //saves what is counted, the changes since the saved watermark are caught up on after the next start
+            System.err.println("report aggregates: " + e.getMessage());
+        }
+        saveQuietly();
+    }
+
+    private void saveQuietly() {
+        try {
+            save();
+        } catch (IOException e) {
+            System.err.println("report aggregates: " + e.getMessage());
+        }
+    }
+
+    /**
+     * writes the counted appointments to a temporary file and moves it into place, so a crash never leaves half a
+     * file. The counts themselves are not written, they are counted again from the appointments when read back
+     */
+    private synchronized void save() throws IOException {
+        if (file == null || tables == null || !dirty) { return; }
+        Path parent = file.toAbsolutePath().getParent();
+        if (parent != null) { Files.createDirectories(parent); }
+        Path temporary = file.resolveSibling(file.getFileName() + ".tmp");
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+            out.writeInt(SNAPSHOT_VERSION);
+            out.writeUTF(zone.getId());
+            out.writeLong(watermark);
+            out.writeInt(tables.types.size());
+            for (String type : tables.types) { out.writeUTF(type == null ? "" : type); }
+            out.writeInt(tables.rows.size());
+            for (Map.Entry<Integer, Row> entry : tables.rows.entrySet()) {
+                Row row = entry.getValue();
+                out.writeInt(entry.getKey());
+                out.writeInt(row.typeId);
+                out.writeInt(row.contactId);
+                out.writeInt(row.customerId);
+                out.writeLong(row.start);
+            }
+            out.writeInt(tables.customerDivisions.size());
+            for (Map.Entry<Integer, Integer> entry : tables.customerDivisions.entrySet()) {
+                out.writeInt(entry.getKey());
+                out.writeInt(entry.getValue());
+            }
+        }
+        Files.move(temporary, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        dirty = false;
+    }
+
+    /**
+     * reads the counted appointments back from the file, returning false if there is none, it was written by another
+     * version or in another time zone, or it could not be read
+     */
+    private boolean load() {
+        if (file == null || !Files.exists(file)) { return false; }
+        Tables loaded = new Tables();
+        long since;
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(file)))) {
+            if (in.readInt() != SNAPSHOT_VERSION || !in.readUTF().equals(zone.getId())) { return false; }
+            since = in.readLong();
+            int typeCount = in.readInt();
+            for (int i = 0; i < typeCount; i++) { loaded.typeId(in.readUTF()); }
+            int rowCount = in.readInt();
+            for (int i = 0; i < rowCount; i++) {
+                int id = in.readInt();
+                Row row = loaded.row(in.readInt(), in.readInt(), in.readInt(), in.readLong(), zone);
+                loaded.rows.put(id, row);
+            }
+            int customerCount = in.readInt();
+            for (int i = 0; i < customerCount; i++) { loaded.customerDivisions.put(in.readInt(), in.readInt()); }
+        } catch (IOException | RuntimeException e) {
+            System.err.println("report aggregates: " + e.getMessage());
+            return false;
+        }
+        for (Row row : loaded.rows.values()) { loaded.count(row, 1); }
+        synchronized (this) {
+            tables = loaded;
+            watermark = since;
+            //catches up on the changes made while the program was closed
+            behind = true;
+        }
+        return true;
+    }
+
+    /**
+     * what an appointment was counted under, the month and day in the time zone of the program
+     */
+    private static final class Row {
+        private final int typeId;
+        private final int contactId;
+        private final int customerId;
+        private final long start; //epoch seconds
+        private final int month; //months since year zero
+        private final int day; //days since the epoch
+
+        Row(int typeId, int contactId, int customerId, long start, ZoneId zone) {
+            this.typeId = typeId;
+            this.contactId = contactId;
+            this.customerId = customerId;
+            this.start = start;
+            ZonedDateTime local = Instant.ofEpochSecond(start).atZone(zone);
+            month = local.getYear() * 12 + local.getMonthValue() - 1;
+            day = (int) local.toLocalDate().toEpochDay();
+        }
+    }
+
+    /**
+     * the counted appointments and their counts, each count held in a single element array so it is changed in place
+     */
+    private static final class Tables {
+        //the distinct types, indexed by type id
+        private final List<String> types = new ArrayList<>();
+        private final Map<String, Integer> typeIds = new HashMap<>();
+        private final Map<Integer, Row> rows = new HashMap<>();
+        //keyed by the type id and the month, and by the contact id and the day, each in a half of a long
+        private final Map<Long, int[]> typeMonth = new HashMap<>();
+        private final Map<Long, int[]> contactDay = new HashMap<>();
+        private final Map<Integer, int[]> customers = new HashMap<>();
+        private final Map<Integer, int[]> divisions = new HashMap<>();
+        private final Map<Integer, Integer> customerDivisions = new HashMap<>();
+
+        Row row(Appointment appointment, ZoneId zone) {
+            return row(appointment.getType(), appointment.getContact_ID(), appointment.getCustomer_ID(),
+                    appointment.getStartEpochSecond(), zone);
+        }
+
+        Row row(String type, int contactId, int customerId, long start, ZoneId zone) {
+            return row(typeId(type), contactId, customerId, start, zone);
+        }
+
+        Row row(int typeId, int contactId, int customerId, long start, ZoneId zone) {
+            return new Row(typeId, contactId, customerId, start, zone);
+        }
+
+        int typeId(String type) {
+            String key = type == null ? "" : type;
+            Integer id = typeIds.get(key);
+            if (id == null) {
+                id = types.size();
+                types.add(key);
+                typeIds.put(key, id);
+            }
+            return id;
+        }
+
+        Integer divisionOf(int customerId) {
+            return customerDivisions.get(customerId);
+        }
+
+        /**
+         * adds or takes back an appointment from each of its counts
+         * @param sign 1 to add, -1 to take back
+         */
+        void count(Row row, int sign) {
+            add(typeMonth, ((long) row.typeId << 32) | (row.month & 0xFFFFFFFFL), sign);
+            add(contactDay, ((long) row.contactId << 32) | (row.day & 0xFFFFFFFFL), sign);
+            add(customers, row.customerId, sign);
+            Integer division = customerDivisions.get(row.customerId);
+            if (division != null) { add(divisions, division, sign); }
+        }
+
+        /**
+         * moves the appointments of a customer from its old division to its new one
+         */
+        void moveCustomer(int customerId, int divisionId) {
+            Integer old = customerDivisions.put(customerId, divisionId);
+            int[] count = customers.get(customerId);
+            if (count == null || (old != null && old == divisionId)) { return; }
+            if (old != null) { add(divisions, old, -count[0]); }
+            add(divisions, divisionId, count[0]);
+        }
+
+        /**
+         * counts the divisions over from the customers' counts, after the customers' divisions were read again
+         */
+        void countDivisions() {
+            divisions.clear();
+            for (Map.Entry<Integer, int[]> entry : customers.entrySet()) {
+                Integer division = customerDivisions.get(entry.getKey());
+                if (division != null) { add(divisions, division, entry.getValue()[0]); }
+            }
+        }
+
+        private static <K> void add(Map<K, int[]> counts, K key, int amount) {
+            int[] count = counts.get(key);
+            if (count == null) {
+                if (amount <= 0) { return; }
+                counts.put(key, new int[] {amount});
+            } else if ((count[0] += amount) <= 0) {
+                //drops the groups that no longer hold an appointment
+                counts.remove(key);
+            }
+        }
+    }
+}
@@ -1,4 +1,3 @@
-import javafx.collections.ObservableList;
 import javafx.event.ActionEvent;
 import javafx.event.EventHandler;
 import javafx.geometry.Insets;
@@ -14,6 +13,7 @@ import java.time.*;
 import java.time.format.DateTimeFormatter;
 import java.util.Locale;
 import java.util.ResourceBundle;
+import java.util.function.Predicate;
 
 /**
  * The class form for modifying a selected appointment saved into the database
@@ -83,22 +83,23 @@ public class ModifyAppointmentForm {
         //sets the date picker for the appointment
         DatePicker datePicker = new DatePicker(selectedAppointment.getStart().toLocalDate());
 
-        //combo box for selecting the contact for the appointment
-        ComboBox contactChoice = new ComboBox();
-        //adds the contacts from the database to the combo box
-        contactChoice.getItems().addAll(data.getContactNameArray());
-        contactChoice.getSelectionModel().select(data.getContactName(selectedAppointment.getContact_ID()));
+        //combo box for selecting the contact for the appointment, the contacts and users come from the reference
+        //data cache and the customers from a single query, each selected by the id held by the appointment
+        ComboBox<Contact> contactChoice = new ComboBox<>();
+        //adds the contacts to the combo box
+        contactChoice.getItems().addAll(data.getContactArray());
+        selectMatching(contactChoice, contact -> contact.getContactID() == selectedAppointment.getContact_ID());
 
         //combo box for selecting the customer for the appointment
-        ComboBox customerChoice = new ComboBox();
+        ComboBox<Customer> customerChoice = new ComboBox<>();
         //adds the customers from the database to the combo box
-        customerChoice.getItems().addAll(data.getCustomerNameArray());
-        customerChoice.getSelectionModel().select(data.getCustomerName(selectedAppointment.getCustomer_ID()));
+        customerChoice.getItems().addAll(data.getCustomerArray());
+        selectMatching(customerChoice, customer -> customer.getCustomer_ID() == selectedAppointment.getCustomer_ID());
 
-
-        ComboBox userChoice = new ComboBox<>();
-        userChoice.getItems().addAll(data.getUserNameArray());
-        userChoice.getSelectionModel().select(data.getUserName(selectedAppointment.getUser_ID()));
+        //combo box for selecting the user for the appointment
+        ComboBox<User> userChoice = new ComboBox<>();
+        userChoice.getItems().addAll(data.getUserArray());
+        selectMatching(userChoice, choice -> choice.getUserID() == selectedAppointment.getUser_ID());
 
         //creates the save button for the user to navigate
         Button saveButton = new Button(messages.getString("saveLabel"));
@@ -118,8 +119,7 @@ public class ModifyAppointmentForm {
                 ZonedDateTime end = ZonedDateTime.parse(endTime);
 
                 //checks against the business hours to take the first step in validating the input
-                if (start.withZoneSameInstant(ZoneId.of("America/New_York")).toLocalTime().isBefore(LocalTime.parse("08:00:00"))
-                        || (end.withZoneSameInstant(ZoneId.of("America/New_York")).toLocalDateTime().isAfter(LocalDateTime.parse(end.toLocalDate() + "T22:00:00")))){
+                if (!ScheduleRules.withinBusinessHours(start, end)) {
                     //sets the stage to tell user of the improper input
                     Stage stageTwo = new Stage();
                     stageTwo.setScene(errorUserTimeSet());
@@ -128,14 +128,15 @@ public class ModifyAppointmentForm {
                 }
                 //if the appointment has an acceptable assigned time amount
                 else {
-                    if(overlapCheck(start, end, customerChoice.getSelectionModel().getSelectedItem().toString(), selectedAppointment.getStart(), selectedAppointment.getEnd())) {
-                        //calls the database method to change the appointment information to the newly assigned values
+                    if(overlapCheck(start, end, customerChoice.getValue().getCustomer_ID(), selectedAppointment.getAppointment_ID())) {
+                        //calls the database method to change the appointment information to the newly assigned values,
+                        //the ids are taken straight from the selected objects
                         data.modifyAppointment(selectedAppointment.getAppointment_ID(), titleField.getText(),
                                 descriptionField.getText(), locationField.getText(),
-                                data.getContactID(contactChoice.getSelectionModel().getSelectedItem().toString()),
+                                contactChoice.getValue().getContactID(),
                                 typeField.getText(), start, end,
-                                data.getCustomerID(customerChoice.getSelectionModel().getSelectedItem().toString()),
-                                data.getUserID(userChoice.getSelectionModel().getSelectedItem().toString()));
+                                customerChoice.getValue().getCustomer_ID(),
+                                userChoice.getValue().getUserID());
 
                         //gets the active window and closes it
                         Stage stage = (Stage) saveButton.getScene().getWindow();
@@ -266,45 +267,34 @@ public class ModifyAppointmentForm {
      * appointment request
      * @param start the start time and date of the appointment
      * @param end the end time and date of the appointment
-     * @param CustomerName the customer assigned
+     * @param customerId the id of the customer assigned
+     * @param appointmentId the id of the appointment being modified, which is not checked against itself
      * @return boolean value, true means no overlap, false means overlap
      * @throws SQLException protect based off of improper layout
      */
-    private boolean overlapCheck(ZonedDateTime start, ZonedDateTime end, String CustomerName, ZonedDateTime originalStart, ZonedDateTime originalEnd) throws SQLException {
+    private boolean overlapCheck(ZonedDateTime start, ZonedDateTime end, int customerId, int appointmentId) throws SQLException {
         //checks to first see if the times set are possible to do with the start before the end
         if(end.isBefore(start)){return false;}
-        //initializes database access
-        DBAccess data = new DBAccess();
-        int count = 0;
-        //creates total list of the customers appointments
-        ObservableList<LocalDateTime[]> customerAppTimes = data.customerAssociatedAppointments(
-                data.getCustomerID(CustomerName));
-
-        //loops through the appointments
-        for (LocalDateTime[] customerAppTime : customerAppTimes) {
-            //checks to see if there is an appointment within the same day
-            if(start.getDayOfYear() == customerAppTime[1].getDayOfYear()) {
-                //checks to make sure that the time being compared is not to itself as that would be an overlap that
-                //is not needed to be protected against as it is about to be overwritten
-                if((!(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC")).equals(originalStart.withZoneSameInstant(ZoneId.of("UTC"))))) &&
-                        (!(ZonedDateTime.of(customerAppTime[1],ZoneId.of("UTC")).equals(originalEnd.withZoneSameInstant(ZoneId.of("UTC")))))){
-                    //checks to see if the appointment times are able to fit between other given values or over the values
-                    //or there is another form of overlap whether that be the same time as another appointment etc.
-                    if (((((start.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC")))) &&
-                            (start.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC")))))
-                            || ((end.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC")))) &&
-                            end.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC"))))) ||
-                            ((start.withZoneSameInstant(ZoneId.of("UTC")).toLocalTime() == customerAppTime[0].toLocalTime()) ||
-                                    (end.withZoneSameInstant(ZoneId.of("UTC")).toLocalTime() == customerAppTime[1].toLocalTime()))) ||
-                            (start.withZoneSameInstant(ZoneId.of("UTC")).isBefore(ZonedDateTime.of(customerAppTime[0], ZoneId.of("UTC"))) &&
-                                    (end.withZoneSameInstant(ZoneId.of("UTC")).isAfter(ZonedDateTime.of(customerAppTime[1], ZoneId.of("UTC")))))) {
-                        return false;
-                    }
-                }
+
+        //checks the customer's appointments within the appointment index for any overlap, leaving out the
+        //appointment being modified as it is about to be overwritten
+        return !AppointmentIndex.getInstance().ensureLoaded().overlaps(AppointmentIndex.Scope.CUSTOMER,
+                customerId, start.toInstant(), end.toInstant(), appointmentId);
+    }
+
+    /**
+     * selects the first item of the combo box that matches
+     * @param choice the combo box to select within
+     * @param match the test of the item to select
+     * @param <T> the type of the items
+     */
+    private static <T> void selectMatching(ComboBox<T> choice, Predicate<T> match) {
+        for (T item : choice.getItems()) {
+            if (match.test(item)) {
+                choice.getSelectionModel().select(item);
+                return;
             }
         }
-        //goes through loop and no matches is able to return true, no overlap
-        return true;
     }
 
     /**
@@ -0,0 +1,473 @@
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Optional cache of the appointment history held outside of the Java heap, so years of appointments can be kept close
+ * without growing the heap or the garbage collector's pauses on the client. The appointments are cached a month (in
+ * UTC) at a time. Each month is a segment of direct buffers: a fixed-width record per appointment in order of start
+ * time, an arena holding the bytes of its strings and an index of the ids in order, so the only objects on the heap
+ * are a handful per month. A table of primitive arrays on the heap gives the month each cached id is within, so a
+ * lookup by id reads a single month.
+ *
+ * The cache is limited to cache.offHeap.maxBytes of the database settings file and drops the oldest months first once
+ * it is full, a setting of 0 turns it off. Direct buffers are freed by the garbage collector once dropped, so
+ * -XX:MaxDirectMemorySize should leave room for about twice the limit.
+ */
+public final class OffHeapAppointmentStore {
+
+    /**
+     * reads the appointments starting within a range from the database, for the months not cached yet
+     */
+    @FunctionalInterface
+    public interface Loader {
+        List<Appointment> load(Instant from, Instant to) throws SQLException;
+    }
+
+    //the layout of a record, four strings held as an offset into the arena and a length
+    private static final int ID = 0;
+    private static final int CUSTOMER_ID = 4;
+    private static final int START = 8;
+    private static final int END = 16;
+    private static final int CONTACT_ID = 24;
+    private static final int USER_ID = 28;
+    private static final int TITLE = 32;
+    private static final int DESCRIPTION = 40;
+    private static final int LOCATION = 48;
+    private static final int TYPE = 56;
+    private static final int RECORD_BYTES = 64;
+    private static final int[] STRING_FIELDS = {TITLE, DESCRIPTION, LOCATION, TYPE};
+    //the id index holds the id and the record number of each appointment
+    private static final int ID_ENTRY_BYTES = 8;
+
+    //holds the single store shared through out the program
+    private static volatile OffHeapAppointmentStore instance;
+
+    //guards the segments, lookups share the lock while changes hold it alone
+    private final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+    //holds the cached months by the epoch second they start at
+    private final TreeMap<Long, Segment> segments = new TreeMap<>();
+    //holds the month each cached appointment is within
+    private final MonthsById months = new MonthsById();
+    private final long maxBytes;
+    private long usedBytes;
+    //counts the invalidations, so a month read from the database while one happened is not cached
+    private long generation;
+
+    OffHeapAppointmentStore(long maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    /**
+     * returns the shared store, using the cache.offHeap.maxBytes setting of the database settings file
+     * @return the off-heap appointment store
+     */
+    public static OffHeapAppointmentStore getInstance() {
+        if (instance == null) {
+            synchronized (OffHeapAppointmentStore.class) {
+                if (instance == null) {
+                    instance = new OffHeapAppointmentStore(Long.parseLong(
+                            ConnectionPool.loadProperties().getProperty("cache.offHeap.maxBytes", "0")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @return true if the store caches anything at all
+     */
+    public boolean isEnabled() {
+        return maxBytes > 0;
+    }
+
+    /**
+     * @return the bytes of direct memory held by the cached months
+     */
+    public long usedBytes() {
+        lock.readLock().lock();
+        try {
+            return usedBytes;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * returns the appointments starting within [from, to), reading the months that are not cached from the database
+     * and caching them
+     * @param from the inclusive start of the range
+     * @param to the exclusive end of the range
+     * @param loader reads a month from the database
+     * @return the appointments within the range in order of start time
+     * @throws SQLException if a month could not be read
+     */
+    public List<Appointment> between(Instant from, Instant to, Loader loader) throws SQLException {
+        long fromSecond = from.getEpochSecond();
+        long toSecond = to.getEpochSecond();
+        List<Appointment> appointments = new ArrayList<>();
+        for (long month = monthOf(fromSecond); month < toSecond; month = nextMonth(month)) {
+            long readGeneration;
+            Segment segment;
+            lock.readLock().lock();
+            try {
+                readGeneration = generation;
+                segment = segments.get(month);
+            } finally {
+                lock.readLock().unlock();
+            }
+            if (segment == null) {
+                //reads the whole month outside of the lock and caches it
+                List<Appointment> rows = loader.load(Instant.ofEpochSecond(month),
+                        Instant.ofEpochSecond(nextMonth(month)));
+                segment = Segment.of(rows);
+                add(month, segment, readGeneration);
+            }
+            segment.scan(Math.max(fromSecond, month), toSecond, appointments);
+        }
+        return appointments;
+    }
+
+    /**
+     * looks up a cached appointment by id
+     * @param appointmentId the appointment's id
+     * @return the appointment, or null if it is not within a cached month
+     */
+    public Appointment get(int appointmentId) {
+        lock.readLock().lock();
+        try {
+            long month = months.get(appointmentId);
+            Segment segment = month == MonthsById.NONE ? null : segments.get(month);
+            int record = segment == null ? -1 : segment.find(appointmentId);
+            return record < 0 ? null : segment.read(record);
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /**
+     * drops the month the instant falls within, called when an appointment starting then is added or changed
+     * @param epochSecond the start of the appointment
+     */
+    public void invalidateAt(long epochSecond) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            drop(monthOf(epochSecond));
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * drops the month holding the appointment, called when the appointment is changed or deleted
+     * @param appointmentId the appointment's id
+     */
+    public void invalidateAppointment(int appointmentId) {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            long month = months.get(appointmentId);
+            if (month != MonthsById.NONE) { drop(month); }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * drops every cached month
+     */
+    public void invalidate() {
+        lock.writeLock().lock();
+        try {
+            generation++;
+            segments.clear();
+            months.clear();
+            usedBytes = 0;
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * caches a month, dropping the oldest months until it fits, a month larger than the whole limit is not cached and
+     * neither is one read before the latest invalidation
+     */
+    private void add(long month, Segment segment, long readGeneration) {
+        if (segment.bytes() > maxBytes) { return; }
+        lock.writeLock().lock();
+        try {
+            if (generation != readGeneration) { return; }
+            drop(month);
+            while (usedBytes + segment.bytes() > maxBytes && !segments.isEmpty()) {
+                drop(segments.firstKey());
+            }
+            segments.put(month, segment);
+            usedBytes += segment.bytes();
+            for (int i = 0; i < segment.count; i++) {
+                int id = segment.idAt(i);
+                //an appointment within two months moved while one of them was cached, the older copy is stale
+                long other = months.get(id);
+                if (other != MonthsById.NONE && other != month) { drop(other); }
+                months.put(id, month);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    /**
+     * drops a month, the write lock must be held
+     */
+    private void drop(long month) {
+        Segment segment = segments.remove(month);
+        if (segment == null) { return; }
+        usedBytes -= segment.bytes();
+        for (int i = 0; i < segment.count; i++) {
+            int id = segment.idAt(i);
+            if (months.get(id) == month) { months.remove(id); }
+        }
+    }
+
+    private static long monthOf(long epochSecond) {
+        LocalDate date = LocalDate.ofEpochDay(Math.floorDiv(epochSecond, 86_400L));
+        return date.withDayOfMonth(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    private static long nextMonth(long month) {
+        return LocalDate.ofEpochDay(Math.floorDiv(month, 86_400L)).plusMonths(1).atStartOfDay().toEpochSecond(ZoneOffset.UTC);
+    }
+
+    /**
+     * a cached month, never changed once built so it may be read without holding the lock
+     */
+    private static final class Segment {
+        private final ByteBuffer records;
+        private final ByteBuffer arena;
+        private final ByteBuffer ids;
+        private final int count;
+
+        private Segment(ByteBuffer records, ByteBuffer arena, ByteBuffer ids, int count) {
+            this.records = records;
+            this.arena = arena;
+            this.ids = ids;
+            this.count = count;
+        }
+
+        /**
+         * writes the appointments into direct buffers, in order of start time
+         */
+        static Segment of(List<Appointment> appointments) {
+            Appointment[] sorted = appointments.toArray(new Appointment[0]);
+            Arrays.sort(sorted, (a, b) -> Long.compare(a.getStartEpochSecond(), b.getStartEpochSecond()));
+
+            //encodes the strings first to size the arena
+            byte[][] strings = new byte[sorted.length * 4][];
+            int arenaBytes = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                strings[i * 4] = bytes(sorted[i].getTitle());
+                strings[i * 4 + 1] = bytes(sorted[i].getDescription());
+                strings[i * 4 + 2] = bytes(sorted[i].getLocation());
+                strings[i * 4 + 3] = bytes(sorted[i].getType());
+                for (int s = 0; s < 4; s++) { arenaBytes += strings[i * 4 + s].length; }
+            }
+
+            ByteBuffer records = ByteBuffer.allocateDirect(Math.max(1, sorted.length * RECORD_BYTES));
+            ByteBuffer arena = ByteBuffer.allocateDirect(Math.max(1, arenaBytes));
+            long[] idOrder = new long[sorted.length];
+            int arenaOffset = 0;
+            for (int i = 0; i < sorted.length; i++) {
+                Appointment appointment = sorted[i];
+                int base = i * RECORD_BYTES;
+                records.putInt(base + ID, appointment.getAppointment_ID());
+                records.putInt(base + CUSTOMER_ID, appointment.getCustomer_ID());
+                records.putLong(base + START, appointment.getStartEpochSecond());
+                records.putLong(base + END, appointment.getEndEpochSecond());
+                records.putInt(base + CONTACT_ID, appointment.getContact_ID());
+                records.putInt(base + USER_ID, appointment.getUser_ID());
+                for (int s = 0; s < 4; s++) {
+                    byte[] value = strings[i * 4 + s];
+                    records.putInt(base + STRING_FIELDS[s], arenaOffset);
+                    records.putInt(base + STRING_FIELDS[s] + 4, value.length);
+                    arena.put(arenaOffset, value);
+                    arenaOffset += value.length;
+                }
+                //packs the id above the record number so sorting the longs sorts by id
+                idOrder[i] = ((long) appointment.getAppointment_ID() << 32) | i;
+            }
+
+            Arrays.sort(idOrder);
+            ByteBuffer ids = ByteBuffer.allocateDirect(Math.max(1, sorted.length * ID_ENTRY_BYTES));
+            for (int i = 0; i < idOrder.length; i++) {
+                ids.putInt(i * ID_ENTRY_BYTES, (int) (idOrder[i] >> 32));
+                ids.putInt(i * ID_ENTRY_BYTES + 4, (int) idOrder[i]);
+            }
+            return new Segment(records, arena, ids, sorted.length);
+        }
+
+        long bytes() {
+            return records.capacity() + arena.capacity() + ids.capacity();
+        }
+
+        /**
+         * adds the appointments starting within [from, to) to the list
+         */
+        void scan(long from, long to, List<Appointment> into) {
+            //finds the first record starting at or after from
+            int low = 0;
+            int high = count;
+            while (low < high) {
+                int middle = (low + high) >>> 1;
+                if (records.getLong(middle * RECORD_BYTES + START) < from) { low = middle + 1; } else { high = middle; }
+            }
+            for (int record = low; record < count && records.getLong(record * RECORD_BYTES + START) < to; record++) {
+                into.add(read(record));
+            }
+        }
+
+        /**
+         * @return the id at a position of the id index, from 0 to one less than the count
+         */
+        int idAt(int position) {
+            return ids.getInt(position * ID_ENTRY_BYTES);
+        }
+
+        /**
+         * @return the record number of the appointment, or -1 if it is not within the month
+         */
+        int find(int appointmentId) {
+            int low = 0;
+            int high = count - 1;
+            while (low <= high) {
+                int middle = (low + high) >>> 1;
+                int id = ids.getInt(middle * ID_ENTRY_BYTES);
+                if (id < appointmentId) {
+                    low = middle + 1;
+                } else if (id > appointmentId) {
+                    high = middle - 1;
+                } else {
+                    return ids.getInt(middle * ID_ENTRY_BYTES + 4);
+                }
+            }
+            return -1;
+        }
+
+        Appointment read(int record) {
+            int base = record * RECORD_BYTES;
+            return new Appointment(records.getInt(base + ID), string(base + TITLE), string(base + DESCRIPTION),
+                    string(base + LOCATION), records.getInt(base + CONTACT_ID), string(base + TYPE),
+                    records.getLong(base + START), records.getLong(base + END), records.getInt(base + CUSTOMER_ID),
+                    records.getInt(base + USER_ID));
+        }
+
+        private String string(int field) {
+            byte[] value = new byte[records.getInt(field + 4)];
+            arena.get(records.getInt(field), value);
+            return new String(value, StandardCharsets.UTF_8);
+        }
+
+        private static byte[] bytes(String value) {
+            return value == null ? new byte[0] : value.getBytes(StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * the month of each cached appointment id, an open addressing table of primitive arrays so the ids cost no objects,
+     * guarded by the store's lock
+     */
+    private static final class MonthsById {
+        //marks a free slot and an id without a month, no month starts at this second
+        static final long NONE = Long.MIN_VALUE;
+
+        private int[] ids;
+        private long[] months;
+        private int size;
+
+        MonthsById() {
+            clear();
+        }
+
+        /**
+         * @return the month the id is within, or NONE
+         */
+        long get(int id) {
+            int slot = slotOf(id);
+            return months[slot];
+        }
+
+        void put(int id, long month) {
+            int slot = slotOf(id);
+            if (months[slot] == NONE) {
+                if ((size + 1) * 2 > ids.length) {
+                    grow();
+                    slot = slotOf(id);
+                }
+                size++;
+            }
+            ids[slot] = id;
+            months[slot] = month;
+        }
+
+        void remove(int id) {
+            int mask = ids.length - 1;
+            int hole = slotOf(id);
+            if (months[hole] == NONE) { return; }
+            //shifts back the entries after the hole that would no longer be found past it
+            for (int next = (hole + 1) & mask; months[next] != NONE; next = (next + 1) & mask) {
+                int home = hash(ids[next]) & mask;
+                if (((next - home) & mask) >= ((next - hole) & mask)) {
+                    ids[hole] = ids[next];
+                    months[hole] = months[next];
+                    hole = next;
+                }
+            }
+            months[hole] = NONE;
+            size--;
+        }
+
+        void clear() {
+            ids = new int[1024];
+            months = new long[1024];
+            Arrays.fill(months, NONE);
+            size = 0;
+        }
+
+        /**
+         * @return the slot holding the id, or the free slot it would go into
+         */
+        private int slotOf(int id) {
+            int mask = ids.length - 1;
+            int slot = hash(id) & mask;
+            while (months[slot] != NONE && ids[slot] != id) { slot = (slot + 1) & mask; }
+            return slot;
+        }
+
+        private void grow() {
+            int[] oldIds = ids;
+            long[] oldMonths = months;
+            ids = new int[oldIds.length * 2];
+            months = new long[oldIds.length * 2];
+            Arrays.fill(months, NONE);
+            for (int i = 0; i < oldIds.length; i++) {
+                if (oldMonths[i] != NONE) {
+                    int slot = slotOf(oldIds[i]);
+                    ids[slot] = oldIds[i];
+                    months[slot] = oldMonths[i];
+                }
+            }
+        }
+
+        private static int hash(int id) {
+            int h = id * 0x9E3779B9;
+            return h ^ (h >>> 16);
+        }
+    }
+}
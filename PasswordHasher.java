@@ -0,0 +1,98 @@
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import javax.crypto.SecretKeyFactory;
+import javax.crypto.spec.PBEKeySpec;
+
+/**
+ * Hashes and checks the passwords of the users table with salted PBKDF2 (HMAC-SHA256). A stored hash is written as
+ * pbkdf2$iterations$salt$hash with the salt and hash in base64, so the number of iterations can be raised later
+ * without breaking the hashes already stored.
+ *
+ * Rows still holding a plain text password are accepted by comparing in constant time, and {@link #needsRehash} tells
+ * the caller to store a hash for them once the user has logged in with them. The hashes are kept in the
+ * users.Password_Hash column added by user_password_hashes.sql, since the Password column is too short for them.
+ */
+public final class PasswordHasher {
+
+    private static final String PREFIX = "pbkdf2$";
+    private static final String ALGORITHM = "PBKDF2WithHmacSHA256";
+    private static final int SALT_BYTES = 16;
+    private static final int HASH_BITS = 256;
+    //how many iterations new hashes use, set by login.hash.iterations in database.properties
+    private static final int ITERATIONS =
+            Integer.parseInt(ConnectionPool.loadProperties().getProperty("login.hash.iterations", "310000"));
+    private static final SecureRandom RANDOM = new SecureRandom();
+    //checked against when the user name is unknown, so a missing user takes as long to refuse as a wrong password
+    private static final String DUMMY = hash("dummy password");
+
+    private PasswordHasher() {}
+
+    /**
+     * @param password the plain text password
+     * @return the salted hash of the password, ready to be stored
+     */
+    public static String hash(String password) {
+        byte[] salt = new byte[SALT_BYTES];
+        RANDOM.nextBytes(salt);
+        Base64.Encoder base64 = Base64.getEncoder();
+        return PREFIX + ITERATIONS + "$" + base64.encodeToString(salt) + "$" +
+                base64.encodeToString(derive(password, salt, ITERATIONS));
+    }
+
+    /**
+     * checks a password against a stored hash, or against a stored plain text password for rows not yet hashed
+     * @param password the password that was entered
+     * @param stored the value of the password column
+     * @return true if the password matches
+     */
+    public static boolean verify(String password, String stored) {
+        if (stored == null || password == null) { return false; }
+        if (!stored.startsWith(PREFIX)) {
+            return MessageDigest.isEqual(password.getBytes(StandardCharsets.UTF_8),
+                    stored.getBytes(StandardCharsets.UTF_8));
+        }
+        String[] parts = stored.split("\\$");
+        if (parts.length != 4) { return false; }
+        try {
+            Base64.Decoder base64 = Base64.getDecoder();
+            byte[] expected = base64.decode(parts[3]);
+            byte[] actual = derive(password, base64.decode(parts[2]), Integer.parseInt(parts[1]));
+            return MessageDigest.isEqual(expected, actual);
+        } catch (IllegalArgumentException e) {
+            //a damaged hash never matches
+            return false;
+        }
+    }
+
+    /**
+     * spends the same time as checking a real hash, used when no user with the name exists
+     * @param password the password that was entered
+     */
+    public static void verifyDummy(String password) {
+        verify(password, DUMMY);
+    }
+
+    /**
+     * @param stored the value of the password column
+     * @return true if the value is plain text or was hashed with fewer iterations than new hashes use
+     */
+    public static boolean needsRehash(String stored) {
+        if (stored == null || !stored.startsWith(PREFIX)) { return true; }
+        String[] parts = stored.split("\\$");
+        return parts.length != 4 || Integer.parseInt(parts[1]) < ITERATIONS;
+    }
+
+    private static byte[] derive(String password, byte[] salt, int iterations) {
+        PBEKeySpec spec = new PBEKeySpec(password.toCharArray(), salt, iterations, HASH_BITS);
+        try {
+            return SecretKeyFactory.getInstance(ALGORITHM).generateSecret(spec).getEncoded();
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException(ALGORITHM + " is not available", e);
+        } finally {
+            spec.clearPassword();
+        }
+    }
+}
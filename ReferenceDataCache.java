@@ -0,0 +1,299 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Holds the small, nearly static reference tables (countries, first level divisions, contacts and users) in memory so
+ * forms, combo boxes and customer table cells are able to resolve names and ids without a trip to the database. The
+ * tables are loaded together on first use and kept until the time to live runs out or the cache is invalidated.
+ */
+public final class ReferenceDataCache {
+
+    //holds the single cache shared through out the program
+    private static volatile ReferenceDataCache instance;
+
+    //how long a loaded copy of the tables is used before it is reloaded
+    private final long ttlMillis;
+
+    //holds the currently loaded copy of the tables, replaced as a whole so readers never need to lock
+    private volatile Snapshot snapshot;
+
+    //holds the statistics of the cache
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder loads = new LongAdder();
+
+    /**
+     * returns the shared cache, using the cache.reference.ttlMillis setting of the database settings file
+     * @return the reference data cache
+     */
+    public static ReferenceDataCache getInstance() {
+        if (instance == null) {
+            synchronized (ReferenceDataCache.class) {
+                if (instance == null) {
+                    instance = new ReferenceDataCache(Long.parseLong(
+                            ConnectionPool.loadProperties().getProperty("cache.reference.ttlMillis", "600000")));
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * @param ttlMillis how long a loaded copy of the tables is kept before being reloaded
+     */
+    ReferenceDataCache(long ttlMillis) {
+        this.ttlMillis = ttlMillis;
+    }
+
+    /**
+     * loads the tables if they have not been loaded yet, called at startup so the first form opens without waiting
+     * @throws SQLException if the tables could not be read
+     */
+    public void preload() throws SQLException {
+        current();
+    }
+
+    /**
+     * marks the loaded tables as out of date so the next lookup reloads them
+     */
+    public void invalidate() {
+        snapshot = null;
+    }
+
+    /**
+     * @return the names of every country in the order stored in the database
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public List<String> getCountryNames() throws SQLException {
+        return new ArrayList<>(current().countryIdByName.keySet());
+    }
+
+    /**
+     * @param countryName the name of the country
+     * @return the names of the divisions within the country, empty if the country is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public List<String> getDivisionNames(String countryName) throws SQLException {
+        Snapshot data = current();
+        Integer countryId = count(data.countryIdByName.get(countryName));
+        if (countryId == null) { return Collections.emptyList(); }
+        return new ArrayList<>(data.divisionNamesByCountry.getOrDefault(countryId, Collections.emptyList()));
+    }
+
+    /**
+     * @param divisionName the name of the division
+     * @return the division id, -1 if the division is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public int getDivisionID(String divisionName) throws SQLException {
+        Integer id = count(current().divisionIdByName.get(divisionName));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @param divisionId the division id
+     * @return the name of the division, an empty string if the division is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public String getDivisionName(int divisionId) throws SQLException {
+        Division division = count(current().divisionsById.get(divisionId));
+        return division == null ? "" : division.name;
+    }
+
+    /**
+     * @param divisionId the division id
+     * @return the name of the country holding the division, an empty string if the division is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public String getCountryForDivision(int divisionId) throws SQLException {
+        Snapshot data = current();
+        Division division = count(data.divisionsById.get(divisionId));
+        return division == null ? "" : data.countryNameById.getOrDefault(division.countryId, "");
+    }
+
+    /**
+     * @return every contact in the order stored in the database
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public List<Contact> getContacts() throws SQLException {
+        return new ArrayList<>(current().contactsById.values());
+    }
+
+    /**
+     * @param contactId the contact id
+     * @return the contact, null if the contact is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public Contact getContact(int contactId) throws SQLException {
+        return count(current().contactsById.get(contactId));
+    }
+
+    /**
+     * @param contactName the full name of the contact
+     * @return the id of the first contact with the name, -1 if there is no match
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public int getContactID(String contactName) throws SQLException {
+        Integer id = count(current().contactIdByName.get(contactName));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return every user in the order stored in the database
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public List<User> getUsers() throws SQLException {
+        return new ArrayList<>(current().usersById.values());
+    }
+
+    /**
+     * @param userId the user id
+     * @return the user, null if the user is not known
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public User getUser(int userId) throws SQLException {
+        return count(current().usersById.get(userId));
+    }
+
+    /**
+     * @param userName the user name
+     * @return the id of the first user with the name, -1 if there is no match
+     * @throws SQLException if the tables needed to be loaded and could not be read
+     */
+    public int getUserID(String userName) throws SQLException {
+        Integer id = count(current().userIdByName.get(userName));
+        return id == null ? -1 : id;
+    }
+
+    /**
+     * @return the number of lookups answered from the loaded tables
+     */
+    public long hits() { return hits.sum(); }
+
+    /**
+     * @return the number of lookups that did not find a match
+     */
+    public long misses() { return misses.sum(); }
+
+    /**
+     * @return the number of times the tables were loaded from the database
+     */
+    public long loads() { return loads.sum(); }
+
+    @Override
+    public String toString() {
+        return "ReferenceDataCache[hits=" + hits() + ", misses=" + misses() + ", loads=" + loads() + "]";
+    }
+
+    /**
+     * counts the lookup as a hit or a miss based on whether a value was found
+     */
+    private <T> T count(T value) {
+        if (value == null) { misses.increment(); } else { hits.increment(); }
+        return value;
+    }
+
+    /**
+     * returns the loaded tables, loading them first if they are missing or past their time to live
+     */
+    private Snapshot current() throws SQLException {
+        Snapshot data = snapshot;
+        if (data == null || System.currentTimeMillis() - data.loadedAt > ttlMillis) {
+            synchronized (this) {
+                data = snapshot;
+                if (data == null || System.currentTimeMillis() - data.loadedAt > ttlMillis) {
+                    data = load();
+                    snapshot = data;
+                }
+            }
+        }
+        return data;
+    }
+
+    /**
+     * reads all four tables on a single borrowed connection
+     */
+    private Snapshot load() throws SQLException {
+        Snapshot data = new Snapshot();
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            //countries
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_COUNTRIES);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    data.countryNameById.put(rs.getInt("Country_ID"), rs.getString("Country"));
+                    data.countryIdByName.putIfAbsent(rs.getString("Country"), rs.getInt("Country_ID"));
+                }
+            }
+            //first level divisions, grouped by the country they are within
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_DIVISIONS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Division division = new Division(rs.getString("Division"), rs.getInt("COUNTRY_ID"));
+                    data.divisionsById.put(rs.getInt("Division_ID"), division);
+                    data.divisionIdByName.putIfAbsent(division.name, rs.getInt("Division_ID"));
+                    data.divisionNamesByCountry.computeIfAbsent(division.countryId, k -> new ArrayList<>())
+                            .add(division.name);
+                }
+            }
+            //contacts
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_CONTACTS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Contact contact = new Contact(rs.getInt("Contact_ID"), rs.getString("Contact_Name"),
+                            rs.getString("Email"));
+                    data.contactsById.put(contact.getContactID(), contact);
+                    data.contactIdByName.putIfAbsent(contact.getContactName(), contact.getContactID());
+                }
+            }
+            //users
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.ALL_USERS);
+                 ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    User user = new User(rs.getInt("User_ID"), rs.getString("User_Name"));
+                    data.usersById.put(user.getUserID(), user);
+                    data.userIdByName.putIfAbsent(user.getUserName(), user.getUserID());
+                }
+            }
+        }
+        loads.increment();
+        return data;
+    }
+
+    /**
+     * a division name along with the id of the country it is within
+     */
+    private static final class Division {
+        private final String name;
+        private final int countryId;
+
+        Division(String name, int countryId) {
+            this.name = name;
+            this.countryId = countryId;
+        }
+    }
+
+    /**
+     * a complete copy of the reference tables, never changed after it is loaded
+     */
+    private static final class Snapshot {
+        private final long loadedAt = System.currentTimeMillis();
+        private final Map<Integer, String> countryNameById = new HashMap<>();
+        private final Map<String, Integer> countryIdByName = new LinkedHashMap<>();
+        private final Map<Integer, Division> divisionsById = new HashMap<>();
+        private final Map<String, Integer> divisionIdByName = new HashMap<>();
+        private final Map<Integer, List<String>> divisionNamesByCountry = new HashMap<>();
+        private final Map<Integer, Contact> contactsById = new LinkedHashMap<>();
+        private final Map<String, Integer> contactIdByName = new HashMap<>();
+        private final Map<Integer, User> usersById = new LinkedHashMap<>();
+        private final Map<String, Integer> userIdByName = new HashMap<>();
+    }
+}
@@ -0,0 +1,296 @@
+import java.sql.SQLException;
+import java.time.Instant;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Queue;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Reminds the logged in user of each of their appointments reminder.leadMinutes before it starts, for as long as the
+ * program runs. The user's appointments starting within the next reminder.horizonMinutes are read from the database
+ * and each reminder is put in a hashed timer wheel: a ring of slots where a reminder goes into the slot of the tick it
+ * is due on, along with the number of turns of the ring still to wait. Every tick only visits the slot of that tick, so
+ * it costs the same however many reminders are waiting.
+ *
+ * The wheel is only touched by its own background thread. The insert, update and delete methods of the database access
+ * class hand their changes over through a queue, applied at the start of the next tick, and the appointments are read
+ * again every reminder.refreshMinutes to pick up the ones changed by other users of the database.
+ */
+public final class ReminderService {
+
+    private static volatile ReminderService instance;
+
+    private final long leadMillis;
+    private final long tickMillis;
+    private final int slots;
+    private final long horizonMillis;
+    private final long refreshMillis;
+
+    //the wheel of the user that is logged in, null until the main form starts it
+    private volatile Wheel running;
+
+    ReminderService(Properties properties) {
+        leadMillis = Long.parseLong(properties.getProperty("reminder.leadMinutes", "15")) * 60_000L;
+        tickMillis = Math.max(10, Long.parseLong(properties.getProperty("reminder.tickMillis", "1000")));
+        //rounds the slots up to a power of two so the slot of a tick is found with a mask
+        slots = Integer.highestOneBit(Math.max(2,
+                Integer.parseInt(properties.getProperty("reminder.wheelSlots", "1024"))) * 2 - 1);
+        horizonMillis = Math.max(leadMillis + 60_000L,
+                Long.parseLong(properties.getProperty("reminder.horizonMinutes", "120")) * 60_000L);
+        //reads again before the appointments beyond the last read come within reminding distance
+        refreshMillis = Math.min(horizonMillis - leadMillis,
+                Math.max(60_000L, Long.parseLong(properties.getProperty("reminder.refreshMinutes", "10")) * 60_000L));
+    }
+
+    /**
+     * returns the shared reminder service, using the reminder settings of the database settings file
+     * @return the reminder service
+     */
+    public static ReminderService getInstance() {
+        if (instance == null) {
+            synchronized (ReminderService.class) {
+                if (instance == null) {
+                    instance = new ReminderService(ConnectionPool.loadProperties());
+                }
+            }
+        }
+        return instance;
+    }
+
+    /**
+     * starts reminding a user of their appointments. Starting again for the same user only replaces the listener, so
+     * the main form can call this each time it is shown. Appointments already within reminding distance are not
+     * reminded of, the main form shows those once the user logs in
+     * @param userId the id of the logged in user
+     * @param listener receives each appointment once its reminder is due, called on the reminder thread
+     */
+    public synchronized void start(int userId, Consumer<Appointment> listener) {
+        Wheel wheel = running;
+        if (wheel != null && wheel.userId == userId) {
+            wheel.listener = listener;
+            return;
+        }
+        if (wheel != null) { wheel.stop(); }
+        running = new Wheel(userId, listener);
+    }
+
+    /**
+     * stops the reminders, none are delivered after this returns
+     */
+    public synchronized void stop() {
+        if (running != null) {
+            running.stop();
+            running = null;
+        }
+    }
+
+    /**
+     * schedules, moves or drops the reminder of an appointment that was added or changed
+     * @param appointment the appointment as it is now stored
+     */
+    public void put(Appointment appointment) {
+        Wheel wheel = running;
+        if (wheel != null) { wheel.changes.add(() -> wheel.schedule(appointment, false)); }
+    }
+
+    /**
+     * drops the reminder of an appointment that was deleted
+     * @param appointmentId the id of the deleted appointment
+     */
+    public void remove(int appointmentId) {
+        Wheel wheel = running;
+        if (wheel != null) { wheel.changes.add(() -> wheel.cancel(appointmentId)); }
+    }
+
+    /**
+     * reads the appointments again at the next tick, for when changes could not be passed on one by one
+     */
+    public void refresh() {
+        Wheel wheel = running;
+        if (wheel != null) { wheel.changes.add(wheel::reload); }
+    }
+
+    /**
+     * a reminder waiting in a slot of the wheel, linked to the other reminders of the same slot
+     */
+    private static final class Timeout {
+        final Appointment appointment;
+        final int slot;
+        long rounds;
+        Timeout previous;
+        Timeout next;
+
+        Timeout(Appointment appointment, int slot, long rounds) {
+            this.appointment = appointment;
+            this.slot = slot;
+            this.rounds = rounds;
+        }
+    }
+
+    /**
+     * the timer wheel of a single user, all of its fields besides the change queue and listener belong to its thread
+     */
+    private final class Wheel {
+        final int userId;
+        volatile Consumer<Appointment> listener;
+        final Queue<Runnable> changes = new ConcurrentLinkedQueue<>();
+
+        private final Timeout[] heads = new Timeout[slots];
+        private final Map<Integer, Timeout> pending = new HashMap<>();
+        //the start of each appointment already reminded of, so a read of the database does not remind twice
+        private final Map<Integer, Long> reminded = new HashMap<>();
+        private final long startedAt = System.currentTimeMillis();
+        private final ScheduledExecutorService ticker;
+        private long tick;
+        private long loadedUntil;
+        private long nextReload;
+        private boolean first = true;
+
+        Wheel(int userId, Consumer<Appointment> listener) {
+            this.userId = userId;
+            this.listener = listener;
+            //runs the wheel on a daemon thread so it never keeps the application open
+            ticker = Executors.newSingleThreadScheduledExecutor(r -> {
+                Thread thread = new Thread(r, "appointment-reminders");
+                thread.setDaemon(true);
+                return thread;
+            });
+            ticker.scheduleAtFixedRate(this::advance, 0, tickMillis, TimeUnit.MILLISECONDS);
+        }
+
+        void stop() {
+            ticker.shutdownNow();
+        }
+
+        /**
+         * applies the waiting changes and visits the slot of every tick that has passed, catching up if the thread
+         * was held up
+         */
+        private void advance() {
+            try {
+                long now = System.currentTimeMillis();
+                if (now >= nextReload) { reload(); }
+                for (Runnable change; (change = changes.poll()) != null; ) { change.run(); }
+
+                long due = (now - startedAt) / tickMillis;
+                while (tick <= due) {
+                    expire(heads[(int) (tick & (slots - 1))]);
+                    tick++;
+                }
+            } catch (RuntimeException e) {
+                //keeps the wheel turning, a failed tick would otherwise stop every later one
+                e.printStackTrace();
+            }
+        }
+
+        /**
+         * fires the reminders of a slot that are on their last turn, the rest wait another turn
+         */
+        private void expire(Timeout head) {
+            for (Timeout timeout = head; timeout != null; ) {
+                Timeout next = timeout.next;
+                if (timeout.rounds == 0) {
+                    unlink(timeout);
+                    Appointment appointment = timeout.appointment;
+                    pending.remove(appointment.getAppointment_ID());
+                    reminded.put(appointment.getAppointment_ID(), appointment.getStartEpochSecond());
+                    Consumer<Appointment> current = listener;
+                    if (current != null) { current.accept(appointment); }
+                } else {
+                    timeout.rounds--;
+                }
+                timeout = next;
+            }
+        }
+
+        /**
+         * reads the user's appointments starting within the horizon, replacing the reminders of the ones already held
+         * and dropping the reminders of appointments no longer found
+         */
+        void reload() {
+            long now = System.currentTimeMillis();
+            nextReload = now + refreshMillis;
+            List<Appointment> appointments;
+            try {
+                appointments = new DBAccess().getUserAppointmentsBetween(userId, Instant.ofEpochMilli(now),
+                        Instant.ofEpochMilli(now + horizonMillis));
+            } catch (SQLException e) {
+                //keeps the reminders already held and tries again at the next refresh
+                System.err.println("appointment reminders: " + e.getMessage());
+                return;
+            }
+            loadedUntil = now + horizonMillis;
+            reminded.values().removeIf(start -> start * 1000L < now);
+
+            Set<Integer> found = new HashSet<>();
+            for (Appointment appointment : appointments) {
+                found.add(appointment.getAppointment_ID());
+                schedule(appointment, first);
+            }
+            for (Iterator<Integer> ids = pending.keySet().iterator(); ids.hasNext(); ) {
+                Integer id = ids.next();
+                if (!found.contains(id)) {
+                    unlink(pending.get(id));
+                    ids.remove();
+                }
+            }
+            first = false;
+        }
+
+        /**
+         * places the reminder of an appointment in the slot of the tick it is due on
+         * @param fromLogin true if reminders already due count as shown by the main form
+         */
+        void schedule(Appointment appointment, boolean fromLogin) {
+            int id = appointment.getAppointment_ID();
+            cancel(id);
+            long startMillis = appointment.getStartEpochSecond() * 1000L;
+            long now = System.currentTimeMillis();
+            if (appointment.getUser_ID() != userId || startMillis <= now || startMillis >= loadedUntil) { return; }
+            Long remindedStart = reminded.get(id);
+            if (remindedStart != null && remindedStart == appointment.getStartEpochSecond()) { return; }
+
+            long fireAt = startMillis - leadMillis;
+            if (fromLogin && fireAt <= now) {
+                reminded.put(id, appointment.getStartEpochSecond());
+                return;
+            }
+            //a reminder already due goes into the slot of the current tick and fires within it
+            long deadline = Math.max(tick, (fireAt - startedAt + tickMillis - 1) / tickMillis);
+            int slot = (int) (deadline & (slots - 1));
+            Timeout timeout = new Timeout(appointment, slot, (deadline - tick) / slots);
+            timeout.next = heads[slot];
+            if (heads[slot] != null) { heads[slot].previous = timeout; }
+            heads[slot] = timeout;
+            pending.put(id, timeout);
+        }
+
+        /**
+         * drops the waiting reminder of an appointment
+         */
+        void cancel(int appointmentId) {
+            Timeout timeout = pending.remove(appointmentId);
+            if (timeout != null) { unlink(timeout); }
+        }
+
+        private void unlink(Timeout timeout) {
+            if (timeout.previous != null) {
+                timeout.previous.next = timeout.next;
+            } else if (heads[timeout.slot] == timeout) {
+                heads[timeout.slot] = timeout.next;
+            }
+            if (timeout.next != null) { timeout.next.previous = timeout.previous; }
+            timeout.previous = null;
+            timeout.next = null;
+        }
+    }
+}
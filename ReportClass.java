@@ -0,0 +1,287 @@
+import javafx.beans.property.ReadOnlyObjectWrapper;
+import javafx.collections.FXCollections;
+import javafx.collections.ObservableList;
+import javafx.geometry.Insets;
+import javafx.geometry.Orientation;
+import javafx.scene.Node;
+import javafx.scene.Scene;
+import javafx.scene.control.ComboBox;
+import javafx.scene.control.Label;
+import javafx.scene.control.ScrollBar;
+import javafx.scene.control.TableColumn;
+import javafx.scene.control.TableView;
+import javafx.scene.layout.VBox;
+
+import java.sql.SQLException;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Locale;
+import java.util.Objects;
+import java.util.ResourceBundle;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Class for the report window, showing the appointments counted by type and month, the schedule of each contact and
+ * the appointments of each customer by country and division. The reports are computed by the {@link ReportEngine} in
+ * the background while the window shows a loading message, and the contact schedule is read a page at a time as the
+ * user scrolls through it.
+ */
+public class ReportClass {
+
+    //how many rows of the contact schedule are read at a time
+    private static final int PAGE_SIZE = 100;
+
+    //sets the settings for language and country for the window
+    private final Locale user_local = new Locale(Locale.getDefault().getLanguage(), Locale.getDefault().getCountry());
+    private final ResourceBundle messages = ResourceBundle.getBundle("MessagesBundle", user_local);
+    private final DateTimeFormatter monthFormat = DateTimeFormatter.ofPattern("MMMM yyyy", user_local);
+    private final DateTimeFormatter timeFormat = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm", user_local);
+
+    //computes the reports within the database
+    private final ReportEngine engine = new ReportEngine();
+    //only the latest report chosen is shown, choosing another cancels the one still loading
+    private final AsyncDataService.Latest<List<String[]>> loads = AsyncDataService.getInstance().latest();
+    private final AsyncDataService.Latest<SchedulePage> scheduleLoads = AsyncDataService.getInstance().latest();
+    //the rows of the report shown, one text per column
+    private final ObservableList<String[]> rows = FXCollections.observableArrayList();
+
+    //the last appointment of the contact schedule shown, the next page continues after it
+    private Appointment lastScheduled;
+    //whether the contact schedule has more pages, and the page being read
+    private boolean moreScheduled;
+    private CompletableFuture<SchedulePage> pendingPage;
+    //counts the reports shown so a page read for an earlier one is never added
+    private long generation;
+    //whether the table's scroll bar is already being watched
+    private boolean watchingScroll;
+
+    /**
+     * creates the report window, the first report starts loading in the background right away
+     * @return the scene of the report window
+     */
+    public Scene reportScreen() {
+        //the reports the user is able to choose from
+        ComboBox<String> reportChoice = new ComboBox<>(FXCollections.observableArrayList(
+                messages.getString("reportTypeMonth"),
+                messages.getString("reportContactSchedule"),
+                messages.getString("reportCustomerLocation")));
+
+        //the table showing the chosen report
+        TableView<String[]> reportView = new TableView<>(rows);
+        reportView.setMinWidth(900);
+        reportView.setMaxHeight(500);
+
+        //shows the report the user chose
+        reportChoice.setOnAction(e -> show(reportView, reportChoice.getSelectionModel().getSelectedIndex()));
+        reportChoice.getSelectionModel().select(0);
+        show(reportView, 0);
+
+        //sets the layout of the window
+        VBox layout = new VBox(reportChoice, reportView);
+        layout.setSpacing(10);
+        layout.setPadding(new Insets(10, 10, 10, 10));
+
+        //returns the scene
+        return new Scene(layout);
+    }
+
+    /**
+     * sets up the columns of a report and loads its rows in the background
+     * @param reportView the table showing the report
+     * @param report the index of the report within the report choice
+     */
+    private void show(TableView<String[]> reportView, int report) {
+        //drops the rows and any page still being read for the report shown before
+        generation++;
+        if (pendingPage != null) {
+            pendingPage.cancel(true);
+            pendingPage = null;
+        }
+        loads.cancel();
+        scheduleLoads.cancel();
+        rows.clear();
+        reportView.setPlaceholder(new Label(messages.getString("loadingLabel")));
+
+        if (report == 1) {
+            setColumns(reportView, "contactTableLabel", "appointmentTableLabel", "titleTableLabel", "typeTableLabel",
+                    "descriptionTableLabel", "startTableLabel", "endTableLabel", "customerTableLabel");
+            lastScheduled = null;
+            moreScheduled = false;
+            scheduleLoads.submit(() -> schedulePage(null), page -> {
+                addScheduled(page);
+                reportView.setPlaceholder(null);
+                //the table is showing by now, so its scroll bar exists
+                watchScroll(reportView);
+            }, error -> loadFailed(reportView, error));
+        }
+        else if (report == 2) {
+            setColumns(reportView, "countryTableLabel", "divisionTableLabel", "customerNameTableLabel",
+                    "countTableLabel");
+            loads.submit(() -> customerRows(engine.appointmentsPerCustomer()), loaded -> {
+                rows.setAll(loaded);
+                reportView.setPlaceholder(null);
+            }, error -> loadFailed(reportView, error));
+        }
+        else {
+            setColumns(reportView, "monthTableLabel", "typeTableLabel", "countTableLabel");
+            loads.submit(() -> typeMonthRows(engine.appointmentsByTypeAndMonth()), loaded -> {
+                rows.setAll(loaded);
+                reportView.setPlaceholder(null);
+            }, error -> loadFailed(reportView, error));
+        }
+    }
+
+    /**
+     * reads the next page of the contact schedule once the user scrolls to the end of the rows shown
+     */
+    private void watchScroll(TableView<String[]> reportView) {
+        if (watchingScroll) { return; }
+        for (Node node : reportView.lookupAll(".scroll-bar")) {
+            if (node instanceof ScrollBar && ((ScrollBar) node).getOrientation() == Orientation.VERTICAL) {
+                ScrollBar scrollBar = (ScrollBar) node;
+                watchingScroll = true;
+                scrollBar.valueProperty().addListener((ov, oldValue, newValue) -> {
+                    if (newValue.doubleValue() >= scrollBar.getMax()) { loadNextScheduled(); }
+                });
+            }
+        }
+    }
+
+    /**
+     * reads the page of the contact schedule following the last row shown and adds it to the end of the table
+     */
+    private void loadNextScheduled() {
+        if (!moreScheduled || pendingPage != null) { return; }
+        long request = generation;
+        Appointment after = lastScheduled;
+        pendingPage = AsyncDataService.getInstance().submit(() -> schedulePage(after), page -> {
+            if (request != generation) { return; }
+            pendingPage = null;
+            addScheduled(page);
+        }, error -> {
+            if (request == generation) { pendingPage = null; }
+            error.printStackTrace();
+        });
+    }
+
+    /**
+     * adds a page of the contact schedule to the end of the table, remembering where the next page continues from
+     */
+    private void addScheduled(SchedulePage page) {
+        rows.addAll(page.rows);
+        moreScheduled = page.appointments.size() == PAGE_SIZE;
+        if (!page.appointments.isEmpty()) { lastScheduled = page.appointments.get(page.appointments.size() - 1); }
+    }
+
+    /**
+     * reads a page of the contact schedule and turns it into rows, naming each contact from the reference data.
+     * Called in the background
+     * @param after the last appointment shown, null for the first page
+     */
+    private SchedulePage schedulePage(Appointment after) throws SQLException {
+        List<Appointment> page = engine.contactSchedule(after, PAGE_SIZE);
+        ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+        List<String[]> converted = new ArrayList<>(page.size());
+        for (Appointment appointment : page) {
+            Contact contact = referenceData.getContact(appointment.getContact_ID());
+            converted.add(new String[] {
+                    contact == null ? String.valueOf(appointment.getContact_ID()) : contact.getContactName(),
+                    String.valueOf(appointment.getAppointment_ID()),
+                    appointment.getTitle(),
+                    appointment.getType(),
+                    appointment.getDescription(),
+                    timeFormat.format(appointment.getStart()),
+                    timeFormat.format(appointment.getEnd()),
+                    String.valueOf(appointment.getCustomer_ID())});
+        }
+        return new SchedulePage(page, converted);
+    }
+
+    /**
+     * turns the counts by type and month into rows, one per type within each month
+     */
+    private List<String[]> typeMonthRows(List<ReportEngine.TypeMonthCount> counts) {
+        List<String[]> converted = new ArrayList<>(counts.size());
+        for (ReportEngine.TypeMonthCount count : counts) {
+            converted.add(new String[] {monthFormat.format(count.getMonth()), count.getType(),
+                    String.valueOf(count.getCount())});
+        }
+        return converted;
+    }
+
+    /**
+     * turns the counts per customer into rows grouped by country and division, each division and country followed
+     * by a row with its total
+     */
+    private List<String[]> customerRows(List<ReportEngine.CustomerCount> counts) {
+        List<ReportEngine.CustomerCount> sorted = new ArrayList<>(counts);
+        sorted.sort(Comparator.comparing(ReportEngine.CustomerCount::getCountry,
+                        Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(ReportEngine.CustomerCount::getDivision, Comparator.nullsFirst(Comparator.naturalOrder()))
+                .thenComparing(ReportEngine.CustomerCount::getCustomerName,
+                        Comparator.nullsFirst(Comparator.naturalOrder())));
+
+        String total = messages.getString("totalLabel");
+        List<String[]> converted = new ArrayList<>(sorted.size() + sorted.size() / 4);
+        int divisionTotal = 0;
+        int countryTotal = 0;
+        for (int i = 0; i < sorted.size(); i++) {
+            ReportEngine.CustomerCount count = sorted.get(i);
+            converted.add(new String[] {count.getCountry(), count.getDivision(), count.getCustomerName(),
+                    String.valueOf(count.getCount())});
+            divisionTotal += count.getCount();
+            countryTotal += count.getCount();
+
+            //closes the division and the country once the next customer is in another one
+            ReportEngine.CustomerCount next = i + 1 < sorted.size() ? sorted.get(i + 1) : null;
+            boolean countryEnds = next == null || !Objects.equals(next.getCountry(), count.getCountry());
+            if (countryEnds || !Objects.equals(next.getDivision(), count.getDivision())) {
+                converted.add(new String[] {count.getCountry(), count.getDivision(), total,
+                        String.valueOf(divisionTotal)});
+                divisionTotal = 0;
+            }
+            if (countryEnds) {
+                converted.add(new String[] {count.getCountry(), total, "", String.valueOf(countryTotal)});
+                countryTotal = 0;
+            }
+        }
+        return converted;
+    }
+
+    /**
+     * replaces the columns of the table, one per label key, each showing the text at its place within a row
+     */
+    private void setColumns(TableView<String[]> reportView, String... labelKeys) {
+        List<TableColumn<String[], String>> columns = new ArrayList<>(labelKeys.length);
+        for (int i = 0; i < labelKeys.length; i++) {
+            int index = i;
+            TableColumn<String[], String> column = new TableColumn<>(messages.getString(labelKeys[i]));
+            column.setCellValueFactory(cell -> new ReadOnlyObjectWrapper<>(cell.getValue()[index]));
+            columns.add(column);
+        }
+        reportView.getColumns().setAll(columns);
+    }
+
+    /**
+     * lets the user know the report could not be loaded
+     */
+    private void loadFailed(TableView<String[]> reportView, Throwable error) {
+        reportView.setPlaceholder(new Label(messages.getString("reportFailed")));
+        error.printStackTrace();
+    }
+
+    /**
+     * a page of the contact schedule, read in the background, with the rows it is shown as
+     */
+    private static final class SchedulePage {
+        private final List<Appointment> appointments;
+        private final List<String[]> rows;
+
+        SchedulePage(List<Appointment> appointments, List<String[]> rows) {
+            this.appointments = appointments;
+            this.rows = rows;
+        }
+    }
+}
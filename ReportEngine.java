@@ -0,0 +1,218 @@
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.time.ZoneId;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Computes the reports of the report window within the database. The counts are grouped by the database, so only one
+ * row per group comes back however many appointments there are, and the contact schedule is read a page at a time in
+ * order of contact and start, continuing from the last row read rather than counting past an offset.
+ *
+ * When aggregates.enabled is set the counts are read from the {@link MaterializedAggregates} kept in memory instead,
+ * so only the customers' names are read from the database. If those counts cannot be built or caught up, for example
+ * on a database without the change log, the database counts them as before.
+ *
+ * The statements are kept with the others within {@link SqlStatement}. The methods run the queries on the calling
+ * thread, the report window calls them through the {@link AsyncDataService}.
+ */
+public final class ReportEngine {
+
+    /**
+     * the number of appointments of a type starting within a month
+     */
+    public static final class TypeMonthCount {
+        private final String type;
+        private final YearMonth month;
+        private final int count;
+
+        TypeMonthCount(String type, YearMonth month, int count) {
+            this.type = type;
+            this.month = month;
+            this.count = count;
+        }
+
+        public String getType() { return type; }
+
+        public YearMonth getMonth() { return month; }
+
+        public int getCount() { return count; }
+    }
+
+    /**
+     * the number of appointments of a customer, with the division and country the customer is in
+     */
+    public static final class CustomerCount {
+        private final int customerId;
+        private final String customerName;
+        private final String division;
+        private final String country;
+        private final int count;
+
+        CustomerCount(int customerId, String customerName, String division, String country, int count) {
+            this.customerId = customerId;
+            this.customerName = customerName;
+            this.division = division;
+            this.country = country;
+            this.count = count;
+        }
+
+        public int getCustomerId() { return customerId; }
+
+        public String getCustomerName() { return customerName; }
+
+        public String getDivision() { return division; }
+
+        public String getCountry() { return country; }
+
+        public int getCount() { return count; }
+    }
+
+    private final ReferenceDataCache referenceData = ReferenceDataCache.getInstance();
+    private final MaterializedAggregates aggregates = MaterializedAggregates.getInstance();
+
+    /**
+     * counts the appointments by type and by the month they start in within the user's time zone. Counted by the
+     * database each month is counted on its own, between the instants it starts and ends at in the zone, so the months
+     * follow the zone's daylight saving changes the same as the counts kept in memory
+     * @return the counts in order of month and type
+     * @throws SQLException if the appointments could not be counted
+     */
+    public List<TypeMonthCount> appointmentsByTypeAndMonth() throws SQLException {
+        if (aggregates.isEnabled()) {
+            try {
+                return aggregates.byTypeAndMonth();
+            } catch (SQLException e) {
+                aggregatesFailed(e);
+            }
+        }
+        ZoneId zone = ZoneId.systemDefault();
+        List<TypeMonthCount> counts = new ArrayList<>();
+        try (Connection conn = ConnectionPool.getInstance().getConnection()) {
+            //finds the months the appointments reach over
+            YearMonth first;
+            YearMonth last;
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.REPORT_START_RANGE);
+                 ResultSet rs = ps.executeQuery()) {
+                if (!rs.next() || rs.getTimestamp(1) == null) { return counts; }
+                first = YearMonth.from(rs.getTimestamp(1).toLocalDateTime().atZone(ZoneOffset.UTC)
+                        .withZoneSameInstant(zone));
+                last = YearMonth.from(rs.getTimestamp(2).toLocalDateTime().atZone(ZoneOffset.UTC)
+                        .withZoneSameInstant(zone));
+            }
+
+            //counts each month between the instants its first and last local midnight fall on
+            try (PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.REPORT_BY_TYPE_BETWEEN)) {
+                Timestamp from = monthStart(first, zone);
+                for (YearMonth month = first; !month.isAfter(last); month = month.plusMonths(1)) {
+                    Timestamp to = monthStart(month.plusMonths(1), zone);
+                    ps.setTimestamp(1, from);
+                    ps.setTimestamp(2, to);
+                    try (ResultSet rs = ps.executeQuery()) {
+                        while (rs.next()) { counts.add(new TypeMonthCount(rs.getString(1), month, rs.getInt(2))); }
+                    }
+                    from = to;
+                }
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * @return the instant a month starts at in the zone, as the UTC timestamp stored within the appointments table
+     */
+    private static Timestamp monthStart(YearMonth month, ZoneId zone) {
+        return Timestamp.valueOf(LocalDateTime.ofInstant(month.atDay(1).atStartOfDay(zone).toInstant(),
+                ZoneOffset.UTC));
+    }
+
+    /**
+     * counts the appointments of every customer, naming the division and country of each from the reference data
+     * @return the counts in order of division and customer name
+     * @throws SQLException if the appointments could not be counted
+     */
+    public List<CustomerCount> appointmentsPerCustomer() throws SQLException {
+        if (aggregates.isEnabled()) {
+            try {
+                return countedPerCustomer();
+            } catch (SQLException e) {
+                aggregatesFailed(e);
+            }
+        }
+        List<CustomerCount> counts = new ArrayList<>();
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.REPORT_PER_CUSTOMER);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int divisionId = rs.getInt(3);
+                counts.add(new CustomerCount(rs.getInt(1), rs.getString(2), referenceData.getDivisionName(divisionId),
+                        referenceData.getCountryForDivision(divisionId), rs.getInt(4)));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * notes that the counts kept in memory could not be read, the caller then counts within the database
+     */
+    private static void aggregatesFailed(SQLException e) {
+        System.err.println("report aggregates: " + e.getMessage() + ", counting within the database");
+    }
+
+    /**
+     * names the customers of the counts kept in memory, customers without appointments count zero
+     */
+    private List<CustomerCount> countedPerCustomer() throws SQLException {
+        Map<Integer, Integer> counted = aggregates.byCustomer();
+        List<CustomerCount> counts = new ArrayList<>();
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn, SqlStatement.CUSTOMER_DIVISIONS);
+             ResultSet rs = ps.executeQuery()) {
+            while (rs.next()) {
+                int customerId = rs.getInt(1);
+                int divisionId = rs.getInt(3);
+                counts.add(new CustomerCount(customerId, rs.getString(2), referenceData.getDivisionName(divisionId),
+                        referenceData.getCountryForDivision(divisionId), counted.getOrDefault(customerId, 0)));
+            }
+        }
+        return counts;
+    }
+
+    /**
+     * reads a page of the schedule of every contact, in order of contact and start time
+     * @param after the last appointment of the previous page, null for the first page
+     * @param pageSize the most appointments to read
+     * @return the appointments of the page, fewer than the page size once the schedule has been read to the end
+     * @throws SQLException if the appointments could not be read
+     */
+    public List<Appointment> contactSchedule(Appointment after, int pageSize) throws SQLException {
+        List<Appointment> page = new ArrayList<>(pageSize);
+        try (Connection conn = ConnectionPool.getInstance().getConnection();
+             PreparedStatement ps = StatementRegistry.prepare(conn,
+                     after == null ? SqlStatement.CONTACT_SCHEDULE_FIRST : SqlStatement.CONTACT_SCHEDULE_NEXT)) {
+            if (after == null) {
+                ps.setInt(1, pageSize);
+            } else {
+                Timestamp start = Timestamp.valueOf(LocalDateTime.ofEpochSecond(after.getStartEpochSecond(), 0,
+                        ZoneOffset.UTC));
+                ps.setInt(1, after.getContact_ID());
+                ps.setInt(2, after.getContact_ID());
+                ps.setTimestamp(3, start);
+                ps.setTimestamp(4, start);
+                ps.setInt(5, after.getAppointment_ID());
+                ps.setInt(6, pageSize);
+            }
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) { page.add(AppointmentRowMapper.map(rs)); }
+            }
+        }
+        return page;
+    }
+}
@@ -0,0 +1,156 @@
+import java.sql.SQLException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.time.zone.ZoneRules;
+import java.util.List;
+
+/**
+ * The scheduling rules every appointment has to follow: it has to end after it starts, fall within the business hours
+ * of 8am to 10pm Eastern time on a single day, and not overlap another appointment of the same customer. The rules are
+ * checked one appointment at a time by the appointment forms and over a whole batch at once by the bulk import.
+ */
+public final class ScheduleRules {
+
+    /**
+     * the ways an appointment is able to break the rules
+     */
+    public enum Violation {
+        /** the appointment ends before it starts */
+        END_BEFORE_START,
+        /** the appointment falls outside of the business hours */
+        OUTSIDE_BUSINESS_HOURS,
+        /** the appointment overlaps an appointment of the same customer already within the database */
+        OVERLAPS_EXISTING,
+        /** the appointment overlaps an earlier appointment of the same customer within the batch */
+        OVERLAPS_BATCH
+    }
+
+    //the zone the business hours are kept in
+    public static final ZoneId BUSINESS_ZONE = ZoneId.of("America/New_York");
+    //the opening and closing times of the business
+    public static final LocalTime OPENING = LocalTime.of(8, 0);
+    public static final LocalTime CLOSING = LocalTime.of(22, 0);
+
+    private static final long SECONDS_PER_DAY = 86_400;
+
+    private ScheduleRules() {}
+
+    /**
+     * checks to see if the appointment falls within the business hours, starting no earlier than opening and ending
+     * no later than closing of the same business day
+     * @param start the start of the appointment
+     * @param end the end of the appointment
+     * @return true if the appointment is within the business hours
+     */
+    public static boolean withinBusinessHours(ZonedDateTime start, ZonedDateTime end) {
+        LocalDateTime businessStart = start.withZoneSameInstant(BUSINESS_ZONE).toLocalDateTime();
+        LocalDateTime businessEnd = end.withZoneSameInstant(BUSINESS_ZONE).toLocalDateTime();
+        return !businessStart.toLocalTime().isBefore(OPENING)
+                && !businessEnd.isAfter(businessStart.toLocalDate().atTime(CLOSING));
+    }
+
+    /**
+     * checks every appointment of the batch against the rules. The times are copied into flat arrays once and each
+     * rule is run as a single pass over them, the overlaps within the batch are found with one sort and sweep rather
+     * than by comparing every pair.
+     * @param batch the appointments to check, the id of each is ignored unless it is an update of an existing row
+     * @return the violation of each appointment in the order passed in, null where the appointment follows the rules
+     * @throws SQLException if the existing appointments needed to be loaded and could not be read
+     */
+    public static Violation[] validate(List<Appointment> batch) throws SQLException {
+        int size = batch.size();
+        Violation[] violations = new Violation[size];
+        long[] starts = new long[size];
+        long[] ends = new long[size];
+        int[] customers = new int[size];
+        for (int row = 0; row < size; row++) {
+            Appointment appointment = batch.get(row);
+            starts[row] = appointment.getStartEpochSecond();
+            ends[row] = appointment.getEndEpochSecond();
+            customers[row] = appointment.getCustomer_ID();
+        }
+
+        //the order of the times
+        for (int row = 0; row < size; row++) {
+            if (ends[row] < starts[row]) { violations[row] = Violation.END_BEFORE_START; }
+        }
+
+        //the business hours, worked out on the epoch seconds shifted by the business zone's offset at that instant
+        ZoneRules rules = BUSINESS_ZONE.getRules();
+        long opening = OPENING.toSecondOfDay();
+        long closing = CLOSING.toSecondOfDay();
+        for (int row = 0; row < size; row++) {
+            if (violations[row] != null) { continue; }
+            long localStart = starts[row] + rules.getOffset(Instant.ofEpochSecond(starts[row])).getTotalSeconds();
+            long localEnd = ends[row] + rules.getOffset(Instant.ofEpochSecond(ends[row])).getTotalSeconds();
+            long day = Math.floorDiv(localStart, SECONDS_PER_DAY);
+            if (Math.floorMod(localStart, SECONDS_PER_DAY) < opening || localEnd > day * SECONDS_PER_DAY + closing) {
+                violations[row] = Violation.OUTSIDE_BUSINESS_HOURS;
+            }
+        }
+
+        //the appointments already within the database, found through the appointment index
+        AppointmentIndex index = AppointmentIndex.getInstance().ensureLoaded();
+        for (int row = 0; row < size; row++) {
+            if (violations[row] != null) { continue; }
+            int id = batch.get(row).getAppointment_ID();
+            if (index.overlaps(AppointmentIndex.Scope.CUSTOMER, customers[row], Instant.ofEpochSecond(starts[row]),
+                    Instant.ofEpochSecond(ends[row]), id > 0 ? id : -1)) {
+                violations[row] = Violation.OVERLAPS_EXISTING;
+            }
+        }
+
+        //the batch itself, sorted by customer and start so each appointment only needs to be compared against the
+        //latest end of the customer's appointments before it
+        int[] order = new int[size];
+        int count = 0;
+        for (int row = 0; row < size; row++) {
+            if (violations[row] == null) { order[count++] = row; }
+        }
+        sortByCustomerAndStart(order, count, customers, starts);
+        long latestEnd = Long.MIN_VALUE;
+        for (int i = 0; i < count; i++) {
+            int row = order[i];
+            if (i == 0 || customers[order[i - 1]] != customers[row]) {
+                latestEnd = Long.MIN_VALUE;
+            }
+            if (starts[row] < latestEnd) {
+                violations[row] = Violation.OVERLAPS_BATCH;
+            } else {
+                latestEnd = Math.max(latestEnd, ends[row]);
+            }
+        }
+        return violations;
+    }
+
+    /**
+     * merge sorts the first count row numbers by customer and then start, working on the int row numbers themselves so
+     * no row is boxed however large the batch
+     */
+    static void sortByCustomerAndStart(int[] rows, int count, int[] customers, long[] starts) {
+        int[] buffer = new int[count];
+        for (int width = 1; width < count; width *= 2) {
+            for (int low = 0; low < count - width; low += 2 * width) {
+                int middle = low + width;
+                int high = Math.min(low + 2 * width, count);
+                //two runs already in order are left as they are
+                if (!before(rows[middle], rows[middle - 1], customers, starts)) { continue; }
+                System.arraycopy(rows, low, buffer, low, high - low);
+                int left = low;
+                int right = middle;
+                for (int i = low; i < high; i++) {
+                    boolean takeLeft = right == high
+                            || (left < middle && !before(buffer[right], buffer[left], customers, starts));
+                    rows[i] = takeLeft ? buffer[left++] : buffer[right++];
+                }
+            }
+        }
+    }
+
+    private static boolean before(int a, int b, int[] customers, long[] starts) {
+        return customers[a] != customers[b] ? customers[a] < customers[b] : starts[a] < starts[b];
+    }
+}
@@ -0,0 +1,117 @@
+/**
+ * The named SQL templates used by the database access class. Every value is passed in through bind parameters so the
+ * statements can be prepared once per pooled connection by the statement registry and reused for every call.
+ */
+public enum SqlStatement {
+    //reference tables
+    ALL_COUNTRIES("SELECT * FROM countries"),
+    ALL_DIVISIONS("SELECT Division_ID, Division, COUNTRY_ID FROM first_level_divisions"),
+
+    //customers
+    ALL_CUSTOMERS("SELECT * FROM customers"),
+    INSERT_CUSTOMER("INSERT INTO customers(Customer_Name, Address, Postal_Code, Phone, Created_By, " +
+            "Last_Updated_By, Division_ID) VALUES(?, ?, ?, ?, NULL, NULL, ?)"),
+    UPDATE_CUSTOMER("UPDATE customers SET Customer_Name = ?, Address = ?, Postal_Code = ?, Phone = ?, " +
+            "Division_ID = ? WHERE Customer_ID = ?"),
+    DELETE_CUSTOMER("DELETE FROM customers WHERE Customer_ID = ?"),
+    CUSTOMER_ID_BY_NAME("SELECT Customer_ID FROM customers WHERE Customer_Name = ?"),
+    CUSTOMER_NAME_BY_ID("SELECT Customer_Name FROM customers WHERE Customer_ID = ?"),
+
+    //contacts and users
+    ALL_CONTACTS("SELECT * FROM contacts"),
+    ALL_USERS("SELECT * FROM users"),
+    USER_LOGIN("SELECT User_ID, Password FROM users WHERE User_Name = ?"),
+    //needs the Password_Hash column added by user_password_hashes.sql
+    USER_LOGIN_HASHED("SELECT User_ID, Password, Password_Hash FROM users WHERE User_Name = ?"),
+    UPDATE_USER_PASSWORD_HASH("UPDATE users SET Password_Hash = ? WHERE User_ID = ?"),
+
+    //appointments
+    //every appointments query selects the same columns, which the row mapper reads by position
+    ALL_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments"),
+    //the main form's table pages, the pager adds the range, keyset and sort clauses for its column and direction
+    APPOINTMENT_PAGE("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments"),
+    APPOINTMENT_BY_ID("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments WHERE Appointment_ID = ?"),
+    APPOINTMENTS_BY_CONTACT("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments WHERE Contact_ID = ?"),
+    //range lookups, backed by the indexes within appointment_indexes.sql
+    APPOINTMENTS_BETWEEN("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? ORDER BY Start"),
+    CONTACT_APPOINTMENTS_BETWEEN("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Contact_ID = ? AND Start >= ? AND Start < ? ORDER BY Start"),
+    CUSTOMER_APPOINTMENTS_BETWEEN("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Customer_ID = ? AND Start >= ? AND Start < ? ORDER BY Start"),
+    USER_APPOINTMENTS_BETWEEN("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE User_ID = ? AND Start >= ? AND Start < ? ORDER BY Start"),
+    //the columns of the columnar snapshot used by reports and scans
+    APPOINTMENT_SNAPSHOT("SELECT " + AppointmentSnapshot.COLUMNS + " FROM appointments"),
+    APPOINTMENT_SNAPSHOT_BETWEEN("SELECT " + AppointmentSnapshot.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? ORDER BY Start"),
+    APPOINTMENT_TIMES_BY_CUSTOMER("SELECT Start, End FROM appointments WHERE Customer_ID = ?"),
+    CUSTOMER_HAS_APPOINTMENT("SELECT 1 FROM appointments WHERE Customer_ID = ? LIMIT 1"),
+    INSERT_APPOINTMENT("INSERT INTO appointments(Title, Description, Location, Type, Start, End, Customer_ID, " +
+            "User_ID, Contact_ID) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)"),
+    UPDATE_APPOINTMENT("UPDATE appointments SET Title = ?, Description = ?, Location = ?, Contact_ID = ?, Type = ?, " +
+            "Start = ?, End = ?, Customer_ID = ?, User_ID = ? WHERE Appointment_ID = ?"),
+    DELETE_APPOINTMENT("DELETE FROM appointments WHERE Appointment_ID = ?"),
+
+    //reports, grouped by the database so only one row per group is read
+    //the first and last start, giving the months the report by type and month counts
+    REPORT_START_RANGE("SELECT MIN(Start), MAX(Start) FROM appointments"),
+    //appointments counted by type within a single month, whose bounds are taken in the user's time zone
+    REPORT_BY_TYPE_BETWEEN("SELECT Type, COUNT(*) FROM appointments WHERE Start >= ? AND Start < ? " +
+            "GROUP BY Type ORDER BY Type"),
+    //appointments counted per customer, customers without appointments count zero
+    REPORT_PER_CUSTOMER("SELECT c.Customer_ID, c.Customer_Name, c.Division_ID, COUNT(a.Appointment_ID) " +
+            "FROM customers c LEFT JOIN appointments a ON a.Customer_ID = c.Customer_ID " +
+            "GROUP BY c.Customer_ID, c.Customer_Name, c.Division_ID ORDER BY c.Division_ID, c.Customer_Name"),
+    //the customers and their divisions, for the report counts kept in memory
+    CUSTOMER_DIVISIONS("SELECT Customer_ID, Customer_Name, Division_ID FROM customers " +
+            "ORDER BY Division_ID, Customer_Name"),
+    //the appointments within a range of start times for the export, of every contact and customer or of one of them,
+    //a statement each so every filter reads its own index
+    EXPORT_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? ORDER BY Start, Appointment_ID"),
+    EXPORT_CONTACT_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? AND Contact_ID = ? ORDER BY Start, Appointment_ID"),
+    EXPORT_CUSTOMER_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? AND Customer_ID = ? ORDER BY Start, Appointment_ID"),
+    EXPORT_CONTACT_CUSTOMER_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Start >= ? AND Start < ? AND Contact_ID = ? AND Customer_ID = ? ORDER BY Start, Appointment_ID"),
+    //the contact schedule a page at a time, continuing after the contact, start and id of the last row read
+    CONTACT_SCHEDULE_FIRST("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "ORDER BY Contact_ID, Start, Appointment_ID LIMIT ?"),
+    CONTACT_SCHEDULE_NEXT("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments " +
+            "WHERE Contact_ID > ? OR (Contact_ID = ? AND (Start > ? OR (Start = ? AND Appointment_ID > ?))) " +
+            "ORDER BY Contact_ID, Start, Appointment_ID LIMIT ?"),
+
+    //change log, filled by the triggers within appointment_changes.sql
+    APPOINTMENT_CHANGE_RANGE("SELECT MIN(Change_ID), MAX(Change_ID) FROM appointment_changes"),
+    //the first change after an id made within the last ? seconds, whose transaction may not have committed yet
+    FIRST_UNSETTLED_CHANGE("SELECT MIN(Change_ID) FROM appointment_changes " +
+            "WHERE Change_ID > ? AND Changed_At >= TIMESTAMPADD(SECOND, ?, CURRENT_TIMESTAMP)"),
+    CHANGED_APPOINTMENT_IDS("SELECT DISTINCT Appointment_ID FROM appointment_changes " +
+            "WHERE Change_ID > ? AND Change_ID <= ?"),
+    CHANGED_APPOINTMENTS("SELECT " + AppointmentRowMapper.COLUMNS + " FROM appointments WHERE Appointment_ID IN " +
+            "(SELECT Appointment_ID FROM appointment_changes WHERE Change_ID > ? AND Change_ID <= ?)");
+
+    private final String sql; //holds the template text with ? bind parameters
+    private final boolean generatesKeys; //whether the statement inserts a row with an auto-generated id
+
+    SqlStatement(String sql) {
+        this.sql = sql;
+        this.generatesKeys = sql.startsWith("INSERT");
+    }
+
+    /**
+     * @return the template text of the statement
+     */
+    public String sql() {
+        return sql;
+    }
+
+    /**
+     * @return true if the generated id of the inserted row should be returned by the statement
+     */
+    public boolean generatesKeys() {
+        return generatesKeys;
+    }
+}
@@ -0,0 +1,217 @@
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Prepares the named statements of {@link SqlStatement} once per pooled connection and keeps them open for reuse, so
+ * the server can keep the plan and the client does not rebuild the statement on every call. Each statement also keeps
+ * a count of how many times it was executed and how long the executions took.
+ */
+public final class StatementRegistry {
+
+    //holds the execution counters of every named statement
+    private static final Map<SqlStatement, Stats> STATS = new EnumMap<>(SqlStatement.class);
+
+    static {
+        for (SqlStatement statement : SqlStatement.values()) { STATS.put(statement, new Stats()); }
+    }
+
+    private StatementRegistry() {}
+
+    /**
+     * implemented by connections that are able to hold on to their prepared statements between borrows
+     */
+    interface CachingConnection {
+        /**
+         * @param statement the named statement to look up
+         * @return the statement already prepared on this connection, or null if it has not been prepared yet
+         */
+        PreparedStatement cachedStatement(SqlStatement statement);
+
+        /**
+         * keeps the prepared statement with the connection so the next borrower is able to reuse it
+         * @param statement the named statement
+         * @param prepared the statement prepared on this connection
+         */
+        void cacheStatement(SqlStatement statement, PreparedStatement prepared);
+
+        /**
+         * @param sql the full text of a named statement with clauses added
+         * @return the statement already prepared on this connection, or null if it has not been prepared yet
+         */
+        PreparedStatement cachedStatement(String sql);
+
+        /**
+         * keeps the prepared statement with the connection so the next borrower is able to reuse it
+         * @param sql the full text of a named statement with clauses added
+         * @param prepared the statement prepared on this connection
+         */
+        void cacheStatement(String sql, PreparedStatement prepared);
+    }
+
+    /**
+     * returns the named statement prepared on the passed in connection, reusing the copy already prepared on that
+     * connection if there is one. Closing the returned statement only clears its parameters.
+     * @param conn the connection borrowed from the pool
+     * @param statement the named statement to prepare
+     * @return the prepared statement ready for its parameters to be bound
+     * @throws SQLException if the statement could not be prepared
+     */
+    public static PreparedStatement prepare(Connection conn, SqlStatement statement) throws SQLException {
+        if (!(conn instanceof CachingConnection)) {
+            //connections that are not from the pool get a plain statement that is closed as normal
+            return wrap(create(conn, statement), statement, false);
+        }
+
+        CachingConnection caching = (CachingConnection) conn;
+        PreparedStatement prepared = caching.cachedStatement(statement);
+        if (prepared == null || prepared.isClosed()) {
+            prepared = create(conn, statement);
+            caching.cacheStatement(statement, prepared);
+        }
+        return wrap(prepared, statement, true);
+    }
+
+    /**
+     * returns a named statement with clauses added to its text, for the few statements whose shape is picked at run
+     * time such as the column and direction a page of the main form's table is sorted by. The clauses have to come
+     * from a fixed set, never from user text, so each connection only ever prepares a handful of shapes; each is
+     * prepared once per connection and its executions are counted under the named statement
+     * @param conn the connection borrowed from the pool
+     * @param statement the named statement the text starts with
+     * @param clauses the clauses added after the named statement's text
+     * @return the prepared statement ready for its parameters to be bound
+     * @throws SQLException if the statement could not be prepared
+     */
+    public static PreparedStatement prepare(Connection conn, SqlStatement statement, String clauses)
+            throws SQLException {
+        String sql = statement.sql() + clauses;
+        if (!(conn instanceof CachingConnection)) {
+            return wrap(conn.prepareStatement(sql), statement, false);
+        }
+
+        CachingConnection caching = (CachingConnection) conn;
+        PreparedStatement prepared = caching.cachedStatement(sql);
+        if (prepared == null || prepared.isClosed()) {
+            prepared = conn.prepareStatement(sql);
+            caching.cacheStatement(sql, prepared);
+        }
+        return wrap(prepared, statement, true);
+    }
+
+    /**
+     * prepares a new copy of the named statement on the connection
+     */
+    private static PreparedStatement create(Connection conn, SqlStatement statement) throws SQLException {
+        return statement.generatesKeys()
+                ? conn.prepareStatement(statement.sql(), PreparedStatement.RETURN_GENERATED_KEYS)
+                : conn.prepareStatement(statement.sql());
+    }
+
+    /**
+     * @param statement the named statement
+     * @return the execution counters of the statement
+     */
+    public static Stats stats(SqlStatement statement) {
+        return STATS.get(statement);
+    }
+
+    /**
+     * @return a printable table of the counters of every statement that has been executed
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (Map.Entry<SqlStatement, Stats> entry : STATS.entrySet()) {
+            if (entry.getValue().executions() > 0) {
+                report.append(entry.getKey()).append(' ').append(entry.getValue()).append('\n');
+            }
+        }
+        return report.toString();
+    }
+
+    /**
+     * wraps the prepared statement so its executions are timed and, for cached statements, so closing it keeps the
+     * statement open for the next caller
+     */
+    private static PreparedStatement wrap(PreparedStatement prepared, SqlStatement statement, boolean cached) {
+        Stats stats = STATS.get(statement);
+        return (PreparedStatement) Proxy.newProxyInstance(PreparedStatement.class.getClassLoader(),
+                new Class<?>[]{PreparedStatement.class}, new InvocationHandler() {
+                    private boolean closed = false;
+
+                    @Override
+                    public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+                        String name = method.getName();
+                        if (name.equals("close")) {
+                            if (!closed) {
+                                closed = true;
+                                if (cached) {
+                                    prepared.clearParameters();
+                                    prepared.clearBatch();
+                                } else {
+                                    prepared.close();
+                                }
+                            }
+                            return null;
+                        }
+                        if (name.equals("isClosed")) { return closed || prepared.isClosed(); }
+                        if (closed) { throw new SQLException("Statement " + statement + " has already been closed"); }
+
+                        boolean execution = name.startsWith("execute") && (args == null || args.length == 0);
+                        long start = execution ? System.nanoTime() : 0;
+                        try {
+                            return method.invoke(prepared, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getCause();
+                        } finally {
+                            if (execution) { stats.record(System.nanoTime() - start); }
+                        }
+                    }
+                });
+    }
+
+    /**
+     * holds the execution count and timings of a single named statement
+     */
+    public static final class Stats {
+        private final LongAdder executions = new LongAdder();
+        private final LongAdder totalNanos = new LongAdder();
+        private final AtomicLong maxNanos = new AtomicLong();
+
+        void record(long nanos) {
+            executions.increment();
+            totalNanos.add(nanos);
+            maxNanos.accumulateAndGet(nanos, Math::max);
+        }
+
+        /**
+         * @return the number of times the statement was executed
+         */
+        public long executions() { return executions.sum(); }
+
+        /**
+         * @return the total time spent executing the statement in nanoseconds
+         */
+        public long totalNanos() { return totalNanos.sum(); }
+
+        /**
+         * @return the slowest single execution of the statement in nanoseconds
+         */
+        public long maxNanos() { return maxNanos.get(); }
+
+        @Override
+        public String toString() {
+            long count = executions();
+            return "[executions=" + count + ", avgMicros=" + (count == 0 ? 0 : totalNanos() / count / 1000) +
+                    ", maxMicros=" + maxNanos() / 1000 + "]";
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * This is the class used to represent the users that log in to the application and are assigned to appointments
+ */
+public class User {
+    private int userID; //holds the id of the user
+    private String userName; //holds the user name of the user
+
+    /**
+     * constructor class to initialize values
+     * @param userID represents the user id
+     * @param userName represents the user name
+     */
+    public User(int userID, String userName) {
+        this.userID = userID;
+        this.userName = userName;
+    }
+
+    /**
+     * @return the user id
+     */
+    public int getUserID() {
+        return userID;
+    }
+
+    /**
+     * @param userID stores value to class
+     */
+    public void setUserID(int userID) {
+        this.userID = userID;
+    }
+
+    /**
+     * @return the user name
+     */
+    public String getUserName() {
+        return userName;
+    }
+
+    /**
+     * @param userName stores value to class
+     */
+    public void setUserName(String userName) {
+        this.userName = userName;
+    }
+
+    /**
+     * @return the user name, which is how the user is shown within the combo boxes
+     */
+    @Override
+    public String toString() {
+        return userName;
+    }
+}
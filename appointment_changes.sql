@@ -0,0 +1,22 @@
+-- change log of the appointments table, filled by triggers so the changes made by every client are recorded. The main
+-- form's table remembers the last Change_ID it has seen and reads only the appointments changed after it, deleted
+-- appointments show up as a change whose row no longer exists
+CREATE TABLE appointment_changes (
+    Change_ID BIGINT NOT NULL AUTO_INCREMENT PRIMARY KEY,
+    Appointment_ID INT NOT NULL,
+    Changed_At TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- finds the recent changes a reader does not yet count as read, and the old ones the pruning below removes
+CREATE INDEX idx_appointment_changes_changed_at ON appointment_changes (Changed_At);
+
+CREATE TRIGGER appointments_log_insert AFTER INSERT ON appointments FOR EACH ROW
+    INSERT INTO appointment_changes (Appointment_ID) VALUES (NEW.Appointment_ID);
+CREATE TRIGGER appointments_log_update AFTER UPDATE ON appointments FOR EACH ROW
+    INSERT INTO appointment_changes (Appointment_ID) VALUES (NEW.Appointment_ID);
+CREATE TRIGGER appointments_log_delete AFTER DELETE ON appointments FOR EACH ROW
+    INSERT INTO appointment_changes (Appointment_ID) VALUES (OLD.Appointment_ID);
+
+-- the log only has to reach back as far as the oldest open main form, a client whose last seen change has been pruned
+-- reads its table again from the start. Run now and then, for example from a scheduled event:
+-- DELETE FROM appointment_changes WHERE Changed_At < NOW() - INTERVAL 7 DAY;
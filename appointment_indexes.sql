@@ -0,0 +1,13 @@
+-- recommended indexes for the appointment range lookups used by the week and month views and the
+-- contact, customer and user schedules, so each lookup reads only the rows within the range
+CREATE INDEX idx_appointments_start ON appointments (Start, End);
+CREATE INDEX idx_appointments_contact_start ON appointments (Contact_ID, Start);
+CREATE INDEX idx_appointments_customer_start ON appointments (Customer_ID, Start);
+CREATE INDEX idx_appointments_user_start ON appointments (User_ID, Start);
+
+-- the main form's table pages through the appointments by (Start, Appointment_ID); the primary key is held within
+-- every secondary index, so idx_appointments_start also serves those page reads without sorting
+
+-- the appointments by type and month report counts the types within each month's range of Start, so it reads this
+-- index instead of the table
+CREATE INDEX idx_appointments_start_type ON appointments (Start, Type);
@@ -0,0 +1,187 @@
+package scheduler.bench;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.sql.ResultSet;
+import java.time.Instant;
+import java.time.ZonedDateTime;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+
+/**
+ * Bridge from the benchmarks to the application classes. JMH refuses benchmark classes in the default package and Java
+ * does not allow the default package to be imported, so the application methods are looked up once as method handles
+ * and called through the static helpers below. The handles are static final, so the JIT treats them as constants and
+ * the call costs the same as a direct one.
+ */
+final class App {
+
+    private static final MethodHandles.Lookup LOOKUP = MethodHandles.publicLookup();
+
+    private static final MethodHandle CONFIGURE_POOL;
+    private static final MethodHandle NEW_DB_ACCESS;
+    private static final MethodHandle GET_APPOINTMENT_ARRAY;
+    private static final MethodHandle GET_APPOINTMENTS_BETWEEN;
+    private static final MethodHandle CUSTOMER_ASSOCIATED_APPOINTMENTS;
+    private static final MethodHandle INDEX_INSTANCE;
+    private static final MethodHandle INDEX_ENSURE_LOADED;
+    private static final MethodHandle INDEX_INVALIDATE;
+    private static final MethodHandle INDEX_OVERLAPS;
+    private static final MethodHandle REFERENCE_DATA_INSTANCE;
+    private static final MethodHandle REFERENCE_DATA_INVALIDATE;
+    private static final MethodHandle NEW_APPOINTMENT;
+    private static final MethodHandle ROW_MAPPER_MAP;
+    private static final MethodHandle NEW_REPORT_ENGINE;
+    private static final MethodHandle REPORT_BY_TYPE_AND_MONTH;
+    private static final MethodHandle REPORT_PER_CUSTOMER;
+    private static final MethodHandle REPORT_CONTACT_SCHEDULE;
+    private static final Object SCOPE_CUSTOMER;
+    static final String APPOINTMENT_COLUMNS;
+
+    static {
+        try {
+            Class<?> pool = Class.forName("ConnectionPool");
+            Class<?> dbAccess = Class.forName("DBAccess");
+            Class<?> index = Class.forName("AppointmentIndex");
+            Class<?> scope = Class.forName("AppointmentIndex$Scope");
+            Class<?> referenceData = Class.forName("ReferenceDataCache");
+            Class<?> appointment = Class.forName("Appointment");
+            Class<?> rowMapper = Class.forName("AppointmentRowMapper");
+            Class<?> reportEngine = Class.forName("ReportEngine");
+            Class<?> observableList = Class.forName("javafx.collections.ObservableList");
+
+            CONFIGURE_POOL = LOOKUP.findStatic(pool, "configure", MethodType.methodType(void.class, Properties.class));
+            NEW_DB_ACCESS = LOOKUP.findConstructor(dbAccess, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            GET_APPOINTMENT_ARRAY = LOOKUP.findVirtual(dbAccess, "getAppointmentArray",
+                    MethodType.methodType(observableList)).asType(MethodType.methodType(Object.class, Object.class));
+            GET_APPOINTMENTS_BETWEEN = LOOKUP.findVirtual(dbAccess, "getAppointmentsBetween",
+                    MethodType.methodType(observableList, Instant.class, Instant.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, Instant.class, Instant.class));
+            CUSTOMER_ASSOCIATED_APPOINTMENTS = LOOKUP.findVirtual(dbAccess, "customerAssociatedAppointments",
+                    MethodType.methodType(observableList, int.class))
+                    .asType(MethodType.methodType(Object.class, Object.class, int.class));
+            INDEX_INSTANCE = LOOKUP.findStatic(index, "getInstance", MethodType.methodType(index))
+                    .asType(MethodType.methodType(Object.class));
+            INDEX_ENSURE_LOADED = LOOKUP.findVirtual(index, "ensureLoaded", MethodType.methodType(index))
+                    .asType(MethodType.methodType(Object.class, Object.class));
+            INDEX_INVALIDATE = LOOKUP.findVirtual(index, "invalidate", MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(void.class, Object.class));
+            INDEX_OVERLAPS = LOOKUP.findVirtual(index, "overlaps", MethodType.methodType(boolean.class, scope,
+                    int.class, Instant.class, Instant.class, int.class))
+                    .asType(MethodType.methodType(boolean.class, Object.class, Object.class, int.class, Instant.class,
+                            Instant.class, int.class));
+            REFERENCE_DATA_INSTANCE = LOOKUP.findStatic(referenceData, "getInstance",
+                    MethodType.methodType(referenceData)).asType(MethodType.methodType(Object.class));
+            REFERENCE_DATA_INVALIDATE = LOOKUP.findVirtual(referenceData, "invalidate",
+                    MethodType.methodType(void.class)).asType(MethodType.methodType(void.class, Object.class));
+            NEW_APPOINTMENT = LOOKUP.findConstructor(appointment, MethodType.methodType(void.class, int.class,
+                    String.class, String.class, String.class, int.class, String.class, ZonedDateTime.class,
+                    ZonedDateTime.class, int.class, int.class)).asType(MethodType.methodType(Object.class, int.class,
+                    String.class, String.class, String.class, int.class, String.class, ZonedDateTime.class,
+                    ZonedDateTime.class, int.class, int.class));
+            ROW_MAPPER_MAP = LOOKUP.findStatic(rowMapper, "map", MethodType.methodType(appointment, ResultSet.class))
+                    .asType(MethodType.methodType(Object.class, ResultSet.class));
+            NEW_REPORT_ENGINE = LOOKUP.findConstructor(reportEngine, MethodType.methodType(void.class))
+                    .asType(MethodType.methodType(Object.class));
+            REPORT_BY_TYPE_AND_MONTH = LOOKUP.findVirtual(reportEngine, "appointmentsByTypeAndMonth",
+                    MethodType.methodType(List.class)).asType(MethodType.methodType(List.class, Object.class));
+            REPORT_PER_CUSTOMER = LOOKUP.findVirtual(reportEngine, "appointmentsPerCustomer",
+                    MethodType.methodType(List.class)).asType(MethodType.methodType(List.class, Object.class));
+            REPORT_CONTACT_SCHEDULE = LOOKUP.findVirtual(reportEngine, "contactSchedule",
+                    MethodType.methodType(List.class, appointment, int.class))
+                    .asType(MethodType.methodType(List.class, Object.class, Object.class, int.class));
+            SCOPE_CUSTOMER = scope.getField("CUSTOMER").get(null);
+            APPOINTMENT_COLUMNS = (String) rowMapper.getField("COLUMNS").get(null);
+        } catch (ReflectiveOperationException e) {
+            throw new ExceptionInInitializerError(e);
+        }
+    }
+
+    private App() {}
+
+    /**
+     * points the shared connection pool at the benchmark database and drops anything cached from a previous one
+     */
+    static void configure(Properties properties) throws Throwable {
+        CONFIGURE_POOL.invokeExact(properties);
+        INDEX_INVALIDATE.invokeExact(appointmentIndex());
+        REFERENCE_DATA_INVALIDATE.invokeExact((Object) REFERENCE_DATA_INSTANCE.invokeExact());
+    }
+
+    /**
+     * @return the name and text of every named statement of the application, in declaration order
+     */
+    static Map<String, String> statements() throws ReflectiveOperationException {
+        Class<?> sqlStatement = Class.forName("SqlStatement");
+        MethodHandle sql = LOOKUP.findVirtual(sqlStatement, "sql", MethodType.methodType(String.class));
+        Map<String, String> statements = new LinkedHashMap<>();
+        for (Object statement : sqlStatement.getEnumConstants()) {
+            try {
+                statements.put(((Enum<?>) statement).name(), (String) sql.invoke(statement));
+            } catch (Throwable e) {
+                throw new ReflectiveOperationException(e);
+            }
+        }
+        return statements;
+    }
+
+    static Object newDBAccess() throws Throwable {
+        return (Object) NEW_DB_ACCESS.invokeExact();
+    }
+
+    static Object getAppointmentArray(Object dbAccess) throws Throwable {
+        return (Object) GET_APPOINTMENT_ARRAY.invokeExact(dbAccess);
+    }
+
+    static Object getAppointmentsBetween(Object dbAccess, Instant from, Instant to) throws Throwable {
+        return (Object) GET_APPOINTMENTS_BETWEEN.invokeExact(dbAccess, from, to);
+    }
+
+    static Object customerAssociatedAppointments(Object dbAccess, int customerId) throws Throwable {
+        return (Object) CUSTOMER_ASSOCIATED_APPOINTMENTS.invokeExact(dbAccess, customerId);
+    }
+
+    static Object newAppointment(int id, String title, String description, String location, int contactId,
+                                 String type, ZonedDateTime start, ZonedDateTime end, int customerId, int userId)
+            throws Throwable {
+        return (Object) NEW_APPOINTMENT.invokeExact(id, title, description, location, contactId, type, start, end,
+                customerId, userId);
+    }
+
+    static Object mapRow(ResultSet rs) throws Throwable {
+        return (Object) ROW_MAPPER_MAP.invokeExact(rs);
+    }
+
+    static Object newReportEngine() throws Throwable {
+        return (Object) NEW_REPORT_ENGINE.invokeExact();
+    }
+
+    static List<?> appointmentsByTypeAndMonth(Object engine) throws Throwable {
+        return (List<?>) REPORT_BY_TYPE_AND_MONTH.invokeExact(engine);
+    }
+
+    static List<?> appointmentsPerCustomer(Object engine) throws Throwable {
+        return (List<?>) REPORT_PER_CUSTOMER.invokeExact(engine);
+    }
+
+    static List<?> contactSchedule(Object engine, Object after, int pageSize) throws Throwable {
+        return (List<?>) REPORT_CONTACT_SCHEDULE.invokeExact(engine, after, pageSize);
+    }
+
+    static Object appointmentIndex() throws Throwable {
+        return (Object) INDEX_INSTANCE.invokeExact();
+    }
+
+    static Object ensureIndexLoaded() throws Throwable {
+        return (Object) INDEX_ENSURE_LOADED.invokeExact(appointmentIndex());
+    }
+
+    static boolean customerOverlaps(Object index, int customerId, Instant start, Instant end, int excludeId)
+            throws Throwable {
+        return (boolean) INDEX_OVERLAPS.invokeExact(index, SCOPE_CUSTOMER, customerId, start, end, excludeId);
+    }
+}
@@ -0,0 +1,84 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.ZoneOffset;
+import java.time.temporal.ChronoUnit;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the database reads behind the main form: the whole table load, the week and month views, the upcoming
+ * appointment check run at login and the customer appointment lookup. Each is reported as throughput and as sampled
+ * latency (with percentiles), run through BenchmarkMain to also get the allocation rate.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class AppointmentQueryBenchmark {
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int appointments;
+
+    @Param({"100000"})
+    public int customers;
+
+    private Object data;
+    private Instant weekStart;
+    private Instant monthStart;
+    private Instant upcomingFrom;
+    private int nextCustomer;
+
+    @Setup
+    public void seed() throws Throwable {
+        BenchmarkDatabase.start(appointments, customers);
+        data = App.newDBAccess();
+
+        //views the middle of the seeded range, so the range reads are neither at the start nor the end of the index
+        LocalDate monday = BenchmarkDatabase.middleMonday(appointments);
+        weekStart = monday.atStartOfDay().toInstant(ZoneOffset.UTC);
+        monthStart = monday.withDayOfMonth(1).atStartOfDay().toInstant(ZoneOffset.UTC);
+        upcomingFrom = weekStart.plus(13, ChronoUnit.HOURS);
+    }
+
+    @Benchmark
+    public Object getAppointmentArray() throws Throwable {
+        return App.getAppointmentArray(data);
+    }
+
+    @Benchmark
+    public Object weekView() throws Throwable {
+        return App.getAppointmentsBetween(data, weekStart, weekStart.plus(7, ChronoUnit.DAYS));
+    }
+
+    @Benchmark
+    public Object monthView() throws Throwable {
+        return App.getAppointmentsBetween(data, monthStart, monthStart.plus(31, ChronoUnit.DAYS));
+    }
+
+    @Benchmark
+    public Object appointmentUpcomingCheck() throws Throwable {
+        return App.getAppointmentsBetween(data, upcomingFrom, upcomingFrom.plus(15, ChronoUnit.MINUTES));
+    }
+
+    @Benchmark
+    public Object customerAssociatedAppointments() throws Throwable {
+        //walks through the customers so each call reads a different customer's rows
+        nextCustomer = nextCustomer % customers + 1;
+        return App.customerAssociatedAppointments(data, nextCustomer);
+    }
+}
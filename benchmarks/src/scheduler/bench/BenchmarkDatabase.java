@@ -0,0 +1,232 @@
+package scheduler.bench;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.DayOfWeek;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Map;
+import java.util.Properties;
+import java.util.SplittableRandom;
+
+/**
+ * Creates and seeds the embedded H2 database the benchmarks run against, in MySQL mode with the same tables as the
+ * scheduling database. The rows are generated from a fixed seed so every run (and every fork) measures the same data.
+ *
+ * Appointments are spread over business days (8am to 10pm Eastern, stored in UTC) starting at {@link #FIRST_DAY}, a
+ * few hundred a day, so a week or month view returns a similar number of rows whatever the total volume is.
+ */
+final class BenchmarkDatabase {
+
+    //the first day holding appointments
+    static final LocalDate FIRST_DAY = LocalDate.of(2020, 1, 6);
+    //how many appointments are placed on each business day
+    static final int APPOINTMENTS_PER_DAY = 400;
+
+    private static final int COUNTRIES = 3;
+    private static final int DIVISIONS_PER_COUNTRY = 20;
+    private static final int CONTACTS = 3;
+    private static final int USERS = 2;
+    private static final int INSERT_BATCH = 10_000;
+
+    private BenchmarkDatabase() {}
+
+    /**
+     * creates a fresh database with the given volumes and points the application's connection pool at it
+     * @param appointments the number of appointments to seed
+     * @param customers the number of customers to seed
+     * @return the url of the database
+     */
+    static String start(int appointments, int customers) throws Throwable {
+        String url = "jdbc:h2:mem:bench_" + appointments + "_" + customers +
+                ";MODE=MySQL;DB_CLOSE_DELAY=-1;NON_KEYWORDS=END,USER,VALUE";
+        try (Connection conn = DriverManager.getConnection(url, "sa", "")) {
+            conn.setAutoCommit(false);
+            createTables(conn);
+            seedReferenceData(conn);
+            seedCustomers(conn, customers);
+            seedAppointments(conn, appointments, customers);
+            createIndexes(conn);
+            conn.commit();
+            checkStatements(conn, url);
+        }
+
+        Properties properties = new Properties();
+        properties.setProperty("db.url", url);
+        properties.setProperty("db.user", "sa");
+        properties.setProperty("db.password", "");
+        properties.setProperty("db.pool.maxSize", "4");
+        App.configure(properties);
+        return url;
+    }
+
+    /**
+     * @param day the number of business days after the first day
+     * @return the start of that business day in UTC
+     */
+    static LocalDateTime businessDay(int day) {
+        LocalDate date = FIRST_DAY.plusWeeks(day / 5).plusDays(day % 5);
+        //8am Eastern, ignoring daylight saving time, which does not change the shape of the data
+        return date.atTime(13, 0);
+    }
+
+    private static void createTables(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            st.execute("CREATE TABLE countries (Country_ID INT PRIMARY KEY, Country VARCHAR(50))");
+            st.execute("CREATE TABLE first_level_divisions (Division_ID INT PRIMARY KEY, Division VARCHAR(50), " +
+                    "COUNTRY_ID INT)");
+            st.execute("CREATE TABLE customers (Customer_ID INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "Customer_Name VARCHAR(50), Address VARCHAR(100), Postal_Code VARCHAR(50), Phone VARCHAR(50), " +
+                    "Create_Date DATETIME, Created_By VARCHAR(50), Last_Update TIMESTAMP, " +
+                    "Last_Updated_By VARCHAR(50), Division_ID INT)");
+            st.execute("CREATE TABLE contacts (Contact_ID INT PRIMARY KEY, Contact_Name VARCHAR(50), " +
+                    "Email VARCHAR(50))");
+            st.execute("CREATE TABLE users (User_ID INT PRIMARY KEY, User_Name VARCHAR(50), Password TEXT, " +
+                    "Password_Hash VARCHAR(128))");
+            st.execute("CREATE TABLE appointments (Appointment_ID INT AUTO_INCREMENT PRIMARY KEY, " +
+                    "Title VARCHAR(50), Description VARCHAR(50), Location VARCHAR(50), Type VARCHAR(50), " +
+                    "Start DATETIME, End DATETIME, Create_Date DATETIME, Created_By VARCHAR(50), " +
+                    "Last_Update TIMESTAMP, Last_Updated_By VARCHAR(50), Customer_ID INT, User_ID INT, " +
+                    "Contact_ID INT)");
+            //the change log of appointment_changes.sql, left empty since H2 does not run its MySQL triggers
+            st.execute("CREATE TABLE appointment_changes (Change_ID BIGINT AUTO_INCREMENT PRIMARY KEY, " +
+                    "Appointment_ID INT NOT NULL, Changed_At TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        }
+    }
+
+    private static void seedReferenceData(Connection conn) throws SQLException {
+        try (Statement st = conn.createStatement()) {
+            for (int country = 1; country <= COUNTRIES; country++) {
+                st.execute("INSERT INTO countries VALUES (" + country + ", 'Country " + country + "')");
+                for (int i = 1; i <= DIVISIONS_PER_COUNTRY; i++) {
+                    int division = (country - 1) * DIVISIONS_PER_COUNTRY + i;
+                    st.execute("INSERT INTO first_level_divisions VALUES (" + division + ", 'Division " + division +
+                            "', " + country + ")");
+                }
+            }
+            for (int contact = 1; contact <= CONTACTS; contact++) {
+                st.execute("INSERT INTO contacts VALUES (" + contact + ", 'Contact " + contact + "', 'contact" +
+                        contact + "@example.com')");
+            }
+            for (int user = 1; user <= USERS; user++) {
+                st.execute("INSERT INTO users (User_ID, User_Name, Password) VALUES (" + user + ", 'user" + user +
+                        "', 'user" + user + "')");
+            }
+        }
+    }
+
+    private static void seedCustomers(Connection conn, int customers) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO customers(Customer_Name, Address, " +
+                "Postal_Code, Phone, Division_ID) VALUES(?, ?, ?, ?, ?)")) {
+            for (int i = 1; i <= customers; i++) {
+                ps.setString(1, "Customer " + i);
+                ps.setString(2, i + " Main Street");
+                ps.setString(3, String.valueOf(10_000 + i % 90_000));
+                ps.setString(4, "555-" + (1000 + i % 9000));
+                ps.setInt(5, 1 + i % (COUNTRIES * DIVISIONS_PER_COUNTRY));
+                ps.addBatch();
+                if (i % INSERT_BATCH == 0) { ps.executeBatch(); }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    private static void seedAppointments(Connection conn, int appointments, int customers) throws SQLException {
+        String[] types = {"Planning Session", "De-Briefing", "Consultation", "Follow Up", "Review"};
+        String[] locations = {"Phoenix, Arizona", "White Plains, New York", "Montreal, Canada", "London, England"};
+        SplittableRandom random = new SplittableRandom(42);
+        try (PreparedStatement ps = conn.prepareStatement("INSERT INTO appointments(Title, Description, Location, " +
+                "Type, Start, End, Customer_ID, User_ID, Contact_ID) VALUES(?, ?, ?, ?, ?, ?, ?, ?, ?)")) {
+            for (int i = 0; i < appointments; i++) {
+                //places the appointment on its business day in a random quarter hour slot between 8am and 9pm
+                LocalDateTime start = businessDay(i / APPOINTMENTS_PER_DAY).plusMinutes(15L * random.nextInt(52));
+                LocalDateTime end = start.plusMinutes(15L * (1 + random.nextInt(4)));
+                ps.setString(1, "Appointment " + i);
+                ps.setString(2, "Benchmark appointment " + i);
+                ps.setString(3, locations[random.nextInt(locations.length)]);
+                ps.setString(4, types[random.nextInt(types.length)]);
+                ps.setTimestamp(5, Timestamp.valueOf(start));
+                ps.setTimestamp(6, Timestamp.valueOf(end));
+                ps.setInt(7, 1 + random.nextInt(customers));
+                ps.setInt(8, 1 + random.nextInt(USERS));
+                ps.setInt(9, 1 + random.nextInt(CONTACTS));
+                ps.addBatch();
+                if ((i + 1) % INSERT_BATCH == 0) { ps.executeBatch(); }
+            }
+            ps.executeBatch();
+        }
+    }
+
+    /**
+     * creates the indexes recommended by appointment_indexes.sql (set bench.indexes to its path if the benchmarks are
+     * not run from the project directory) so the benchmarks measure the same plans as production
+     */
+    private static void createIndexes(Connection conn) throws SQLException {
+        Path file = Paths.get(System.getProperty("bench.indexes", "appointment_indexes.sql"));
+        if (!Files.exists(file)) {
+            System.err.println("bench: " + file + " not found, running without the recommended indexes");
+            return;
+        }
+        StringBuilder sql = new StringBuilder();
+        try {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                if (!line.trim().startsWith("--")) { sql.append(line).append('\n'); }
+            }
+        } catch (IOException e) {
+            throw new SQLException("could not read " + file, e);
+        }
+        try (Statement st = conn.createStatement()) {
+            for (String statement : sql.toString().split(";")) {
+                if (!statement.trim().isEmpty()) { st.execute(statement); }
+            }
+        }
+    }
+
+    /**
+     * prepares every named statement of the application, so a statement the in-memory database cannot run (one using
+     * a column name H2 reads as a keyword, for example) stops the run here instead of failing as a benchmark error
+     */
+    private static void checkStatements(Connection conn, String url) throws SQLException {
+        Map<String, String> statements;
+        try {
+            statements = App.statements();
+        } catch (ReflectiveOperationException e) {
+            throw new SQLException("could not read the application's statements", e);
+        }
+        for (Map.Entry<String, String> statement : statements.entrySet()) {
+            try {
+                conn.prepareStatement(statement.getValue()).close();
+            } catch (SQLException e) {
+                throw new SQLException(statement.getKey() + " cannot be prepared against " + url, e);
+            }
+        }
+    }
+
+    /**
+     * @param day the number of business days after the first day
+     * @return the UTC instant the day's first appointment slot starts at
+     */
+    static Instant businessDayInstant(int day) {
+        return businessDay(day).toInstant(ZoneOffset.UTC);
+    }
+
+    /**
+     * @param appointments the number of appointments seeded
+     * @return the Monday of the week in the middle of the seeded range
+     */
+    static LocalDate middleMonday(int appointments) {
+        int days = Math.max(1, appointments / APPOINTMENTS_PER_DAY);
+        return businessDay(days / 2).toLocalDate().with(DayOfWeek.MONDAY);
+    }
+}
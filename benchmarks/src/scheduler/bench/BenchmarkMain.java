@@ -0,0 +1,29 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Runs the benchmarks with the allocation profiler attached and writes the results as JSON so runs from different
+ * changes can be compared. Any JMH command line option may be passed, for example {@code -p appointments=10000} to run
+ * a single volume or a class name to run a single benchmark.
+ */
+public final class BenchmarkMain {
+
+    private BenchmarkMain() {}
+
+    public static void main(String[] args) throws Exception {
+        CommandLineOptions commandLine = new CommandLineOptions(args);
+        OptionsBuilder options = new OptionsBuilder();
+        options.parent(commandLine)
+                .addProfiler(GCProfiler.class)
+                .resultFormat(ResultFormatType.JSON)
+                .result(System.getProperty("bench.result", "benchmarks/results.json"));
+        //the builder's includes replace the command line's, so every benchmark is only added when none was named
+        if (commandLine.getIncludes().isEmpty()) { options.include("scheduler.bench"); }
+        new Runner(options.build()).run();
+    }
+}
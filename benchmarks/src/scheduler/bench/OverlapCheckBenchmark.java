@@ -0,0 +1,75 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.time.Instant;
+import java.time.temporal.ChronoUnit;
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the overlap check made by the add and modify appointment forms before saving. Both forms ask the
+ * appointment index whether the customer already has an appointment within the proposed time, the modify form leaving
+ * out the appointment being changed, so the benchmark calls the index the same way with proposals spread over the
+ * seeded range.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class OverlapCheckBenchmark {
+
+    //the number of prepared proposals cycled through
+    private static final int PROPOSALS = 1 << 12;
+
+    @Param({"10000", "100000", "1000000", "5000000"})
+    public int appointments;
+
+    @Param({"100000"})
+    public int customers;
+
+    private Object index;
+    private final int[] customerIds = new int[PROPOSALS];
+    private final Instant[] starts = new Instant[PROPOSALS];
+    private final Instant[] ends = new Instant[PROPOSALS];
+    private int next;
+
+    @Setup
+    public void seed() throws Throwable {
+        BenchmarkDatabase.start(appointments, customers);
+        index = App.ensureIndexLoaded();
+
+        SplittableRandom random = new SplittableRandom(7);
+        int days = Math.max(1, appointments / BenchmarkDatabase.APPOINTMENTS_PER_DAY);
+        for (int i = 0; i < PROPOSALS; i++) {
+            customerIds[i] = 1 + random.nextInt(customers);
+            starts[i] = BenchmarkDatabase.businessDayInstant(random.nextInt(days))
+                    .plus(15L * random.nextInt(52), ChronoUnit.MINUTES);
+            ends[i] = starts[i].plus(30, ChronoUnit.MINUTES);
+        }
+    }
+
+    @Benchmark
+    public boolean addFormOverlapCheck() throws Throwable {
+        int i = next++ & (PROPOSALS - 1);
+        return App.customerOverlaps(index, customerIds[i], starts[i], ends[i], -1);
+    }
+
+    @Benchmark
+    public boolean modifyFormOverlapCheck() throws Throwable {
+        int i = next++ & (PROPOSALS - 1);
+        return App.customerOverlaps(index, customerIds[i], starts[i], ends[i], i + 1);
+    }
+}
@@ -0,0 +1,68 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the reports of the report window: the counts by type and month and per customer, grouped by the database,
+ * and the first and a later page of the contact schedule. The target is well under a second at 1M appointments.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ReportBenchmark {
+
+    @Param({"100000", "1000000"})
+    public int appointments;
+
+    @Param({"100000"})
+    public int customers;
+
+    private Object engine;
+    private Object laterPageEdge;
+
+    @Setup
+    public void seed() throws Throwable {
+        BenchmarkDatabase.start(appointments, customers);
+        engine = App.newReportEngine();
+
+        //continues from the middle of the schedule, so the later page has to seek rather than read from the start
+        List<?> page = App.contactSchedule(engine, null, appointments / 2);
+        laterPageEdge = page.get(page.size() - 1);
+    }
+
+    @Benchmark
+    public Object appointmentsByTypeAndMonth() throws Throwable {
+        return App.appointmentsByTypeAndMonth(engine);
+    }
+
+    @Benchmark
+    public Object appointmentsPerCustomer() throws Throwable {
+        return App.appointmentsPerCustomer(engine);
+    }
+
+    @Benchmark
+    public Object contactScheduleFirstPage() throws Throwable {
+        return App.contactSchedule(engine, null, 100);
+    }
+
+    @Benchmark
+    public Object contactScheduleLaterPage() throws Throwable {
+        return App.contactSchedule(engine, laterPageEdge, 100);
+    }
+}
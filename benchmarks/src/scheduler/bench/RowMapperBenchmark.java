@@ -0,0 +1,89 @@
+package scheduler.bench;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the cost per row of turning the appointments table into appointments. The by-name baseline is the loop
+ * getAppointmentArray used to run: every column of the table, each looked up by name, the times read as text and
+ * parsed, then moved between zones three times. The row mapper reads only the needed columns by position with the
+ * driver's own temporal type. Both read the same 1M rows on the same connection, and the scores are per row, so with
+ * the GC profiler gc.alloc.rate.norm gives the bytes allocated for each row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(value = 1, jvmArgsAppend = {"-Xmx4g"})
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@OperationsPerInvocation(RowMapperBenchmark.ROWS)
+public class RowMapperBenchmark {
+
+    static final int ROWS = 1_000_000;
+
+    //the scores are divided by ROWS, so the volume is fixed rather than a list of choices
+    @Param({"" + ROWS})
+    public int appointments;
+
+    private Connection conn;
+    private PreparedStatement byName;
+    private PreparedStatement byPosition;
+
+    @Setup
+    public void seed() throws Throwable {
+        String url = BenchmarkDatabase.start(appointments, 100_000);
+        conn = DriverManager.getConnection(url, "sa", "");
+        byName = conn.prepareStatement("SELECT * FROM appointments");
+        byPosition = conn.prepareStatement("SELECT " + App.APPOINTMENT_COLUMNS + " FROM appointments");
+    }
+
+    @TearDown
+    public void close() throws Exception {
+        conn.close();
+    }
+
+    @Benchmark
+    public void byName(Blackhole blackhole) throws Throwable {
+        try (ResultSet rs = byName.executeQuery()) {
+            while (rs.next()) {
+                ZonedDateTime start = (Timestamp.valueOf(rs.getString("Start")).toLocalDateTime().atZone(
+                        ZoneId.of("UTC"))).withZoneSameInstant(ZoneId.systemDefault());
+                ZonedDateTime end = (Timestamp.valueOf(rs.getString("End")).toLocalDateTime().atZone(
+                        ZoneId.of("UTC"))).withZoneSameInstant(ZoneId.systemDefault());
+                blackhole.consume(App.newAppointment(rs.getInt("Appointment_ID"), rs.getString("Title"),
+                        rs.getString("Description"), rs.getString("Location"), rs.getInt("Contact_ID"),
+                        rs.getString("Type"), start.withZoneSameInstant(ZoneId.systemDefault()),
+                        end.withZoneSameInstant(ZoneId.systemDefault()), rs.getInt("Customer_ID"),
+                        Integer.parseInt(rs.getString("User_ID"))));
+            }
+        }
+    }
+
+    @Benchmark
+    public void rowMapper(Blackhole blackhole) throws Throwable {
+        try (ResultSet rs = byPosition.executeQuery()) {
+            while (rs.next()) { blackhole.consume(App.mapRow(rs)); }
+        }
+    }
+}
@@ -0,0 +1,11 @@
+-- a column for the salted password hashes, kept apart from the Password column so the other clients reading the users
+-- table keep working. Until it exists the program checks the plain text Password column only. Once it exists a user
+-- logging in with the plain text password has its hash written here, and from then on only the hash is checked
+ALTER TABLE users ADD COLUMN Password_Hash VARCHAR(128) NULL;
+
+-- a password changed by another client drops the hash, so the new password is the one checked and hashed next
+CREATE TRIGGER users_password_changed BEFORE UPDATE ON users FOR EACH ROW
+    SET NEW.Password_Hash = IF(NEW.Password <=> OLD.Password, NEW.Password_Hash, NULL);
+
+-- once no other client reads the plain text passwords any more they can be cleared from the users that have a hash:
+-- UPDATE users SET Password = '' WHERE Password_Hash IS NOT NULL;